@@ -12,6 +12,7 @@ repositories {
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 
     // https://mvnrepository.com/artifact/io.netty/netty-all
     implementation("io.netty:netty-all:4.1.109.Final")
@@ -27,6 +28,7 @@ dependencies {
     implementation("ch.qos.logback:logback-core:1.5.6")
 
     implementation(project(":common"))
+    testImplementation(testFixtures(project(":common")))
 }
 
 tasks.test {
@@ -0,0 +1,165 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.logging.LogLevel;
+import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pipeline of a client connection, shared by {@link NettyClientLauncher} and {@link ConnectionPool}.
+ * A heartbeat is sent after 3 seconds without writes, the server answers it, so a connection without any read for 9 seconds is considered dead and closed.
+ * Busy connections send no heartbeats at all. The interval is proposed to the server when connecting, which may clamp it, see {@link IdleMonitor}.
+ */
+@Slf4j
+@Setter
+@Accessors(chain = true)
+public class ClientChannelInitializer extends ChannelInitializer<Channel> {
+	/**
+	 * default seconds without writes before a heartbeat is sent
+	 */
+	public static final int HEARTBEAT_INTERVAL_SECONDS = 3;
+	/**
+	 * default seconds without reads before the connection is closed, three missed heartbeat answers
+	 */
+	public static final int READER_IDLE_SECONDS = 9;
+	/**
+	 * every connection of a pool sends heartbeats, a few log lines per second are plenty
+	 */
+	private static final RateLimitedLog HEARTBEAT_LOG = RateLimitedLog.perSecond(1);
+
+	// Create a logging handler for debugging
+	private final LoggingHandler loggingHandler = new LoggingHandler(LogLevel.DEBUG);
+	/**
+	 * leave the LoggingHandler out of new pipelines, single connections can still be logged with {@link WireTap}.
+	 * Read for every new connection, so switching it at runtime affects the connections opened afterwards.
+	 */
+	private volatile boolean leanPipeline;
+	/**
+	 * coalesce flushes with a {@link FlushConsolidationHandler}
+	 */
+	private boolean writeBatching;
+	/**
+	 * requests waiting for the channel to become writable, further requests fail, see {@link OutboundMessageQueue}
+	 */
+	private int outboundQueueCapacity = OutboundMessageQueue.DEFAULT_CAPACITY;
+	/**
+	 * maximum number of requests in flight per connection
+	 */
+	private int maxOutstanding = RpcClient.DEFAULT_MAX_OUTSTANDING;
+	/**
+	 * default request timeout
+	 */
+	private long requestTimeoutMillis = RpcClient.DEFAULT_TIMEOUT_MILLIS;
+	/**
+	 * compression of outgoing payloads, see {@link NettyCustomizedMessageToMessageCodec}
+	 */
+	private FrameCompression compression = FrameCompression.None;
+	/**
+	 * smallest payload in bytes worth compressing
+	 */
+	private int compressionThreshold = NettyCustomizedMessageToMessageCodec.DEFAULT_COMPRESSION_THRESHOLD;
+	/**
+	 * throughput, latency and buffer metrics, null to collect none
+	 */
+	private NettyMetrics metrics;
+	/**
+	 * heartbeat interval proposed to the server, the connection closes after {@link IdleMonitor#MISSED_HEARTBEATS} intervals without reads
+	 */
+	private int heartbeatIntervalMillis = HEARTBEAT_INTERVAL_SECONDS * 1000;
+
+	@Override
+	protected void initChannel(@NonNull Channel channel) {
+		ChannelPipeline channelPipeline = channel.pipeline(); // Get channel pipeline
+		// In-process connections carry the messages themselves, everything that deals with frames is left out
+		boolean inProcess = TransportType.isInProcess(channel);
+
+		// Add a logging handler for the client channel, a lean pipeline skips it
+		if (!leanPipeline) {
+			channelPipeline.addLast(loggingHandler);
+		}
+
+		// Coalesce flushes, during a read until its end and otherwise until the tasks of the event loop have run
+		if (writeBatching && !inProcess) {
+			channelPipeline.addLast(new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+		}
+
+		// Add a String decoder and String encoder handler
+		// channelPipeline.addLast(new StringDecoder());
+		// channelPipeline.addLast(new StringEncoder());
+
+		if (!inProcess) {
+			channelPipeline.addLast(new CustomizedLengthFieldBasedFrameDecoder());
+			// Put large messages sent as several chunk frames back together
+			channelPipeline.addLast(new ChunkedFrameAggregator());
+			channelPipeline.addLast(new NettyCustomizedMessageToMessageCodec(compression, compressionThreshold).setMetrics(metrics));
+		}
+
+		// Idle detection, heartbeats are only due while no requests are sent
+		channelPipeline.addLast(IdleMonitor.client(heartbeatIntervalMillis));
+		if (metrics != null) {
+			channelPipeline.addLast(new MetricsHandler(metrics));
+		}
+
+		// Add a ChannelDuplexHandler for both inbound and outbound messages
+		// Heartbeat mechanism
+		channelPipeline.addLast(new ChannelDuplexHandler() {
+			@Override
+			public void channelActive(ChannelHandlerContext ctx) throws Exception {
+				// Propose the heartbeat interval right away, the answer carries the one the server accepted
+				ctx.writeAndFlush(new HeartbeatPacket("hello", IdleMonitor.of(ctx.channel()).heartbeatIntervalMillis()), ctx.voidPromise());
+				super.channelActive(ctx);
+			}
+
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+				// Heartbeat answers only serve to keep the idle monitor quiet, it has already adopted their interval
+				if (msg instanceof HeartbeatPacket) {
+					ReferenceCountUtil.release(msg);
+				} else {
+					super.channelRead(ctx, msg);
+				}
+			}
+
+			@Override
+			public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+				if (evt instanceof IdleStateEvent idleStateEvent) {
+					if (idleStateEvent.state() == IdleState.WRITER_IDLE) {
+						int intervalMillis = IdleMonitor.of(ctx.channel()).heartbeatIntervalMillis();
+						long suppressed = HEARTBEAT_LOG.acquire();
+						if (suppressed >= 0) {
+							log.info("Nothing sent for {} ms, send a heartbeat packet ({} more suppressed)", intervalMillis, suppressed);
+						}
+						ctx.writeAndFlush(new HeartbeatPacket("hello", intervalMillis));
+					} else if (idleStateEvent.state() == IdleState.READER_IDLE) {
+						log.warn("Nothing received for {} heartbeat intervals, closing {}", IdleMonitor.MISSED_HEARTBEATS, ctx.channel());
+						if (metrics != null) {
+							metrics.idleClosed();
+						}
+						ctx.close();
+					}
+				}
+				super.userEventTriggered(ctx, evt);
+			}
+		});
+
+		// Matches responses to requests by sequenceId
+		channelPipeline.addLast(new RpcClient(maxOutstanding, requestTimeoutMillis, metrics));
+
+		// Producers hand messages to this queue, it only writes while the channel is writable
+		channelPipeline.addLast(new OutboundMessageQueue(outboundQueueCapacity));
+	}
+}
@@ -0,0 +1,301 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reusable client keeping a fixed number of connections to every host:port it talks to.
+ * Requests go to the connection of the host with the fewest requests in flight, ties are broken round-robin.
+ * A connection is closed by the heartbeat of {@link ClientChannelInitializer} once the server stops answering,
+ * and every closed or failed connection is re-established with exponential backoff and jitter until the pool is closed.
+ * Calls to a host that is still making its first connection wait for it up to the connect timeout.
+ * The event loop group belongs to the caller, closing the pool does not shut it down.
+ */
+@Slf4j
+public class ConnectionPool implements Closeable {
+	public static final long MIN_BACKOFF_MILLIS = 100;
+	public static final long MAX_BACKOFF_MILLIS = 30_000;
+	/**
+	 * time a connection attempt may take, calls to a new host wait as long for its first connection
+	 */
+	public static final int CONNECT_TIMEOUT_MILLIS = 3000;
+
+	private final Bootstrap bootstrap;
+	private final TransportType transportType;
+	private final int connectionsPerHost;
+	private final ConcurrentMap<InetSocketAddress, HostPool> hostPools = new ConcurrentHashMap<>();
+	private volatile boolean closed;
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param eventLoopGroup     event loops of the connections
+	 * @param transportType      transport, must match the event loop group
+	 * @param initializer        pipeline of the connections
+	 * @param connectionsPerHost connections kept to every host:port
+	 */
+	public ConnectionPool(EventLoopGroup eventLoopGroup, TransportType transportType, ClientChannelInitializer initializer, int connectionsPerHost) {
+		this.connectionsPerHost = connectionsPerHost;
+		this.transportType = transportType;
+		this.bootstrap = new Bootstrap()
+				.group(eventLoopGroup)
+				.channel(transportType.socketChannelClass())
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS)
+				.handler(initializer);
+		if (!transportType.isInProcess()) {
+			bootstrap.option(ChannelOption.TCP_NODELAY, true);
+		}
+	}
+
+	/**
+	 * Send a request to a host, connecting to it on first use
+	 *
+	 * @param address host:port
+	 * @param request request
+	 *
+	 * @return future of the response, fails with ConnectException while the host has no live connection
+	 * and is not making its first one
+	 */
+	public CompletableFuture<RpcResponse> call(InetSocketAddress address, RpcRequest request) {
+		return hostPool(address).call(request);
+	}
+
+	/**
+	 * Connections of a host, created and connected on first use
+	 *
+	 * @param address host:port
+	 *
+	 * @return host pool
+	 */
+	public HostPool hostPool(InetSocketAddress address) {
+		if (closed) {
+			throw new IllegalStateException("Connection pool is closed");
+		}
+		// Connecting is a side effect, it starts outside the mapping function and only once per host pool
+		HostPool hostPool = hostPools.computeIfAbsent(address, HostPool::new);
+		hostPool.start();
+		return hostPool;
+	}
+
+	/**
+	 * Whether a host has at least one live connection
+	 *
+	 * @param address host:port
+	 *
+	 * @return healthy
+	 */
+	public boolean isHealthy(InetSocketAddress address) {
+		HostPool hostPool = hostPools.get(address);
+		return hostPool != null && hostPool.isHealthy();
+	}
+
+	/**
+	 * Close the connections of a host and stop reconnecting to it
+	 *
+	 * @param address host:port
+	 */
+	public void remove(InetSocketAddress address) {
+		HostPool hostPool = hostPools.remove(address);
+		if (hostPool != null) {
+			hostPool.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		hostPools.values().forEach(HostPool::close);
+		hostPools.clear();
+	}
+
+	/**
+	 * The connections to one host:port
+	 */
+	public final class HostPool {
+		@Getter
+		private final InetSocketAddress address;
+		private final AtomicReferenceArray<Channel> channels;
+		private final AtomicIntegerArray failedAttempts;
+		private final AtomicInteger nextIndex = new AtomicInteger();
+		private final AtomicBoolean started = new AtomicBoolean();
+		/**
+		 * completed once the first connection is up, failed if the pool is closed before
+		 */
+		private final CompletableFuture<Void> firstConnection = new CompletableFuture<>();
+		private volatile boolean closed;
+
+		private HostPool(InetSocketAddress address) {
+			this.address = address;
+			this.channels = new AtomicReferenceArray<>(connectionsPerHost);
+			this.failedAttempts = new AtomicIntegerArray(connectionsPerHost);
+		}
+
+		private void start() {
+			if (started.compareAndSet(false, true)) {
+				for (int slot = 0; slot < connectionsPerHost; slot++) {
+					connect(slot);
+				}
+			}
+		}
+
+		/**
+		 * Send a request over the connection with the fewest requests in flight
+		 *
+		 * @param request request
+		 *
+		 * @return future of the response
+		 */
+		public CompletableFuture<RpcResponse> call(RpcRequest request) {
+			RpcClient rpcClient = select();
+			if (rpcClient != null) {
+				return rpcClient.call(request);
+			}
+			if (firstConnection.isDone()) {
+				// The host was up and all its connections are lost, calls fail fast until a reconnect succeeds
+				return CompletableFuture.failedFuture(new ConnectException("No live connection to " + address));
+			}
+			// Only this call's copy times out, the others keep waiting for the first connection
+			return firstConnection.copy()
+					.orTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+					.handle((connected, cause) -> {
+						RpcClient connectedClient = cause == null ? select() : null;
+						return connectedClient == null
+								? CompletableFuture.<RpcResponse>failedFuture(new ConnectException("No live connection to " + address))
+								: connectedClient.call(request);
+					})
+					.thenCompose(future -> future);
+		}
+
+		/**
+		 * Whether at least one connection is live
+		 *
+		 * @return healthy
+		 */
+		public boolean isHealthy() {
+			for (int slot = 0; slot < channels.length(); slot++) {
+				Channel channel = channels.get(slot);
+				if (channel != null && channel.isActive()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Requests in flight over all connections
+		 *
+		 * @return outstanding requests
+		 */
+		public int outstanding() {
+			int outstanding = 0;
+			for (int slot = 0; slot < channels.length(); slot++) {
+				RpcClient rpcClient = rpcClientOf(channels.get(slot));
+				if (rpcClient != null) {
+					outstanding += rpcClient.outstanding();
+				}
+			}
+			return outstanding;
+		}
+
+		/**
+		 * Least pending live connection, scanning from a rotating start so that ties are spread round-robin
+		 *
+		 * @return client of the connection, null if none is live
+		 */
+		private RpcClient select() {
+			int length = channels.length();
+			int start = Math.floorMod(nextIndex.getAndIncrement(), length);
+			RpcClient best = null;
+			int bestOutstanding = Integer.MAX_VALUE;
+			for (int i = 0; i < length; i++) {
+				RpcClient rpcClient = rpcClientOf(channels.get((start + i) % length));
+				if (rpcClient != null && rpcClient.outstanding() < bestOutstanding) {
+					best = rpcClient;
+					bestOutstanding = rpcClient.outstanding();
+				}
+			}
+			return best;
+		}
+
+		private void connect(int slot) {
+			if (closed) {
+				return;
+			}
+			bootstrap.connect(transportType.address(address.getHostString(), address.getPort())).addListener((ChannelFutureListener) future -> onConnect(slot, future));
+		}
+
+		private void onConnect(int slot, ChannelFuture future) {
+			if (!future.isSuccess()) {
+				log.debug("Connection {} to {} failed", slot, address, future.cause());
+				scheduleReconnect(slot);
+				return;
+			}
+			Channel channel = future.channel();
+			if (closed) {
+				channel.close();
+				return;
+			}
+			failedAttempts.set(slot, 0);
+			channels.set(slot, channel);
+			firstConnection.complete(null);
+			log.info("Connection {} to {} established", slot, address);
+			channel.closeFuture().addListener((ChannelFutureListener) closeFuture -> {
+				channels.compareAndSet(slot, channel, null);
+				log.info("Connection {} to {} closed", slot, address);
+				scheduleReconnect(slot);
+			});
+		}
+
+		/**
+		 * Reconnect after min * 2^attempts milliseconds, capped at max, with the upper half of the delay randomized
+		 *
+		 * @param slot slot
+		 */
+		private void scheduleReconnect(int slot) {
+			if (closed) {
+				return;
+			}
+			int attempts = failedAttempts.getAndIncrement(slot);
+			long backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(attempts, 16));
+			long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+			bootstrap.config().group().schedule(() -> connect(slot), delay, TimeUnit.MILLISECONDS);
+		}
+
+		private void close() {
+			closed = true;
+			firstConnection.completeExceptionally(new ConnectException("Connection pool to " + address + " closed"));
+			for (int slot = 0; slot < channels.length(); slot++) {
+				Channel channel = channels.getAndSet(slot, null);
+				if (channel != null) {
+					channel.close();
+				}
+			}
+		}
+
+		private RpcClient rpcClientOf(Channel channel) {
+			return channel != null && channel.isActive() ? RpcClient.of(channel) : null;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Routes requests by key across several servers with consistent hashing, on top of the connections of a {@link ConnectionPool}.
+ * Every server owns virtualNodes points on a ring of 64-bit hashes, a key goes to the owner of the first point at or after its hash.
+ * Adding or removing a server only moves the keys of the arcs it gains or loses, about 1/n of them, the others keep their server.
+ * A server without a live connection, e.g. after the heartbeat of {@link ClientChannelInitializer} closed it, is skipped and its keys
+ * go to the next servers on the ring until it is back, without rebuilding the ring.
+ * The ring is an immutable pair of sorted arrays replaced on every change, lookups are a binary search without locking.
+ */
+@Slf4j
+public class ConsistentHashRouter {
+	/**
+	 * points per server, enough to keep the share of every server within a few percent of 1/n
+	 */
+	public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+	private final ConnectionPool connectionPool;
+	private final int virtualNodes;
+	private final Set<InetSocketAddress> nodes = new LinkedHashSet<>();
+	private volatile Ring ring = new Ring(new long[0], new InetSocketAddress[0], 0);
+
+	/**
+	 * Router with the default number of virtual nodes
+	 *
+	 * @param connectionPool connections to the servers
+	 */
+	public ConsistentHashRouter(ConnectionPool connectionPool) {
+		this(connectionPool, DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param connectionPool connections to the servers
+	 * @param virtualNodes   points per server on the ring
+	 */
+	public ConsistentHashRouter(ConnectionPool connectionPool, int virtualNodes) {
+		if (virtualNodes <= 0) {
+			throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+		}
+		this.connectionPool = connectionPool;
+		this.virtualNodes = virtualNodes;
+	}
+
+	/**
+	 * Add servers, connecting to them right away
+	 *
+	 * @param addresses host:port of the servers
+	 */
+	public synchronized void addNodes(Collection<InetSocketAddress> addresses) {
+		for (InetSocketAddress address : addresses) {
+			if (nodes.add(address)) {
+				connectionPool.hostPool(address);
+			}
+		}
+		rebuild();
+	}
+
+	/**
+	 * Add a server, connecting to it right away
+	 *
+	 * @param address host:port
+	 */
+	public void addNode(InetSocketAddress address) {
+		addNodes(List.of(address));
+	}
+
+	/**
+	 * Remove a server and close its connections, its keys move to the next servers on the ring
+	 *
+	 * @param address host:port
+	 */
+	public synchronized void removeNode(InetSocketAddress address) {
+		if (nodes.remove(address)) {
+			rebuild();
+			connectionPool.remove(address);
+		}
+	}
+
+	/**
+	 * Servers on the ring, healthy or not
+	 *
+	 * @return servers
+	 */
+	public synchronized List<InetSocketAddress> nodes() {
+		return new ArrayList<>(nodes);
+	}
+
+	/**
+	 * Send a request to the server of a key
+	 *
+	 * @param key     routing key, requests of the same key go to the same server while it is healthy
+	 * @param request request
+	 *
+	 * @return future of the response, fails with ConnectException if no server is healthy
+	 */
+	public CompletableFuture<RpcResponse> call(String key, RpcRequest request) {
+		InetSocketAddress address = route(key);
+		if (address == null) {
+			return CompletableFuture.failedFuture(new ConnectException("No server to route " + key + " to"));
+		}
+		return connectionPool.call(address, request);
+	}
+
+	/**
+	 * Server of a key: the owner of the first point at or after the hash of the key, skipping servers without a live connection
+	 *
+	 * @param key routing key
+	 *
+	 * @return server, the owner of the key if none is healthy, null if the ring is empty
+	 */
+	public InetSocketAddress route(String key) {
+		Ring ring = this.ring;
+		long[] points = ring.points;
+		if (points.length == 0) {
+			return null;
+		}
+		int index = Arrays.binarySearch(points, hash(key));
+		if (index < 0) {
+			index = -index - 1;
+		}
+		if (index == points.length) {
+			index = 0;
+		}
+		InetSocketAddress owner = ring.owners[index];
+		// Walk on clockwise until every server has been seen once, points of servers already found unhealthy are skipped cheaply
+		List<InetSocketAddress> unhealthy = null;
+		for (int i = 0; i < points.length; i++) {
+			InetSocketAddress candidate = ring.owners[(index + i) % points.length];
+			if (unhealthy != null && unhealthy.contains(candidate)) {
+				continue;
+			}
+			if (connectionPool.isHealthy(candidate)) {
+				return candidate;
+			}
+			if (unhealthy == null) {
+				unhealthy = new ArrayList<>(ring.nodeCount);
+			}
+			unhealthy.add(candidate);
+			if (unhealthy.size() == ring.nodeCount) {
+				break;
+			}
+		}
+		return owner;
+	}
+
+	private void rebuild() {
+		// Servers are placed in a fixed order, so that two routers with the same servers resolve a rare hash collision the same way
+		List<InetSocketAddress> sorted = new ArrayList<>(nodes);
+		sorted.sort(Comparator.comparing(InetSocketAddress::toString));
+		TreeMap<Long, InetSocketAddress> points = new TreeMap<>();
+		for (InetSocketAddress node : sorted) {
+			for (int i = 0; i < virtualNodes; i++) {
+				points.putIfAbsent(hash(node.getHostString() + ":" + node.getPort() + "#" + i), node);
+			}
+		}
+		long[] hashes = new long[points.size()];
+		InetSocketAddress[] owners = new InetSocketAddress[points.size()];
+		int i = 0;
+		for (Map.Entry<Long, InetSocketAddress> point : points.entrySet()) {
+			hashes[i] = point.getKey();
+			owners[i++] = point.getValue();
+		}
+		ring = new Ring(hashes, owners, sorted.size());
+		log.info("Routing over {} server(s) with {} points", sorted.size(), hashes.length);
+	}
+
+	/**
+	 * 64-bit FNV-1a of the characters, finished with the MurmurHash3 mixer so that similar keys land far apart on the ring
+	 *
+	 * @param key key
+	 *
+	 * @return hash
+	 */
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Points of the ring in ascending order and the server owning each
+	 */
+	private static final class Ring {
+		private final long[] points;
+		private final InetSocketAddress[] owners;
+		private final int nodeCount;
+
+		private Ring(long[] points, InetSocketAddress[] owners, int nodeCount) {
+			this.points = points;
+			this.owners = owners;
+			this.nodeCount = nodeCount;
+		}
+	}
+}
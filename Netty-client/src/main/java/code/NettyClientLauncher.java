@@ -7,87 +7,128 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.logging.LogLevel;
-import io.netty.handler.logging.LoggingHandler;
-import io.netty.handler.timeout.IdleState;
-import io.netty.handler.timeout.IdleStateEvent;
-import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.EventExecutor;
-import lombok.NonNull;
+import lombok.AccessLevel;
+import lombok.Setter;
 import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
+@Setter
+@Accessors(chain = true)
 public class NettyClientLauncher {
 	private final String inetHost;
 	private final int inetPort;
+	/**
+	 * socket transport, Nio unless set
+	 */
+	private TransportType transportType = TransportType.Nio;
+	/**
+	 * leave the LoggingHandler out of the pipeline, the connection can still be logged with {@link WireTap}.
+	 * Switching it at runtime affects the connections opened afterwards, e.g. by the reconnects of the connection pool.
+	 */
+	private volatile boolean leanPipeline;
+	/**
+	 * coalesce flushes with a {@link io.netty.handler.flush.FlushConsolidationHandler}
+	 */
+	private boolean writeBatching;
+	/**
+	 * requests waiting for the channel to become writable, see {@link OutboundMessageQueue}
+	 */
+	private int outboundQueueCapacity = OutboundMessageQueue.DEFAULT_CAPACITY;
+	/**
+	 * compression of outgoing payloads, see {@link NettyCustomizedMessageToMessageCodec}
+	 */
+	private FrameCompression compression = FrameCompression.None;
+	/**
+	 * smallest payload in bytes worth compressing
+	 */
+	private int compressionThreshold = NettyCustomizedMessageToMessageCodec.DEFAULT_COMPRESSION_THRESHOLD;
+	/**
+	 * throughput, latency and buffer metrics, null to collect none
+	 */
+	private NettyMetrics metrics;
+	/**
+	 * seconds between two logged metric snapshots, 0 to only pull them through {@link NettyMetrics#snapshot()}
+	 */
+	private int metricsLogSeconds = 60;
+	/**
+	 * heartbeat interval proposed to the server, see {@link IdleMonitor}
+	 */
+	private int heartbeatIntervalMillis = ClientChannelInitializer.HEARTBEAT_INTERVAL_SECONDS * 1000;
+	/**
+	 * file sent to the server once connected, null to send none
+	 */
+	private Path uploadFile;
+	/**
+	 * servers to route requests to by key, see {@link ConsistentHashRouter}, empty to only talk to inetHost:inetPort
+	 */
+	private List<InetSocketAddress> nodes = List.of();
+	/**
+	 * connections kept to every server of nodes
+	 */
+	private int connectionsPerNode = 1;
+	/**
+	 * pipeline of the connections, once bootstrapped
+	 */
+	@Setter(AccessLevel.NONE)
+	private volatile ClientChannelInitializer channelInitializer;
 
 	public NettyClientLauncher(String inetHost, int inetPort) {
 		this.inetHost = inetHost;
 		this.inetPort = inetPort;
 	}
 
+	/**
+	 * Leave the LoggingHandler out of the pipelines of new connections, also after bootstrapping
+	 *
+	 * @param leanPipeline lean
+	 *
+	 * @return this
+	 */
+	public NettyClientLauncher setLeanPipeline(boolean leanPipeline) {
+		this.leanPipeline = leanPipeline;
+		ClientChannelInitializer initializer = channelInitializer;
+		if (initializer != null) {
+			initializer.setLeanPipeline(leanPipeline);
+		}
+		return this;
+	}
+
 	/**
 	 * Initializes and connects the client to the server.
 	 */
 	@SneakyThrows
 	public void bootStrap() {
-		// Create a logging handler for debugging
-		LoggingHandler loggingHandler = new LoggingHandler(LogLevel.DEBUG);
-
-		// Create a NioEventLoopGroup for event executors
-		NioEventLoopGroup eventExecutors = new NioEventLoopGroup();
+		if (!nodes.isEmpty()) {
+			bootStrapCluster();
+			return;
+		}
+		// Create an event loop group of the configured transport for event executors
+		EventLoopGroup eventExecutors = transportType.newEventLoopGroup(0);
 
 		try {
 			// Create a Bootstrap object and configure the parameters
 			Bootstrap bootstrap = new Bootstrap();
 			bootstrap.group(eventExecutors); // Set the thread groups
-			bootstrap.channel(NioSocketChannel.class); // Set the channel implementation type of the client
-
-			// Initialize the channel with an anonymous inner class
-			bootstrap.handler(new ChannelInitializer<NioSocketChannel>() {
-				@Override
-				protected void initChannel(@NonNull NioSocketChannel nioSocketChannel) {
-					ChannelPipeline channelPipeline = nioSocketChannel.pipeline(); // Get channel pipeline
-
-					// Add a logging handler for the client channel
-					channelPipeline.addLast(loggingHandler);
-
-					// Add a String decoder and String encoder handler
-					// channelPipeline.addLast(new StringDecoder());
-					// channelPipeline.addLast(new StringEncoder());
-
-					channelPipeline.addLast(new CustomizedLengthFieldBasedFrameDecoder());
-					channelPipeline.addLast(new NettyCustomizedMessageToMessageCodec());
-
-					// Add an IdleStateHandler for idle time detection
-					channelPipeline.addLast(new IdleStateHandler(0, 3, 0));
-
-					// Add a ChannelDuplexHandler for both inbound and outbound messages
-					// Heartbeat mechanism
-					channelPipeline.addLast(new ChannelDuplexHandler() {
-						@Override
-						public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-							if (evt instanceof IdleStateEvent idleStateEvent) {
-								if (idleStateEvent.state() == IdleState.WRITER_IDLE) {
-									log.info("No data is sent for 3 seconds, send a heartbeat packet");
-									ctx.writeAndFlush(new HeartbeatPacket("hello"));
-								}
-							}
-							super.userEventTriggered(ctx, evt);
-						}
-					});
-				}
-			});
+			bootstrap.channel(transportType.socketChannelClass()); // Set the channel implementation type of the client
+
+			// Initialize the channel with the shared client pipeline
+			bootstrap.handler(newChannelInitializer());
+			if (metrics != null && metricsLogSeconds > 0) {
+				metrics.logPeriodically(eventExecutors.next(), metricsLogSeconds, TimeUnit.SECONDS);
+			}
 
 			// Connect to the server
-			ChannelFuture channelFuture = bootstrap.connect(new InetSocketAddress(inetHost, inetPort));
+			ChannelFuture channelFuture = bootstrap.connect(transportType.address(inetHost, inetPort));
 
 			// Add a listener for connection status
 			// Uses an anonymous inner class, the ChannelFutureListener interface
@@ -109,6 +150,9 @@ public class NettyClientLauncher {
 
 			// Execute business logic
 			executeBusiness(channel);
+			if (uploadFile != null) {
+				upload(channel, uploadFile);
+			}
 
 			// Get the close channel future
 			ChannelFuture closeFuture = channel.closeFuture();
@@ -122,19 +166,116 @@ public class NettyClientLauncher {
 		}
 	}
 
+	/**
+	 * Connects to every server of nodes and routes requests to them by key until interrupted.
+	 * Servers that stop answering heartbeats lose their keys to the next servers on the ring and get them back once reconnected.
+	 */
+	@SneakyThrows
+	private void bootStrapCluster() {
+		EventLoopGroup eventExecutors = transportType.newEventLoopGroup(0);
+		try (ConnectionPool connectionPool = new ConnectionPool(eventExecutors, transportType, newChannelInitializer(), connectionsPerNode)) {
+			if (metrics != null && metricsLogSeconds > 0) {
+				metrics.logPeriodically(eventExecutors.next(), metricsLogSeconds, TimeUnit.SECONDS);
+			}
+			ConsistentHashRouter router = new ConsistentHashRouter(connectionPool);
+			router.addNodes(nodes);
+			while (!Thread.currentThread().isInterrupted()) {
+				executeBusiness(router);
+				TimeUnit.SECONDS.sleep(1);
+			}
+		} finally {
+			eventExecutors.shutdownGracefully();
+		}
+	}
+
+	/**
+	 * The shared client pipeline with the settings of this launcher
+	 *
+	 * @return channel initializer
+	 */
+	private ClientChannelInitializer newChannelInitializer() {
+		channelInitializer = new ClientChannelInitializer()
+				.setLeanPipeline(leanPipeline)
+				.setWriteBatching(writeBatching)
+				.setOutboundQueueCapacity(outboundQueueCapacity)
+				.setCompression(compression)
+				.setCompressionThreshold(compressionThreshold)
+				.setMetrics(metrics)
+				.setHeartbeatIntervalMillis(heartbeatIntervalMillis);
+		// A switch that raced with the assignment above is applied again
+		channelInitializer.setLeanPipeline(leanPipeline);
+		return channelInitializer;
+	}
+
+	/**
+	 * Routes a request per key and logs which server answered it, the keys stay on their server while it is healthy.
+	 *
+	 * @param router router over the servers
+	 */
+	private static void executeBusiness(ConsistentHashRouter router) {
+		for (int i = 0; i < 8; i++) {
+			String key = "user-" + i;
+			InetSocketAddress server = router.route(key);
+			router.call(key, new RpcRequest("echo", key)).whenComplete((response, e) -> {
+				if (e == null) {
+					log.info("Key {} answered by {}", key, server);
+					ReferenceCountUtil.release(response);
+				} else {
+					log.warn("Request of key {} failed: {}", key, e.toString());
+				}
+			});
+		}
+	}
+
 	/**
 	 * Executes the business logic after a connection has been established.
 	 *
 	 * @param channel the channel representing the connection
 	 */
-	@SneakyThrows
 	private static void executeBusiness(Channel channel) {
-		// Write a message to the server
-		// while (true) {
-		// 	TimeUnit.SECONDS.sleep(1);
-		// 	channel.writeAndFlush("Hello, Server!\n");
-		// }
-		System.out.println("Hello, Server!\n");
+		// Pipeline a few requests, the responses are matched to them by sequenceId
+		RpcClient rpcClient = RpcClient.of(channel);
+		for (int i = 0; i < 3; i++) {
+			rpcClient.call(new RpcRequest("echo", "Hello, Server! " + i)).whenComplete((response, e) -> {
+				if (e == null) {
+					log.info("Received response: {}", response);
+					ReferenceCountUtil.release(response);
+				} else {
+					log.error("Request failed", e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Sends a file to the server, see {@link FileTransferWriter}, and logs the progress in steps of ten percent.
+	 *
+	 * @param channel the channel representing the connection
+	 * @param file    the file to send
+	 */
+	private static void upload(Channel channel, Path file) {
+		long start = System.nanoTime();
+		FileTransferWriter.send(channel, file).addListener(new ChannelProgressiveFutureListener() {
+			private long loggedStep;
+
+			@Override
+			public void operationProgressed(ChannelProgressiveFuture future, long progress, long total) {
+				long step = total == 0 ? 10 : progress * 10 / total;
+				if (step > loggedStep) {
+					loggedStep = step;
+					log.info("Uploading {}: {}%", file, step * 10);
+				}
+			}
+
+			@Override
+			public void operationComplete(ChannelProgressiveFuture future) {
+				if (future.isSuccess()) {
+					log.info("Uploaded {} in {} ms", file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				} else {
+					log.error("Upload of {} failed", file, future.cause());
+				}
+			}
+		});
 	}
 
 	/**
@@ -164,14 +305,61 @@ public class NettyClientLauncher {
 		return nioEventLoopList;
 	}
 
+	/**
+	 * Parse a list of servers.
+	 *
+	 * @param nodes host:port pairs separated by commas
+	 *
+	 * @return addresses of the servers
+	 */
+	private static List<InetSocketAddress> parseNodes(String nodes) {
+		List<InetSocketAddress> addresses = new ArrayList<>();
+		for (String node : nodes.split(",")) {
+			String trimmed = node.trim();
+			int colon = trimmed.lastIndexOf(':');
+			if (colon <= 0) {
+				throw new IllegalArgumentException("Expected host:port, got " + trimmed);
+			}
+			addresses.add(InetSocketAddress.createUnresolved(trimmed.substring(0, colon), Integer.parseInt(trimmed.substring(colon + 1))));
+		}
+		return addresses;
+	}
+
 	/**
 	 * Entry point of the application.
+	 * The transport is picked with -Dnetty.transport=auto|nio|epoll|io_uring|local, write batching is enabled with -Dnetty.batching=true.
+	 * Payload compression is picked with -Dnetty.compression=none|zlib|snappy above -Dnetty.compression.threshold bytes.
+	 * Metrics are collected with -Dnetty.metrics=true and logged every -Dnetty.metrics.period seconds.
+	 * -Dnetty.lean=true leaves the LoggingHandler out.
+	 * -Dnetty.heartbeat.interval proposes the heartbeat interval in milliseconds.
+	 * -Dnetty.pooling=true pools the built-in messages, see {@link MessagePool}.
+	 * -Dnetty.upload sends that file to the server once connected.
+	 * -Dnetty.nodes=host:port,host:port routes requests by key across those servers instead, with -Dnetty.nodes.connections connections to each.
 	 *
 	 * @param args The command line arguments.
 	 */
 	@SneakyThrows
 	public static void main(String[] args) {
-		NettyClientLauncher nettyClientLauncher = new NettyClientLauncher("127.0.0.1", 8080);
+		if (Boolean.getBoolean("netty.pooling")) {
+			MessageRegistry.enablePooling();
+		}
+		NettyClientLauncher nettyClientLauncher = new NettyClientLauncher("127.0.0.1", 8080)
+				.setTransportType(TransportType.resolve(System.getProperty("netty.transport", "auto")))
+				.setLeanPipeline(Boolean.getBoolean("netty.lean"))
+				.setWriteBatching(Boolean.getBoolean("netty.batching"))
+				.setCompression(FrameCompression.resolve(System.getProperty("netty.compression", "none")))
+				.setCompressionThreshold(Integer.getInteger("netty.compression.threshold", NettyCustomizedMessageToMessageCodec.DEFAULT_COMPRESSION_THRESHOLD))
+				.setMetrics(Boolean.getBoolean("netty.metrics") ? new NettyMetrics() : null)
+				.setMetricsLogSeconds(Integer.getInteger("netty.metrics.period", 60))
+				.setHeartbeatIntervalMillis(Integer.getInteger("netty.heartbeat.interval", ClientChannelInitializer.HEARTBEAT_INTERVAL_SECONDS * 1000));
+		String nodes = System.getProperty("netty.nodes");
+		if (nodes != null) {
+			nettyClientLauncher.setNodes(parseNodes(nodes)).setConnectionsPerNode(Integer.getInteger("netty.nodes.connections", 1));
+		}
+		String uploadFile = System.getProperty("netty.upload");
+		if (uploadFile != null) {
+			nettyClientLauncher.setUploadFile(Path.of(uploadFile));
+		}
 		nettyClientLauncher.bootStrap();
 	}
 }
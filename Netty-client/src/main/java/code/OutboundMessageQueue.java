@@ -0,0 +1,176 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queue between application threads and the channel.
+ * Messages are only written while the channel is writable, the rest waits here until the write buffer drains below its low water mark.
+ * Once capacity messages are waiting {@link #offer(Object)} refuses new ones, so a fast producer sees backpressure instead of growing the outbound buffer without bound.
+ * {@link RpcClient} sends all requests through it when the pipeline has one.
+ * Add it at the end of the pipeline. Not sharable, the queue is per channel.
+ */
+public class OutboundMessageQueue extends ChannelInboundHandlerAdapter {
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final int capacity;
+	private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicBoolean drainScheduled = new AtomicBoolean();
+	private volatile ChannelHandlerContext ctx;
+
+	public OutboundMessageQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param capacity maximum number of messages waiting for the channel
+	 */
+	public OutboundMessageQueue(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Find the queue of a channel
+	 *
+	 * @param channel channel
+	 *
+	 * @return queue, null if the pipeline has none
+	 */
+	public static OutboundMessageQueue of(Channel channel) {
+		return channel.pipeline().get(OutboundMessageQueue.class);
+	}
+
+	/**
+	 * Queue a message for writing, callable from any thread
+	 *
+	 * @param msg msg
+	 *
+	 * @return false if the queue is full or the channel is gone, the message was not taken then
+	 */
+	public boolean offer(Object msg) {
+		return offer(msg, null);
+	}
+
+	/**
+	 * Queue a message for writing, callable from any thread
+	 *
+	 * @param msg     msg
+	 * @param promise completed once the message has been written, failed if the channel goes away first, may be null
+	 *
+	 * @return false if the queue is full or the channel is gone, the message was not taken then
+	 */
+	public boolean offer(Object msg, ChannelPromise promise) {
+		ChannelHandlerContext context = ctx;
+		if (context == null || !context.channel().isActive()) {
+			return false;
+		}
+		if (size.incrementAndGet() > capacity) {
+			size.decrementAndGet();
+			return false;
+		}
+		queue.offer(new Entry(msg, promise));
+		// The channel may have gone inactive and discarded the queue since the check above, only the event loop may empty it
+		if (drainScheduled.compareAndSet(false, true) || !context.channel().isActive()) {
+			context.executor().execute(() -> drain(context));
+		}
+		return true;
+	}
+
+	/**
+	 * Number of messages waiting for the channel
+	 *
+	 * @return size
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (ctx.channel().isWritable()) {
+			drain(ctx);
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		discard();
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) {
+		discard();
+	}
+
+	/**
+	 * Write queued messages while the channel accepts them, runs on the event loop
+	 *
+	 * @param ctx ctx
+	 */
+	private void drain(ChannelHandlerContext ctx) {
+		drainScheduled.set(false);
+		if (!ctx.channel().isActive()) {
+			discard();
+			return;
+		}
+		boolean written = false;
+		while (ctx.channel().isWritable()) {
+			Entry entry = queue.poll();
+			if (entry == null) {
+				break;
+			}
+			size.decrementAndGet();
+			ctx.write(entry.msg, entry.promise == null ? ctx.voidPromise() : entry.promise);
+			written = true;
+		}
+		if (written) {
+			ctx.flush();
+		}
+	}
+
+	private void discard() {
+		Entry entry;
+		while ((entry = queue.poll()) != null) {
+			size.decrementAndGet();
+			ReferenceCountUtil.release(entry.msg);
+			if (entry.promise != null) {
+				entry.promise.tryFailure(new ClosedChannelException());
+			}
+		}
+	}
+
+	/**
+	 * A queued message and the promise of its write
+	 */
+	private static final class Entry {
+		private final Object msg;
+		private final ChannelPromise promise;
+
+		private Entry(Object msg, ChannelPromise promise) {
+			this.msg = msg;
+			this.promise = promise;
+		}
+	}
+}
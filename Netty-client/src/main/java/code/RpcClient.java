@@ -0,0 +1,237 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous request/response client of one connection.
+ * Every {@link RpcRequest} gets a future that completes with the {@link RpcResponse} carrying the same sequenceId, so any number of requests
+ * up to maxOutstanding can be in flight on the connection at once and responses may arrive in any order.
+ * The correlation table is only touched on the event loop of the channel, so it needs no locking.
+ * Futures complete on the event loop, callbacks that block must move to another executor.
+ * Pushes of the server, see {@link CustomizedMessageType#isPush()}, never complete a call, they are passed on to the handlers behind this one.
+ * With pooling enabled, see {@link MessagePool}, callers release responses once they are done with them, unreleased ones are left to the GC.
+ * Requests go through the {@link OutboundMessageQueue} of the pipeline if it has one, so they are only written while the channel is writable
+ * and fail with RejectedExecutionException once the queue is full.
+ * Add it at the end of the client pipeline. Not sharable, the correlation table is per channel.
+ */
+@Slf4j
+public class RpcClient extends SimpleChannelInboundHandler<RpcResponse> {
+	public static final int DEFAULT_MAX_OUTSTANDING = 1024;
+	public static final long DEFAULT_TIMEOUT_MILLIS = 3000;
+
+	private final int maxOutstanding;
+	private final long defaultTimeoutMillis;
+	private final NettyMetrics metrics;
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final IntObjectMap<PendingCall> pendingCalls = new IntObjectHashMap<>();
+	private volatile ChannelHandlerContext ctx;
+
+	public RpcClient() {
+		this(DEFAULT_MAX_OUTSTANDING, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param maxOutstanding       maximum number of requests in flight, further calls fail right away
+	 * @param defaultTimeoutMillis timeout of {@link #call(RpcRequest)}
+	 */
+	public RpcClient(int maxOutstanding, long defaultTimeoutMillis) {
+		this(maxOutstanding, defaultTimeoutMillis, null);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param maxOutstanding       maximum number of requests in flight, further calls fail right away
+	 * @param defaultTimeoutMillis timeout of {@link #call(RpcRequest)}
+	 * @param metrics              request latencies are recorded here, may be null
+	 */
+	public RpcClient(int maxOutstanding, long defaultTimeoutMillis, NettyMetrics metrics) {
+		this.maxOutstanding = maxOutstanding;
+		this.defaultTimeoutMillis = defaultTimeoutMillis;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Find the client of a channel
+	 *
+	 * @param channel channel
+	 *
+	 * @return client, null if the pipeline has none
+	 */
+	public static RpcClient of(Channel channel) {
+		return channel.pipeline().get(RpcClient.class);
+	}
+
+	/**
+	 * Send a request with the default timeout, callable from any thread
+	 *
+	 * @param request request
+	 *
+	 * @return future of the response
+	 */
+	public CompletableFuture<RpcResponse> call(RpcRequest request) {
+		return call(request, defaultTimeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Send a request, callable from any thread
+	 *
+	 * @param request request
+	 * @param timeout time to wait for the response
+	 * @param unit    unit of timeout
+	 *
+	 * @return future of the response, fails with TimeoutException, RejectedExecutionException when too many requests are in flight
+	 * or the outbound queue is full, or ClosedChannelException when the connection goes away first
+	 */
+	public CompletableFuture<RpcResponse> call(RpcRequest request, long timeout, TimeUnit unit) {
+		ChannelHandlerContext context = ctx;
+		if (context == null || !context.channel().isActive()) {
+			return CompletableFuture.failedFuture(new ClosedChannelException());
+		}
+		if (outstanding.incrementAndGet() > maxOutstanding) {
+			outstanding.decrementAndGet();
+			return CompletableFuture.failedFuture(new RejectedExecutionException("More than " + maxOutstanding + " requests in flight"));
+		}
+		CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+		if (context.executor().inEventLoop()) {
+			send(context, request, future, unit.toNanos(timeout));
+		} else {
+			try {
+				context.executor().execute(() -> send(context, request, future, unit.toNanos(timeout)));
+			} catch (RejectedExecutionException e) {
+				outstanding.decrementAndGet();
+				future.completeExceptionally(e);
+			}
+		}
+		return future;
+	}
+
+	/**
+	 * Number of requests waiting for their response
+	 *
+	 * @return outstanding requests
+	 */
+	public int outstanding() {
+		return outstanding.get();
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+		this.ctx = ctx;
+	}
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, RpcResponse response) {
+		if (response.isPush()) {
+			// Its id is one of the server, a request waiting under the same id must not get it
+			ctx.fireChannelRead(ReferenceCountUtil.retain(response));
+			return;
+		}
+		PendingCall pendingCall = pendingCalls.remove(response.getSequenceId());
+		if (pendingCall == null) {
+			log.debug("Dropping response {}, its request timed out or was never sent", response.getSequenceId());
+			return;
+		}
+		if (metrics != null) {
+			metrics.requestCompleted(System.nanoTime() - pendingCall.sentNanos);
+		}
+		// The caller owns the response from here on, SimpleChannelInboundHandler releases the reference of the pipeline
+		pendingCall.complete(ReferenceCountUtil.retain(response), null);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		failAll(new ClosedChannelException());
+		super.channelInactive(ctx);
+	}
+
+	/**
+	 * Register and write the request, runs on the event loop
+	 */
+	private void send(ChannelHandlerContext ctx, RpcRequest request, CompletableFuture<RpcResponse> future, long timeoutNanos) {
+		if (request.getSequenceId() == 0) {
+			request.setSequenceId(SequenceIdGenerator.of(ctx.channel()).next());
+		}
+		int sequenceId = request.getSequenceId();
+		PendingCall pendingCall = new PendingCall(future);
+		if (pendingCalls.putIfAbsent(sequenceId, pendingCall) != null) {
+			outstanding.decrementAndGet();
+			future.completeExceptionally(new IllegalStateException("Sequence id " + sequenceId + " is already in flight"));
+			return;
+		}
+		pendingCall.timeout = ctx.executor().schedule(() -> {
+			if (pendingCalls.remove(sequenceId) != null) {
+				pendingCall.complete(null, new TimeoutException("No response to request " + sequenceId + " within " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms"));
+			}
+		}, timeoutNanos, TimeUnit.NANOSECONDS);
+		ChannelPromise promise = ctx.newPromise();
+		promise.addListener((ChannelFutureListener) channelFuture -> {
+			if (!channelFuture.isSuccess() && pendingCalls.remove(sequenceId) != null) {
+				pendingCall.complete(null, channelFuture.cause());
+			}
+		});
+		OutboundMessageQueue outboundQueue = OutboundMessageQueue.of(ctx.channel());
+		if (outboundQueue == null) {
+			ctx.writeAndFlush(request, promise);
+		} else if (!outboundQueue.offer(request, promise)) {
+			// Not taken, the request is released as a failed write would be
+			ReferenceCountUtil.release(request);
+			promise.setFailure(ctx.channel().isActive() ? new RejectedExecutionException("Outbound queue of " + ctx.channel() + " is full")
+					: new ClosedChannelException());
+		}
+	}
+
+	private void failAll(Throwable cause) {
+		for (PendingCall pendingCall : pendingCalls.values()) {
+			pendingCall.complete(null, cause);
+		}
+		pendingCalls.clear();
+	}
+
+	/**
+	 * A request waiting for its response
+	 */
+	private final class PendingCall {
+		private final CompletableFuture<RpcResponse> future;
+		private final long sentNanos;
+		private ScheduledFuture<?> timeout;
+
+		private PendingCall(CompletableFuture<RpcResponse> future) {
+			this.future = future;
+			this.sentNanos = metrics == null ? 0 : System.nanoTime();
+		}
+
+		private void complete(RpcResponse response, Throwable cause) {
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+			outstanding.decrementAndGet();
+			if (cause == null) {
+				future.complete(response);
+			} else {
+				future.completeExceptionally(cause);
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static code.CodecFixture.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routes over in-process servers on different ports, see {@link TransportType#Local}
+ */
+class ConsistentHashRouterTest {
+	private static final int KEYS = 100_000;
+	private static final InetSocketAddress NODE_A = InetSocketAddress.createUnresolved("localhost", 19001);
+	private static final InetSocketAddress NODE_B = InetSocketAddress.createUnresolved("localhost", 19002);
+	private static final InetSocketAddress NODE_C = InetSocketAddress.createUnresolved("localhost", 19003);
+	private static final InetSocketAddress NODE_D = InetSocketAddress.createUnresolved("localhost", 19004);
+
+	private EventLoopGroup group;
+	private ConnectionPool connectionPool;
+	private ConsistentHashRouter router;
+
+	@BeforeEach
+	void setUp() {
+		group = TransportType.Local.newEventLoopGroup(2);
+		connectionPool = new ConnectionPool(group, TransportType.Local, new ClientChannelInitializer().setLeanPipeline(true), 1);
+		router = new ConsistentHashRouter(connectionPool);
+	}
+
+	@AfterEach
+	void tearDown() {
+		connectionPool.close();
+		group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+	}
+
+	@Test
+	void emptyRingRoutesNowhere() {
+		assertNull(router.route("key"));
+	}
+
+	@Test
+	void hashIsStableAndSpreadsSimilarKeys() {
+		assertEquals(ConsistentHashRouter.hash("user-1"), ConsistentHashRouter.hash("user-1"));
+		assertNotEquals(ConsistentHashRouter.hash("user-1"), ConsistentHashRouter.hash("user-2"));
+		// Keys differing in one character land far apart, about half of the bits differ
+		int differingBits = Long.bitCount(ConsistentHashRouter.hash("user-1") ^ ConsistentHashRouter.hash("user-2"));
+		assertTrue(differingBits > 16 && differingBits < 48, "differing bits: " + differingBits);
+	}
+
+	@Test
+	void keysAreSpreadEvenlyAcrossNodes() {
+		// No server is up, so every key goes to the owner of its arc
+		router.addNodes(List.of(NODE_A, NODE_B, NODE_C));
+		Map<InetSocketAddress, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(router.route("key-" + i), 1, Integer::sum);
+		}
+		assertEquals(3, counts.size());
+		for (Map.Entry<InetSocketAddress, Integer> count : counts.entrySet()) {
+			double share = count.getValue() / (double) KEYS;
+			assertTrue(share > 0.25 && share < 0.42, count.getKey() + " got " + share);
+		}
+	}
+
+	@Test
+	void addingANodeOnlyMovesKeysToIt() {
+		router.addNodes(List.of(NODE_A, NODE_B, NODE_C));
+		Map<String, InetSocketAddress> before = routes();
+		router.addNode(NODE_D);
+		int moved = 0;
+		for (Map.Entry<String, InetSocketAddress> route : before.entrySet()) {
+			InetSocketAddress now = router.route(route.getKey());
+			if (!now.equals(route.getValue())) {
+				assertEquals(NODE_D, now, "key " + route.getKey() + " moved between old nodes");
+				moved++;
+			}
+		}
+		// About 1/4 of the keys belong to the new node
+		double share = moved / (double) KEYS;
+		assertTrue(share > 0.18 && share < 0.32, "moved " + share);
+	}
+
+	@Test
+	void removingANodeOnlyMovesItsKeys() {
+		router.addNodes(List.of(NODE_A, NODE_B, NODE_C, NODE_D));
+		Map<String, InetSocketAddress> before = routes();
+		router.removeNode(NODE_D);
+		for (Map.Entry<String, InetSocketAddress> route : before.entrySet()) {
+			InetSocketAddress now = router.route(route.getKey());
+			if (route.getValue().equals(NODE_D)) {
+				assertNotEquals(NODE_D, now);
+			} else {
+				assertEquals(route.getValue(), now, "key " + route.getKey() + " of a remaining node moved");
+			}
+		}
+		assertEquals(List.of(NODE_A, NODE_B, NODE_C), router.nodes());
+	}
+
+	@Test
+	void unhealthyNodesAreSkippedUntilTheyAreBack() throws Exception {
+		List<LocalServer> servers = List.of(new LocalServer(NODE_A), new LocalServer(NODE_B), new LocalServer(NODE_C));
+		try {
+			router.addNodes(List.of(NODE_A, NODE_B, NODE_C));
+			await(() -> connectionPool.isHealthy(NODE_A) && connectionPool.isHealthy(NODE_B) && connectionPool.isHealthy(NODE_C));
+			Map<String, InetSocketAddress> healthy = routes();
+
+			servers.get(1).close();
+			await(() -> !connectionPool.isHealthy(NODE_B));
+			for (Map.Entry<String, InetSocketAddress> route : healthy.entrySet()) {
+				InetSocketAddress now = router.route(route.getKey());
+				if (route.getValue().equals(NODE_B)) {
+					assertNotEquals(NODE_B, now);
+				} else {
+					assertEquals(route.getValue(), now, "key " + route.getKey() + " of a healthy node moved");
+				}
+			}
+
+			// The pool reconnects on its own and the keys go back without rebuilding the ring
+			LocalServer restarted = new LocalServer(NODE_B);
+			try {
+				await(() -> connectionPool.isHealthy(NODE_B));
+				assertEquals(healthy, routes());
+			} finally {
+				restarted.close();
+			}
+		} finally {
+			servers.forEach(LocalServer::close);
+		}
+	}
+
+	private Map<String, InetSocketAddress> routes() {
+		Map<String, InetSocketAddress> routes = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			routes.put("key-" + i, router.route("key-" + i));
+		}
+		return routes;
+	}
+
+	/**
+	 * In-process server that accepts connections and drops what it reads
+	 */
+	private final class LocalServer {
+		private final Channel serverChannel;
+		private final ChannelGroup children = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+		private LocalServer(InetSocketAddress address) {
+			serverChannel = new ServerBootstrap()
+					.group(group)
+					.channel(TransportType.Local.serverChannelClass())
+					.childHandler(new ChannelInboundHandlerAdapter() {
+						@Override
+						public void channelActive(ChannelHandlerContext ctx) throws Exception {
+							children.add(ctx.channel());
+							super.channelActive(ctx);
+						}
+
+						@Override
+						public void channelRead(ChannelHandlerContext ctx, Object msg) {
+							ReferenceCountUtil.release(msg);
+						}
+					})
+					.bind(TransportType.Local.address(null, address.getPort()))
+					.syncUninterruptibly()
+					.channel();
+		}
+
+		private void close() {
+			serverChannel.close().syncUninterruptibly();
+			children.close().syncUninterruptibly();
+		}
+	}
+}
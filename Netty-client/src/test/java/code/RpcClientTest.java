@@ -0,0 +1,149 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Calls over a client pipeline, the test answers them in place of the server.
+ * The embedded event loop runs the timeouts once its clock is advanced.
+ */
+class RpcClientTest {
+	private CodecFixture fixture;
+	private RpcClient client;
+
+	@AfterEach
+	void tearDown() {
+		if (fixture != null) {
+			fixture.close();
+		}
+	}
+
+	@Test
+	void responsesCompleteTheirCallsInAnyOrder() {
+		open(new RpcClient());
+		CompletableFuture<RpcResponse> first = client.call(new RpcRequest("echo", "a"));
+		CompletableFuture<RpcResponse> second = client.call(new RpcRequest("echo", "b"));
+		List<CustomizedMessageType> requests = fixture.replies();
+		assertEquals(2, requests.size());
+		assertEquals(2, client.outstanding());
+		fixture.send(response(requests.get(1).getSequenceId(), "b"));
+		assertFalse(first.isDone());
+		assertEquals("b", second.getNow(null).getBody());
+		fixture.send(response(requests.get(0).getSequenceId(), "a"));
+		assertEquals("a", first.getNow(null).getBody());
+		assertEquals(0, client.outstanding());
+	}
+
+	@Test
+	void callsWithoutResponseTimeOut() {
+		open(new RpcClient(RpcClient.DEFAULT_MAX_OUTSTANDING, 100));
+		fixture.receiver().freezeTime();
+		CompletableFuture<RpcResponse> future = client.call(new RpcRequest("echo", "a"));
+		int sequenceId = fixture.reply(RpcRequest.class).getSequenceId();
+		fixture.receiver().advanceTimeBy(100, TimeUnit.MILLISECONDS);
+		fixture.receiver().runScheduledPendingTasks();
+		assertFailsWith(TimeoutException.class, future);
+		assertEquals(0, client.outstanding());
+		// A late response finds no call and is dropped
+		fixture.send(response(sequenceId, "a"));
+		assertNull(fixture.receiver().readInbound());
+	}
+
+	@Test
+	void answeredCallsDoNotTimeOut() {
+		open(new RpcClient(RpcClient.DEFAULT_MAX_OUTSTANDING, 100));
+		fixture.receiver().freezeTime();
+		CompletableFuture<RpcResponse> future = client.call(new RpcRequest("echo", "a"));
+		fixture.send(response(fixture.reply(RpcRequest.class).getSequenceId(), "a"));
+		fixture.receiver().advanceTimeBy(1, TimeUnit.SECONDS);
+		fixture.receiver().runScheduledPendingTasks();
+		assertEquals("a", future.getNow(null).getBody());
+	}
+
+	@Test
+	void callsBeyondMaxOutstandingAreRejected() {
+		open(new RpcClient(2, RpcClient.DEFAULT_TIMEOUT_MILLIS));
+		client.call(new RpcRequest("echo", "a"));
+		client.call(new RpcRequest("echo", "b"));
+		assertFailsWith(RejectedExecutionException.class, client.call(new RpcRequest("echo", "c")));
+		assertEquals(2, client.outstanding());
+		assertEquals(2, fixture.replies().size());
+	}
+
+	@Test
+	void callsWithAnIdInFlightAreRefused() {
+		open(new RpcClient());
+		RpcRequest request = new RpcRequest("echo", "a");
+		request.setSequenceId(5);
+		CompletableFuture<RpcResponse> first = client.call(request);
+		RpcRequest again = new RpcRequest("echo", "b");
+		again.setSequenceId(5);
+		assertFailsWith(IllegalStateException.class, client.call(again));
+		assertFalse(first.isDone());
+		assertEquals(1, client.outstanding());
+	}
+
+	@Test
+	void pendingCallsFailWhenTheConnectionCloses() {
+		open(new RpcClient());
+		CompletableFuture<RpcResponse> future = client.call(new RpcRequest("echo", "a"));
+		fixture.receiver().close();
+		assertFailsWith(ClosedChannelException.class, future);
+		assertEquals(0, client.outstanding());
+		assertFailsWith(ClosedChannelException.class, client.call(new RpcRequest("echo", "b")));
+	}
+
+	@Test
+	void pushesDoNotCompleteCalls() {
+		open(new RpcClient());
+		CompletableFuture<RpcResponse> future = client.call(new RpcRequest("echo", "a"));
+		int sequenceId = fixture.reply(RpcRequest.class).getSequenceId();
+		// The server counts its pushes on its own, one may carry the id of a pending call
+		ByteBuf push = fixture.encodeFrame(response(sequenceId, "tick"));
+		push.setByte(FrameFlags.OFFSET, FrameFlags.push(push.getUnsignedByte(FrameFlags.OFFSET)));
+		fixture.receive(push);
+		assertFalse(future.isDone());
+		RpcResponse passedOn = fixture.read(RpcResponse.class);
+		assertTrue(passedOn.isPush());
+		assertEquals("tick", passedOn.getBody());
+		fixture.send(response(sequenceId, "a"));
+		assertEquals("a", future.getNow(null).getBody());
+		assertEquals(0, client.outstanding());
+	}
+
+	private void open(RpcClient client) {
+		this.client = client;
+		fixture = new CodecFixture(new ChannelHandler[]{new NettyCustomizedMessageToMessageCodec(), client});
+	}
+
+	private static void assertFailsWith(Class<? extends Throwable> cause, CompletableFuture<RpcResponse> future) {
+		assertTrue(future.isDone());
+		assertInstanceOf(cause, assertThrows(ExecutionException.class, future::get).getCause());
+	}
+
+	private static RpcResponse response(int sequenceId, String body) {
+		RpcResponse response = RpcResponse.success(body);
+		response.setSequenceId(sequenceId);
+		return response;
+	}
+}
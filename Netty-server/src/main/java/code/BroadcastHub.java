@@ -0,0 +1,353 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes messages to all connections or to the subscribers of a topic.
+ * A message is serialized once into a shared frame, every subscriber gets its own header with its own sequenceId in front of a retained
+ * slice of that frame, see {@link NettyCustomizedMessageToMessageCodec#retainedFrames}. Fan-out to 10k connections costs one encoding.
+ * Pushes carry {@link FrameFlags#PUSH}, their ids come from the server and may equal the id of a request the client is waiting for.
+ * Subscribers that are not writable are handled by the {@link SlowConsumerPolicy}, so a slow one cannot make the server buffer without bound.
+ * Add it to every pipeline behind the codec, it tracks the connections and resumes conflated subscribers once they are writable again.
+ * In-process subscribers get a message decoded from the frame instead, their pipelines have no codec.
+ * Topics are named by the clients, so a connection may only hold a few subscriptions and drops them all when it closes.
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class BroadcastHub extends ChannelInboundHandlerAdapter {
+	public static final int DEFAULT_MAX_TOPICS_PER_CHANNEL = 64;
+	/**
+	 * conflation key of {@link #broadcast}, topics are named by the application
+	 */
+	private static final String ALL = "";
+	/**
+	 * latest message per topic waiting for a conflated subscriber to become writable, only touched on its event loop
+	 */
+	private static final AttributeKey<Map<String, ByteBuf>> CONFLATED = AttributeKey.valueOf(BroadcastHub.class, "conflated");
+	/**
+	 * topics a connection subscribed to, to unsubscribe it when it closes
+	 */
+	private static final AttributeKey<Set<String>> SUBSCRIPTIONS = AttributeKey.valueOf(BroadcastHub.class, "subscriptions");
+
+	private final NettyCustomizedMessageToMessageCodec codec;
+	private final SlowConsumerPolicy slowConsumerPolicy;
+	private final int maxTopicsPerChannel;
+	private final ChannelGroup channels = new DefaultChannelGroup("broadcast", GlobalEventExecutor.INSTANCE);
+	private final ConcurrentMap<String, ChannelGroup> topics = new ConcurrentHashMap<>();
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * Hub with the default number of topics per connection
+	 *
+	 * @param codec              encodes the messages, configure it like the codec of the pipelines for the same compression
+	 * @param slowConsumerPolicy what to do with subscribers that are not writable
+	 */
+	public BroadcastHub(NettyCustomizedMessageToMessageCodec codec, SlowConsumerPolicy slowConsumerPolicy) {
+		this(codec, slowConsumerPolicy, DEFAULT_MAX_TOPICS_PER_CHANNEL);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param codec               encodes the messages, configure it like the codec of the pipelines for the same compression
+	 * @param slowConsumerPolicy  what to do with subscribers that are not writable
+	 * @param maxTopicsPerChannel topics a connection may subscribe to at once
+	 */
+	public BroadcastHub(NettyCustomizedMessageToMessageCodec codec, SlowConsumerPolicy slowConsumerPolicy, int maxTopicsPerChannel) {
+		if (maxTopicsPerChannel <= 0) {
+			throw new IllegalArgumentException("maxTopicsPerChannel must be positive: " + maxTopicsPerChannel);
+		}
+		this.codec = codec;
+		this.slowConsumerPolicy = slowConsumerPolicy;
+		this.maxTopicsPerChannel = maxTopicsPerChannel;
+	}
+
+	/**
+	 * Subscribe a connection to a topic until it unsubscribes or closes
+	 *
+	 * @param topic   topic
+	 * @param channel connection
+	 *
+	 * @return false if the connection already holds the maximum number of topics
+	 */
+	public boolean subscribe(String topic, Channel channel) {
+		Set<String> subscriptions = subscriptionsOf(channel);
+		if (!subscriptions.contains(topic) && subscriptions.size() >= maxTopicsPerChannel) {
+			return false;
+		}
+		subscriptions.add(topic);
+		topics.compute(topic, (name, subscribers) -> {
+			if (subscribers == null) {
+				subscribers = new DefaultChannelGroup(name, GlobalEventExecutor.INSTANCE);
+			}
+			subscribers.add(channel);
+			return subscribers;
+		});
+		// A connection that closed in the meantime has already been cleaned up, the topic must not outlive it
+		if (!channel.isActive()) {
+			unsubscribeAll(channel);
+		}
+		return true;
+	}
+
+	/**
+	 * Unsubscribe a connection from a topic
+	 *
+	 * @param topic   topic
+	 * @param channel connection
+	 */
+	public void unsubscribe(String topic, Channel channel) {
+		subscriptionsOf(channel).remove(topic);
+		removeSubscriber(topic, channel);
+	}
+
+	private void removeSubscriber(String topic, Channel channel) {
+		// The topic goes away with its last subscriber, inside compute so a concurrent subscribe cannot land in a discarded group
+		// The group may have dropped a closed channel by itself already, so emptiness is checked either way
+		topics.computeIfPresent(topic, (name, subscribers) -> {
+			subscribers.remove(channel);
+			return subscribers.isEmpty() ? null : subscribers;
+		});
+	}
+
+	private void unsubscribeAll(Channel channel) {
+		Set<String> subscriptions = channel.attr(SUBSCRIPTIONS).get();
+		if (subscriptions == null) {
+			return;
+		}
+		for (String topic : subscriptions) {
+			subscriptions.remove(topic);
+			removeSubscriber(topic, channel);
+		}
+	}
+
+	private static Set<String> subscriptionsOf(Channel channel) {
+		Set<String> subscriptions = channel.attr(SUBSCRIPTIONS).get();
+		if (subscriptions == null) {
+			// Subscriptions may come from a business thread, so the set is concurrent
+			Set<String> created = ConcurrentHashMap.newKeySet();
+			subscriptions = channel.attr(SUBSCRIPTIONS).setIfAbsent(created);
+			if (subscriptions == null) {
+				subscriptions = created;
+			}
+		}
+		return subscriptions;
+	}
+
+	/**
+	 * Number of topics with at least one subscriber
+	 *
+	 * @return topics
+	 */
+	public int topicCount() {
+		return topics.size();
+	}
+
+	/**
+	 * Push a message to all connections
+	 *
+	 * @param message message, left unchanged, every connection gets a sequenceId of its own in the frame
+	 *
+	 * @return number of connections it was handed to
+	 */
+	public int broadcast(CustomizedMessageType message) {
+		return send(channels, ALL, message);
+	}
+
+	/**
+	 * Push a message to the subscribers of a topic
+	 *
+	 * @param topic   topic
+	 * @param message message, left unchanged, every subscriber gets a sequenceId of its own in the frame
+	 *
+	 * @return number of subscribers it was handed to
+	 */
+	public int publish(String topic, CustomizedMessageType message) {
+		ChannelGroup subscribers = topics.get(topic);
+		return subscribers == null ? 0 : send(subscribers, topic, message);
+	}
+
+	/**
+	 * Messages slow subscribers did not get, dropped, replaced by a later one or lost with the connection
+	 *
+	 * @return dropped messages since the start
+	 */
+	public long dropped() {
+		return dropped.sum();
+	}
+
+	private int send(ChannelGroup subscribers, String topic, CustomizedMessageType message) {
+		if (subscribers.isEmpty()) {
+			return 0;
+		}
+		ByteBuf frame = codec.encodeFrame(ByteBufAllocator.DEFAULT, message, 0);
+		int flagsIndex = frame.readerIndex() + FrameFlags.OFFSET;
+		frame.setByte(flagsIndex, FrameFlags.push(frame.getUnsignedByte(flagsIndex)));
+		int sent = 0;
+		try {
+			for (Channel channel : subscribers) {
+				// Every delivery owns a reference, the frame is freed once the last subscriber has written it
+				frame.retain();
+				EventLoop eventLoop = channel.eventLoop();
+				if (eventLoop.inEventLoop()) {
+					deliver(channel, topic, frame);
+				} else {
+					try {
+						eventLoop.execute(() -> deliver(channel, topic, frame));
+					} catch (RejectedExecutionException e) {
+						frame.release();
+						continue;
+					}
+				}
+				sent++;
+			}
+		} finally {
+			frame.release();
+		}
+		return sent;
+	}
+
+	/**
+	 * Write a frame to a subscriber or apply the slow consumer policy, on the event loop of the subscriber
+	 *
+	 * @param channel subscriber
+	 * @param topic   topic of the frame
+	 * @param frame   shared frame, the reference of this delivery is passed on or released here
+	 */
+	private void deliver(Channel channel, String topic, ByteBuf frame) {
+		if (!channel.isActive()) {
+			frame.release();
+			return;
+		}
+		if (channel.isWritable()) {
+			Map<String, ByteBuf> conflated = channel.attr(CONFLATED).get();
+			if (conflated != null && !conflated.isEmpty()) {
+				// Conflated messages go first, except the one of this topic which this message replaces
+				ByteBuf superseded = conflated.remove(topic);
+				if (superseded != null) {
+					superseded.release();
+					dropped.increment();
+				}
+				writeConflated(channel, conflated);
+			}
+			write(channel, frame);
+			channel.flush();
+			return;
+		}
+		switch (slowConsumerPolicy) {
+			case Drop -> {
+				frame.release();
+				dropped.increment();
+			}
+			case Conflate -> {
+				Map<String, ByteBuf> conflated = channel.attr(CONFLATED).get();
+				if (conflated == null) {
+					conflated = new LinkedHashMap<>();
+					channel.attr(CONFLATED).set(conflated);
+				}
+				ByteBuf previous = conflated.put(topic, frame);
+				if (previous != null) {
+					previous.release();
+					dropped.increment();
+				}
+			}
+			case Disconnect -> {
+				frame.release();
+				dropped.increment();
+				log.warn("Closing slow consumer {}", channel);
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Write a shared frame under the next sequenceId of the channel
+	 *
+	 * @param channel channel
+	 * @param frame   shared frame, released here
+	 */
+	private void write(Channel channel, ByteBuf frame) {
+		if (TransportType.isInProcess(channel)) {
+			// In-process connections carry messages, every one gets its own instance since the receiver owns and may change it
+			CustomizedMessageType message;
+			try {
+				message = codec.decodeFrame(channel.alloc(), frame.duplicate());
+			} finally {
+				frame.release();
+			}
+			message.setSequenceId(SequenceIdGenerator.of(channel).next());
+			channel.write(message, channel.voidPromise());
+			return;
+		}
+		List<Object> frames = new ArrayList<>(1);
+		try {
+			codec.retainedFrames(channel.alloc(), frame, SequenceIdGenerator.of(channel).next(), frames);
+		} finally {
+			frame.release();
+		}
+		for (Object part : frames) {
+			channel.write(part, channel.voidPromise());
+		}
+	}
+
+	private void writeConflated(Channel channel, Map<String, ByteBuf> conflated) {
+		// Take them out first, a write may fire a writability change that gets back here
+		List<ByteBuf> frames = new ArrayList<>(conflated.values());
+		conflated.clear();
+		for (ByteBuf frame : frames) {
+			write(channel, frame);
+		}
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+		channels.add(ctx.channel());
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		Map<String, ByteBuf> conflated = ctx.channel().attr(CONFLATED).get();
+		if (ctx.channel().isWritable() && conflated != null && !conflated.isEmpty()) {
+			writeConflated(ctx.channel(), conflated);
+			ctx.channel().flush();
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		unsubscribeAll(ctx.channel());
+		Map<String, ByteBuf> conflated = ctx.channel().attr(CONFLATED).getAndSet(null);
+		if (conflated != null) {
+			for (ByteBuf frame : conflated.values()) {
+				frame.release();
+				dropped.increment();
+			}
+		}
+		super.channelInactive(ctx);
+	}
+}
@@ -0,0 +1,173 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link RpcDispatcher} on a business executor instead of the event loop, so a slow handler only delays its own connection.
+ * Messages of a connection are queued and handled one at a time in arrival order, whatever thread the executor picks.
+ * The queue holds at most queueCapacity messages, the {@link OverloadPolicy} decides what happens beyond that.
+ * Responses are written from the business thread, netty hands them over to the event loop.
+ * Not sharable, the queue is per channel.
+ */
+@Slf4j
+public class BusinessExecutorHandler extends ChannelInboundHandlerAdapter {
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	/**
+	 * messages handled per executor task, so connections sharing a pooled thread take turns
+	 */
+	private static final int MAX_MESSAGES_PER_TASK = 64;
+
+	private final RpcDispatcher dispatcher;
+	private final Executor executor;
+	private final int queueCapacity;
+	private final OverloadPolicy overloadPolicy;
+	private final Queue<CustomizedMessageType> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final Runnable drainTask = this::drain;
+	private ChannelHandlerContext ctx;
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param dispatcher     application handlers
+	 * @param executor       business executor, shared by all connections
+	 * @param queueCapacity  messages a connection may have waiting
+	 * @param overloadPolicy what to do with messages beyond the capacity
+	 */
+	public BusinessExecutorHandler(RpcDispatcher dispatcher, Executor executor, int queueCapacity, OverloadPolicy overloadPolicy) {
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+		}
+		this.dispatcher = dispatcher;
+		this.executor = executor;
+		this.queueCapacity = queueCapacity;
+		this.overloadPolicy = overloadPolicy;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) {
+		if (!(msg instanceof CustomizedMessageType message)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		if (overloadPolicy == OverloadPolicy.Reject && pending.get() >= queueCapacity) {
+			reject(message);
+			return;
+		}
+		queue.offer(message);
+		if (pending.incrementAndGet() >= queueCapacity && overloadPolicy == OverloadPolicy.Backpressure) {
+			ReadPause.pause(ctx.channel(), ReadPause.BUSINESS_QUEUE);
+			// The business thread only reads the pause as a hint, it may have drained the queue before the pause was visible to it
+			if (pending.get() <= queueCapacity / 2) {
+				ReadPause.resume(ctx.channel(), ReadPause.BUSINESS_QUEUE);
+			}
+		}
+		schedule();
+	}
+
+	/**
+	 * Hand the queue to the executor unless a task is already draining it
+	 */
+	private void schedule() {
+		if (!scheduled.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			executor.execute(drainTask);
+		} catch (RejectedExecutionException e) {
+			// The executor is saturated or shutting down, this thread now owns the queue and rejects what is in it
+			log.warn("Business executor rejected the messages of {}", ctx.channel(), e);
+			CustomizedMessageType message;
+			while ((message = queue.poll()) != null) {
+				reject(message);
+				completed();
+			}
+			scheduled.set(false);
+		}
+	}
+
+	/**
+	 * Handle queued messages on the business executor
+	 */
+	private void drain() {
+		for (int i = 0; i < MAX_MESSAGES_PER_TASK; i++) {
+			CustomizedMessageType message = queue.poll();
+			if (message == null) {
+				break;
+			}
+			try {
+				dispatcher.dispatch(ctx, message);
+			} finally {
+				ReferenceCountUtil.release(message);
+				completed();
+			}
+		}
+		scheduled.set(false);
+		// A message may have arrived after the last poll but before the flag was cleared
+		if (!queue.isEmpty()) {
+			schedule();
+		}
+	}
+
+	/**
+	 * Account a message that left the queue and resume reading once half of the queue is free
+	 */
+	private void completed() {
+		int remaining = pending.decrementAndGet();
+		if (overloadPolicy != OverloadPolicy.Backpressure || remaining > queueCapacity / 2) {
+			return;
+		}
+		Channel channel = ctx.channel();
+		if (ReadPause.isPaused(channel, ReadPause.BUSINESS_QUEUE)) {
+			channel.eventLoop().execute(() -> {
+				if (pending.get() <= queueCapacity / 2) {
+					ReadPause.resume(channel, ReadPause.BUSINESS_QUEUE);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Answer a request that cannot be queued, other messages are dropped
+	 *
+	 * @param message message, released here
+	 */
+	private void reject(CustomizedMessageType message) {
+		log.debug("Connection {} is overloaded, rejecting message type {}", ctx.channel(), message.getMessageType());
+		if (message instanceof RpcRequest) {
+			RpcResponse response = RpcResponse.failure("Server overloaded");
+			response.setSequenceId(message.getSequenceId());
+			ctx.writeAndFlush(response, ctx.voidPromise());
+		}
+		ReferenceCountUtil.release(message);
+	}
+
+	/**
+	 * Number of messages of the connection that are queued or being handled
+	 *
+	 * @return pending messages
+	 */
+	public int pending() {
+		return pending.get();
+	}
+}
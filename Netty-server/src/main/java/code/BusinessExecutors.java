@@ -0,0 +1,92 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors for the application handlers of a {@link BusinessExecutorHandler}
+ */
+@Slf4j
+public final class BusinessExecutors {
+	/**
+	 * tasks a pooled executor thread may queue before it rejects more
+	 */
+	public static final int DEFAULT_MAX_PENDING_TASKS = 64 * 1024;
+
+	private BusinessExecutors() {
+	}
+
+	/**
+	 * Whether the runtime has virtual threads, Java 21 and later
+	 *
+	 * @return available
+	 */
+	public static boolean isVirtualThreadsAvailable() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * One virtual thread per task, a blocking handler then only parks its own virtual thread
+	 *
+	 * @return executor
+	 *
+	 * @throws UnsupportedOperationException before Java 21
+	 */
+	public static ExecutorService virtualThreadPerTask() {
+		try {
+			// Looked up reflectively so the project still compiles for Java 17
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21", e);
+		}
+	}
+
+	/**
+	 * A fixed number of platform threads with bounded task queues, tasks beyond the bound are rejected
+	 *
+	 * @param threads number of threads
+	 *
+	 * @return executor
+	 */
+	public static DefaultEventExecutorGroup pooled(int threads) {
+		return new DefaultEventExecutorGroup(threads, new DefaultThreadFactory("business"), DEFAULT_MAX_PENDING_TASKS, RejectedExecutionHandlers.reject());
+	}
+
+	/**
+	 * Resolve the configured executor, virtual threads fall back to a pool before Java 21
+	 *
+	 * @param name    none, virtual or pool, case insensitive
+	 * @param threads number of threads of a pool
+	 *
+	 * @return executor, null for none, the handlers then run on the event loop
+	 */
+	public static ExecutorService resolve(String name, int threads) {
+		switch (name.toLowerCase()) {
+			case "none":
+				return null;
+			case "virtual":
+				if (isVirtualThreadsAvailable()) {
+					return virtualThreadPerTask();
+				}
+				log.warn("Virtual threads are not available on Java {}, using a pool of {} threads", Runtime.version().feature(), threads);
+				return pooled(threads);
+			case "pool":
+				return pooled(threads);
+			default:
+				throw new IllegalArgumentException("Unknown business executor: " + name);
+		}
+	}
+}
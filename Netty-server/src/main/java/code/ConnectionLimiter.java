@@ -0,0 +1,110 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of connections, in total and per client address.
+ * It goes into the pipeline of the server channel with ServerBootstrap.handler(), where accepted connections arrive as messages, so a
+ * connection beyond the limits is closed before it is registered with a worker loop or gets a pipeline.
+ * Sharable, the counts are shared by all acceptors.
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class ConnectionLimiter extends ChannelInboundHandlerAdapter {
+	private static final RateLimitedLog REJECT_LOG = RateLimitedLog.perSecond(1);
+
+	private final int maxConnections;
+	private final int maxConnectionsPerAddress;
+	private final AtomicInteger connections = new AtomicInteger();
+	private final ConcurrentMap<InetAddress, Integer> connectionsPerAddress = new ConcurrentHashMap<>();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param maxConnections           connections in total, 0 for no limit
+	 * @param maxConnectionsPerAddress connections per client address, 0 for no limit
+	 */
+	public ConnectionLimiter(int maxConnections, int maxConnectionsPerAddress) {
+		if (maxConnections < 0 || maxConnectionsPerAddress < 0) {
+			throw new IllegalArgumentException("Connection limits must not be negative");
+		}
+		this.maxConnections = maxConnections;
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) {
+		Channel child = (Channel) msg;
+		InetAddress address = address(child.remoteAddress());
+		if (!tryAcquire(address)) {
+			rejected.increment();
+			long suppressed = REJECT_LOG.acquire();
+			if (suppressed >= 0) {
+				log.warn("Connection limit reached, rejecting {} ({} more suppressed)", child.remoteAddress(), suppressed);
+			}
+			child.unsafe().closeForcibly();
+			return;
+		}
+		child.closeFuture().addListener(future -> release(address));
+		ctx.fireChannelRead(child);
+	}
+
+	private boolean tryAcquire(InetAddress address) {
+		int count = connections.incrementAndGet();
+		if (maxConnections > 0 && count > maxConnections) {
+			connections.decrementAndGet();
+			return false;
+		}
+		if (maxConnectionsPerAddress > 0 && address != null && connectionsPerAddress.merge(address, 1, Integer::sum) > maxConnectionsPerAddress) {
+			release(address);
+			return false;
+		}
+		return true;
+	}
+
+	private void release(InetAddress address) {
+		connections.decrementAndGet();
+		if (maxConnectionsPerAddress > 0 && address != null) {
+			// Addresses go away with their last connection, so the map only holds connected clients
+			connectionsPerAddress.computeIfPresent(address, (key, count) -> count == 1 ? null : count - 1);
+		}
+	}
+
+	private static InetAddress address(SocketAddress remoteAddress) {
+		return remoteAddress instanceof InetSocketAddress inetSocketAddress ? inetSocketAddress.getAddress() : null;
+	}
+
+	/**
+	 * Connections currently counted
+	 *
+	 * @return connections
+	 */
+	public int connections() {
+		return connections.get();
+	}
+
+	/**
+	 * Connections rejected since the start
+	 *
+	 * @return rejected connections
+	 */
+	public long rejected() {
+		return rejected.sum();
+	}
+}
@@ -0,0 +1,26 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Application handler of one message type, registered with {@link RpcDispatcher}
+ *
+ * @param <T> message class
+ */
+@FunctionalInterface
+public interface MessageHandler<T extends CustomizedMessageType> {
+	/**
+	 * Handle a message
+	 *
+	 * @param ctx     context of the connection the message came from
+	 * @param message message
+	 *
+	 * @return response, sent back with the sequenceId of the message, or null for no response
+	 *
+	 * @throws Exception exception, answered with {@link RpcResponse#failure(String)} when the message is an {@link RpcRequest}
+	 */
+	CustomizedMessageType handle(ChannelHandlerContext ctx, T message) throws Exception;
+}
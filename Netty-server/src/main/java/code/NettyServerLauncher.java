@@ -7,27 +7,143 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
+@Setter
+@Accessors(chain = true)
 public class NettyServerLauncher {
+	/**
+	 * heartbeats arrive every few seconds on every connection, a few log lines per second are plenty
+	 */
+	private static final RateLimitedLog HEARTBEAT_LOG = RateLimitedLog.perSecond(1);
+
 	private final int nioEventLoopGroup;
 	private final int inetPort;
+	/**
+	 * live connections, to find the one to tap
+	 */
+	private final ChannelGroup connections = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+	/**
+	 * socket transport, Nio unless set
+	 */
+	private TransportType transportType = TransportType.Nio;
+	/**
+	 * leave the LoggingHandler out of new pipelines, single connections can still be logged with {@link #attachWireTap(String)}.
+	 * Read for every new connection, so switching it at runtime affects the connections accepted afterwards.
+	 */
+	private volatile boolean leanPipeline;
+	/**
+	 * number of server channels bound to the port with SO_REUSEPORT, each gets its own accept loop.
+	 * Only honoured by transports that support SO_REUSEPORT.
+	 */
+	private int acceptorCount = 1;
+	/**
+	 * socket and buffer settings
+	 */
+	private ServerTuningProfile tuningProfile = ServerTuningProfile.throughput();
+	/**
+	 * coalesce flushes with a {@link FlushConsolidationHandler}
+	 */
+	private boolean writeBatching;
+	/**
+	 * compression of outgoing payloads, see {@link NettyCustomizedMessageToMessageCodec}
+	 */
+	private FrameCompression compression = FrameCompression.None;
+	/**
+	 * smallest payload in bytes worth compressing
+	 */
+	private int compressionThreshold = NettyCustomizedMessageToMessageCodec.DEFAULT_COMPRESSION_THRESHOLD;
+	/**
+	 * application handlers, shared by all connections
+	 */
+	private RpcDispatcher dispatcher = defaultDispatcher();
+	/**
+	 * runs the application handlers off the event loop, see {@link BusinessExecutorHandler}, null runs them on the event loop
+	 */
+	private Executor businessExecutor;
+	/**
+	 * messages a connection may have waiting for the business executor
+	 */
+	private int businessQueueCapacity = BusinessExecutorHandler.DEFAULT_QUEUE_CAPACITY;
+	/**
+	 * what happens to messages beyond the business queue capacity
+	 */
+	private OverloadPolicy overloadPolicy = OverloadPolicy.Reject;
+	/**
+	 * pushes messages to many connections, added to every pipeline when set
+	 */
+	private BroadcastHub broadcastHub;
+	/**
+	 * connections accepted in total, 0 for no limit
+	 */
+	private int maxConnections;
+	/**
+	 * connections accepted per client address, 0 for no limit
+	 */
+	private int maxConnectionsPerAddress;
+	/**
+	 * frames a connection may send per second before reading from it pauses, 0 for no limit
+	 */
+	private long messagesPerSecond;
+	/**
+	 * bytes a connection may send per second before reading from it pauses, 0 for no limit
+	 */
+	private long bytesPerSecond;
+	/**
+	 * throughput, latency and buffer metrics, null to collect none
+	 */
+	private NettyMetrics metrics;
+	/**
+	 * seconds between two logged metric snapshots, 0 to only pull them through {@link NettyMetrics#snapshot()}
+	 */
+	private int metricsLogSeconds = 60;
+	/**
+	 * milliseconds without reads before a connection is closed, until its client negotiates a heartbeat interval
+	 */
+	private int idleTimeoutMillis = 9000;
+	/**
+	 * smallest heartbeat interval a client may negotiate, more frequent proposals are raised to it
+	 */
+	private int minHeartbeatMillis = 1000;
+	/**
+	 * largest heartbeat interval a client may negotiate, the idle timeout is {@link IdleMonitor#MISSED_HEARTBEATS} intervals
+	 */
+	private int maxHeartbeatMillis = 60_000;
+	/**
+	 * directory uploads sent with a {@link FileTransferWriter} are written to, null to accept none
+	 */
+	private Path uploadDirectory;
+	/**
+	 * largest upload accepted in bytes
+	 */
+	private long maxUploadBytes = FileTransferReceiver.DEFAULT_MAX_LENGTH;
+	/**
+	 * answers repeated idempotent requests with their encoded response, null to answer every request
+	 */
+	private ResponseCache responseCache;
 
 	public NettyServerLauncher(int inetPort) {
 		this.nioEventLoopGroup = Runtime.getRuntime().availableProcessors();
@@ -46,33 +162,54 @@ public class NettyServerLauncher {
 	public void bootStrap() {
 		LoggingHandler loggingHandler = new LoggingHandler(LogLevel.DEBUG);
 
+		// Create a start object for the server, SO_REUSEPORT decides how many accept loops are worth having
+		ServerBootstrap bootstrap = new ServerBootstrap();
+		int bindCount = acceptorCount > 1 && transportType.enableReusePort(bootstrap) ? acceptorCount : 1;
+		log.info("Transport {}, {} acceptor(s), {} worker(s)", transportType, bindCount, nioEventLoopGroup);
+		log.info("Tuning profile {}", tuningProfile);
+
 		// Create two thread groups, boosGroup and workerGroup
-		EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-		EventLoopGroup workerGroup = new NioEventLoopGroup(nioEventLoopGroup);
+		EventLoopGroup bossGroup = transportType.newEventLoopGroup(bindCount);
+		EventLoopGroup workerGroup = transportType.newEventLoopGroup(nioEventLoopGroup);
 		try {
-			// Create a start object for the server and set its parameters
-			ServerBootstrap bootstrap = new ServerBootstrap();
 			// Set up two thread groups, boosGroup and workerGroup
 			bootstrap.group(bossGroup, workerGroup);
 			// Set the server-side channel implementation type
-			bootstrap.channel(NioServerSocketChannel.class);
-			// Set the thread queue to get the number of connections
-			bootstrap.option(ChannelOption.SO_BACKLOG, 128);
-			// Set to keep the connection active
-			bootstrap.childOption(ChannelOption.SO_KEEPALIVE, true);
-			// Set receive buffer size
-			bootstrap.option(ChannelOption.SO_RCVBUF, 10);
-			// Netty will allocate for each Channel to store received data when receiving data.
-			bootstrap.childOption(ChannelOption.RCVBUF_ALLOCATOR, new AdaptiveRecvByteBufAllocator(16, 16, 16));
+			bootstrap.channel(transportType.serverChannelClass());
+			// Backlog, socket buffers, receive buffer sizing, water marks and allocator, in-process connections have no sockets to tune
+			if (!transportType.isInProcess()) {
+				tuningProfile.apply(bootstrap);
+			}
+			if (metrics != null) {
+				dispatcher.setMetrics(metrics);
+				if (metricsLogSeconds > 0) {
+					metrics.logPeriodically(workerGroup.next(), metricsLogSeconds, TimeUnit.SECONDS);
+				}
+			}
+			// Connections beyond the limits are closed on the acceptor, before they reach a worker loop
+			if (maxConnections > 0 || maxConnectionsPerAddress > 0) {
+				bootstrap.handler(new ConnectionLimiter(maxConnections, maxConnectionsPerAddress));
+			}
 			// Initialize the channel object as an anonymous inner class
-			bootstrap.childHandler(new ChannelInitializer<NioSocketChannel>() {
+			bootstrap.childHandler(new ChannelInitializer<>() {
 				@Override
-				protected void initChannel(@NonNull NioSocketChannel nioSocketChannel) {
+				protected void initChannel(@NonNull Channel socketChannel) {
 					// Get channel pipeline
-					ChannelPipeline channelPipeline = nioSocketChannel.pipeline();
+					ChannelPipeline channelPipeline = socketChannel.pipeline();
+
+					connections.add(socketChannel);
+					// In-process connections carry the messages themselves, everything that deals with frames is left out
+					boolean inProcess = TransportType.isInProcess(socketChannel);
+
+					// Add log handler, a lean pipeline skips it and logs single connections through a wire tap instead
+					if (!leanPipeline) {
+						channelPipeline.addLast(loggingHandler);
+					}
 
-					// Add log handler
-					channelPipeline.addLast(loggingHandler);
+					// Coalesce flushes, during a read until its end and otherwise until the tasks of the event loop have run
+					if (writeBatching && !inProcess) {
+						channelPipeline.addLast(new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+					}
 
 					// Optional 1: Fix the length to solve the separator problem, and unnecessary messages will be transmitted
 					// channelPipeline.addLast(new FixedLengthFrameDecoder(10));
@@ -93,11 +230,33 @@ public class NettyServerLauncher {
 					// Add String encoder handler
 					// channelPipeline.addLast(new StringEncoder());
 
-					channelPipeline.addLast(new CustomizedLengthFieldBasedFrameDecoder());
-					channelPipeline.addLast(new NettyCustomizedMessageToMessageCodec());
+					if (!inProcess) {
+						channelPipeline.addLast(new CustomizedLengthFieldBasedFrameDecoder());
+						// Pause reading from connections that send faster than allowed
+						if (messagesPerSecond > 0 || bytesPerSecond > 0) {
+							channelPipeline.addLast(new RateLimitHandler(messagesPerSecond, bytesPerSecond));
+						}
+						// Uploads are written to disk chunk by chunk instead of being put back together
+						if (uploadDirectory != null) {
+							channelPipeline.addLast(new ChunkedFrameStreamer(MessageType.FileTransfer));
+						}
+						// Put large messages sent as several chunk frames back together
+						channelPipeline.addLast(new ChunkedFrameAggregator());
+						// Repeated requests are answered from their payload bytes, before anything is decoded
+						if (responseCache != null) {
+							channelPipeline.addLast(responseCache.frameStage());
+						}
+						channelPipeline.addLast(new NettyCustomizedMessageToMessageCodec(compression, compressionThreshold).setMetrics(metrics));
+						if (responseCache != null) {
+							channelPipeline.addLast(responseCache.messageStage());
+						}
+					}
 
-					// Idle time detection, 0 means no timeout
-					channelPipeline.addLast(new IdleStateHandler(9, 0, 0));
+					// Idle detection, the timeout follows the heartbeat interval the client negotiates
+					channelPipeline.addLast(IdleMonitor.server(idleTimeoutMillis, minHeartbeatMillis, maxHeartbeatMillis));
+					if (metrics != null) {
+						channelPipeline.addLast(new MetricsHandler(metrics));
+					}
 
 					// ChannelDuplexHandler can handle both inbound and outbound messages
 					// Heartbeat mechanism
@@ -107,6 +266,9 @@ public class NettyServerLauncher {
 							if (evt instanceof IdleStateEvent idleStateEvent) {
 								if (idleStateEvent.state() == IdleState.READER_IDLE) {
 									log.info("read idle timed out");
+									if (metrics != null) {
+										metrics.idleClosed();
+									}
 									ctx.close();
 								}
 							}
@@ -114,47 +276,150 @@ public class NettyServerLauncher {
 						}
 					});
 
-					channelPipeline.addLast(new SimpleChannelInboundHandler<HeartbeatPacket>() {
-						@Override
-						protected void channelRead0(ChannelHandlerContext channelHandlerContext, HeartbeatPacket heartbeatPacket) throws Exception {
-							log.info("Received heartbeat packet: {}", heartbeatPacket);
-						}
-					});
-				}
-			});
-			// Bind to the port
-			ChannelFuture channelFuture = bootstrap.bind(new InetSocketAddress(inetPort));
-
-			// Add listener
-			// Uses an anonymous inner class, the ChannelFutureListener interface
-// Override the operationComplete method
-			channelFuture.addListener((ChannelFutureListener) future -> {
-				// Check whether the operation is successful
-				if (future.isSuccess()) {
-					log.info("Successful connection");
-				} else {
-					log.error("Connection failure");
+					if (uploadDirectory != null && !inProcess) {
+						channelPipeline.addLast(new FileTransferReceiver(uploadDirectory, maxUploadBytes));
+					}
+
+					// Tracks the connections for broadcasts and resumes conflated subscribers
+					if (broadcastHub != null) {
+						channelPipeline.addLast(broadcastHub);
+					}
+
+					// Application handlers, routed on the message type, on the business executor if there is one
+					if (businessExecutor == null) {
+						channelPipeline.addLast(dispatcher);
+					} else {
+						channelPipeline.addLast(new BusinessExecutorHandler(dispatcher, businessExecutor, businessQueueCapacity, overloadPolicy));
+					}
 				}
 			});
+			// Bind to the port, once per acceptor. With SO_REUSEPORT every bind gets its own server channel on its own boss loop
+			List<ChannelFuture> closeFutures = new ArrayList<>(bindCount);
+			for (int i = 0; i < bindCount; i++) {
+				ChannelFuture channelFuture = bootstrap.bind(transportType.address(null, inetPort));
 
-			// Wait for connection
-			channelFuture.sync();
+				// Add listener
+				// Uses an anonymous inner class, the ChannelFutureListener interface
+				// Override the operationComplete method
+				channelFuture.addListener((ChannelFutureListener) future -> {
+					// Check whether the operation is successful
+					if (future.isSuccess()) {
+						log.info("Successful connection");
+					} else {
+						log.error("Connection failure");
+					}
+				});
 
-			// Get connection channel
-			Channel channel = channelFuture.channel();
+				// Wait for connection
+				channelFuture.sync();
 
-			// Get close channel future
-			ChannelFuture closeFuture = channel.closeFuture();
-			closeFuture.addListener((ChannelFutureListener) future -> log.info("shut down"));
+				// Get connection channel
+				Channel channel = channelFuture.channel();
 
-			// Listens for the closed channel
-			closeFuture.sync();
+				// Get close channel future
+				ChannelFuture closeFuture = channel.closeFuture();
+				closeFuture.addListener((ChannelFutureListener) future -> log.info("shut down"));
+				closeFutures.add(closeFuture);
+			}
+
+			// Listens for the closed channels
+			for (ChannelFuture closeFuture : closeFutures) {
+				closeFuture.sync();
+			}
 		} finally {
 			bossGroup.shutdownGracefully();
 			workerGroup.shutdownGracefully();
 		}
 	}
 
+	/**
+	 * Log the traffic of live connections, see {@link WireTap}
+	 *
+	 * @param remoteAddress remote address of the connections, as in "/127.0.0.1:52514", or a host to match all its connections
+	 *
+	 * @return number of connections tapped
+	 */
+	public int attachWireTap(String remoteAddress) {
+		return wireTap(remoteAddress, true);
+	}
+
+	/**
+	 * Stop logging the traffic of live connections
+	 *
+	 * @param remoteAddress remote address of the connections, as in "/127.0.0.1:52514", or a host to match all its connections
+	 *
+	 * @return number of connections untapped
+	 */
+	public int detachWireTap(String remoteAddress) {
+		return wireTap(remoteAddress, false);
+	}
+
+	private int wireTap(String remoteAddress, boolean attach) {
+		int matched = 0;
+		for (Channel channel : connections) {
+			if (String.valueOf(channel.remoteAddress()).contains(remoteAddress)) {
+				if (attach) {
+					WireTap.attach(channel);
+				} else {
+					WireTap.detach(channel);
+				}
+				matched++;
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * Dispatcher with the built-in handlers: heartbeats are logged and answered, so clients can tell a live server from a dead one,
+	 * "echo" requests are answered with their body.
+	 *
+	 * @return dispatcher
+	 */
+	public static RpcDispatcher defaultDispatcher() {
+		return defaultDispatcher(null);
+	}
+
+	/**
+	 * Dispatcher with the built-in handlers, "subscribe" and "unsubscribe" requests also manage the topic named by their body.
+	 *
+	 * @param broadcastHub hub of the topics, null to reject subscriptions
+	 *
+	 * @return dispatcher
+	 */
+	public static RpcDispatcher defaultDispatcher(BroadcastHub broadcastHub) {
+		return new RpcDispatcher()
+				.register(MessageType.HeartbeatPacket, (MessageHandler<HeartbeatPacket>) (ctx, heartbeatPacket) -> {
+					long suppressed = HEARTBEAT_LOG.acquire();
+					if (suppressed >= 0) {
+						log.info("Received heartbeat packet: {} ({} more suppressed)", heartbeatPacket, suppressed);
+					}
+					// The IdleMonitor has replaced the proposed interval with the accepted one
+					HeartbeatPacket pong = MessageRegistry.newMessage(MessageType.HeartbeatPacket);
+					pong.setInfo("pong");
+					pong.setIntervalMillis(heartbeatPacket.getIntervalMillis());
+					return pong;
+				})
+				.register(MessageType.RpcRequest, (MessageHandler<RpcRequest>) (ctx, request) -> switch (request.getMethod()) {
+					case "echo" -> RpcResponse.success(request.getBody());
+					case "subscribe", "unsubscribe" -> subscription(broadcastHub, ctx.channel(), request);
+					default -> RpcResponse.failure("Unknown method: " + request.getMethod());
+				});
+	}
+
+	private static RpcResponse subscription(BroadcastHub broadcastHub, Channel channel, RpcRequest request) {
+		if (broadcastHub == null) {
+			return RpcResponse.failure("Broadcasts are disabled");
+		}
+		if ("subscribe".equals(request.getMethod())) {
+			if (!broadcastHub.subscribe(request.getBody(), channel)) {
+				return RpcResponse.failure("Too many topics");
+			}
+		} else {
+			broadcastHub.unsubscribe(request.getBody(), channel);
+		}
+		return RpcResponse.success(request.getBody());
+	}
+
 	/**
 	 * Prints the hexadecimal representation of the given ByteBuf object.
 	 *
@@ -186,14 +451,92 @@ public class NettyServerLauncher {
 		return nioEventLoopList;
 	}
 
+	/**
+	 * Resolve the tuning profile from the system properties.
+	 *
+	 * @return tuning profile
+	 */
+	private static ServerTuningProfile loadTuningProfile() {
+		ServerTuningProfile preset = ServerTuningProfile.preset(System.getProperty("netty.tuning", "throughput"));
+		String file = System.getProperty("netty.tuning.file");
+		return file == null ? preset : ServerTuningProfile.load(Path.of(file), preset);
+	}
+
 	/**
 	 * Entry point of the application.
+	 * The server listens on -Dnetty.port, 8080 by default.
+	 * The transport is picked with -Dnetty.transport=auto|nio|epoll|io_uring|local and the number of SO_REUSEPORT accept loops with -Dnetty.acceptors.
+	 * The tuning preset is picked with -Dnetty.tuning=throughput|low-latency, -Dnetty.tuning.file overrides it with a properties file.
+	 * Write batching is enabled with -Dnetty.batching=true.
+	 * Payload compression is picked with -Dnetty.compression=none|zlib|snappy above -Dnetty.compression.threshold bytes.
+	 * Application handlers run on -Dnetty.business=none|virtual|pool with -Dnetty.business.threads pool threads,
+	 * -Dnetty.business.queue messages per connection and -Dnetty.business.policy=reject|backpressure beyond that.
+	 * Metrics are collected with -Dnetty.metrics=true and logged every -Dnetty.metrics.period seconds.
+	 * -Dnetty.lean=true leaves the per-connection LoggingHandler out.
+	 * Connections close after -Dnetty.idle.timeout milliseconds without reads, clients negotiate heartbeat intervals between
+	 * -Dnetty.heartbeat.min and -Dnetty.heartbeat.max milliseconds.
+	 * -Dnetty.broadcast=drop|conflate|disconnect enables topic subscriptions with that slow consumer policy,
+	 * up to -Dnetty.broadcast.topics topics per connection.
+	 * -Dnetty.limit.connections and -Dnetty.limit.connections.address cap the connections in total and per client address,
+	 * -Dnetty.limit.messages and -Dnetty.limit.bytes the frames and bytes per second a connection may send.
+	 * -Dnetty.pooling=true pools the built-in messages, see {@link MessagePool}.
+	 * -Dnetty.upload.dir accepts file uploads into that directory, up to -Dnetty.upload.max bytes each, 1 GiB by default.
+	 * -Dnetty.cache.bytes caches the responses to "echo" requests in that many bytes for -Dnetty.cache.ttl milliseconds.
 	 *
 	 * @param args The command line arguments.
 	 */
 	@SneakyThrows
 	public static void main(String[] args) {
-		NettyServerLauncher nettyServerLauncher = new NettyServerLauncher(8080);
-		nettyServerLauncher.bootStrap();
+		if (Boolean.getBoolean("netty.pooling")) {
+			MessageRegistry.enablePooling();
+		}
+		FrameCompression compression = FrameCompression.resolve(System.getProperty("netty.compression", "none"));
+		int compressionThreshold = Integer.getInteger("netty.compression.threshold", NettyCustomizedMessageToMessageCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		ServerTuningProfile tuningProfile = loadTuningProfile();
+		NettyServerLauncher nettyServerLauncher = new NettyServerLauncher(Integer.getInteger("netty.port", 8080))
+				.setTransportType(TransportType.resolve(System.getProperty("netty.transport", "auto")))
+				.setLeanPipeline(Boolean.getBoolean("netty.lean"))
+				.setAcceptorCount(Integer.getInteger("netty.acceptors", 1))
+				.setTuningProfile(tuningProfile)
+				.setWriteBatching(Boolean.getBoolean("netty.batching"))
+				.setCompression(compression)
+				.setCompressionThreshold(compressionThreshold)
+				.setBusinessQueueCapacity(Integer.getInteger("netty.business.queue", BusinessExecutorHandler.DEFAULT_QUEUE_CAPACITY))
+				.setOverloadPolicy(OverloadPolicy.resolve(System.getProperty("netty.business.policy", "reject")))
+				.setMetrics(Boolean.getBoolean("netty.metrics") ? new NettyMetrics(tuningProfile.allocator()) : null)
+				.setMetricsLogSeconds(Integer.getInteger("netty.metrics.period", 60))
+				.setIdleTimeoutMillis(Integer.getInteger("netty.idle.timeout", 9000))
+				.setMinHeartbeatMillis(Integer.getInteger("netty.heartbeat.min", 1000))
+				.setMaxHeartbeatMillis(Integer.getInteger("netty.heartbeat.max", 60_000))
+				.setMaxConnections(Integer.getInteger("netty.limit.connections", 0))
+				.setMaxConnectionsPerAddress(Integer.getInteger("netty.limit.connections.address", 0))
+				.setMessagesPerSecond(Long.getLong("netty.limit.messages", 0))
+				.setBytesPerSecond(Long.getLong("netty.limit.bytes", 0))
+				.setMaxUploadBytes(Long.getLong("netty.upload.max", FileTransferReceiver.DEFAULT_MAX_LENGTH));
+		String uploadDirectory = System.getProperty("netty.upload.dir");
+		if (uploadDirectory != null) {
+			nettyServerLauncher.setUploadDirectory(Files.createDirectories(Path.of(uploadDirectory)));
+		}
+		long cacheBytes = Long.getLong("netty.cache.bytes", 0);
+		if (cacheBytes > 0) {
+			// Only "echo" has no side effects among the built-in requests
+			nettyServerLauncher.setResponseCache(new ResponseCache(cacheBytes, Duration.ofMillis(Long.getLong("netty.cache.ttl", 60_000)),
+					message -> message instanceof RpcRequest request && "echo".equals(request.getMethod()), MessageType.RpcRequest));
+		}
+		String broadcast = System.getProperty("netty.broadcast", "none");
+		if (!"none".equalsIgnoreCase(broadcast)) {
+			BroadcastHub broadcastHub = new BroadcastHub(new NettyCustomizedMessageToMessageCodec(compression, compressionThreshold),
+					SlowConsumerPolicy.resolve(broadcast), Integer.getInteger("netty.broadcast.topics", BroadcastHub.DEFAULT_MAX_TOPICS_PER_CHANNEL));
+			nettyServerLauncher.setBroadcastHub(broadcastHub).setDispatcher(defaultDispatcher(broadcastHub));
+		}
+		ExecutorService businessExecutor = BusinessExecutors.resolve(System.getProperty("netty.business", "none"),
+				Integer.getInteger("netty.business.threads", 2 * Runtime.getRuntime().availableProcessors()));
+		try {
+			nettyServerLauncher.setBusinessExecutor(businessExecutor).bootStrap();
+		} finally {
+			if (businessExecutor != null) {
+				businessExecutor.shutdown();
+			}
+		}
 	}
 }
\ No newline at end of file
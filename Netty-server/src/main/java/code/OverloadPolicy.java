@@ -0,0 +1,35 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+
+/**
+ * What a {@link BusinessExecutorHandler} does with a message once the queue of its connection is full
+ */
+public enum OverloadPolicy {
+	/**
+	 * answer requests with a failure right away and drop other messages, the connection keeps reading
+	 */
+	Reject,
+	/**
+	 * queue the message and stop reading from the connection until the queue has drained to half its capacity
+	 */
+	Backpressure;
+
+	/**
+	 * Resolve the configured policy
+	 *
+	 * @param name reject or backpressure, case insensitive
+	 *
+	 * @return policy
+	 */
+	public static OverloadPolicy resolve(String name) {
+		for (OverloadPolicy policy : values()) {
+			if (policy.name().equalsIgnoreCase(name)) {
+				return policy;
+			}
+		}
+		throw new IllegalArgumentException("Unknown overload policy: " + name);
+	}
+}
@@ -0,0 +1,95 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the frames and bytes a connection may send per second with two token buckets.
+ * Nothing is dropped: a connection over its rate keeps the frames already read, but reading from its socket pauses until the buckets have
+ * refilled, so TCP flow control slows the client down instead of the worker loop.
+ * The buckets hold one second worth of tokens, short bursts above the rate pass.
+ * Add it right behind the frame decoder, it counts whole frames. Not sharable, the buckets are per channel.
+ */
+public class RateLimitHandler extends ChannelInboundHandlerAdapter {
+	private final TokenBucket messages;
+	private final TokenBucket bytes;
+	private boolean paused;
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param messagesPerSecond frames per second, 0 for no limit
+	 * @param bytesPerSecond    bytes per second, 0 for no limit
+	 */
+	public RateLimitHandler(long messagesPerSecond, long bytesPerSecond) {
+		if (messagesPerSecond < 0 || bytesPerSecond < 0) {
+			throw new IllegalArgumentException("Rates must not be negative");
+		}
+		this.messages = messagesPerSecond == 0 ? null : new TokenBucket(messagesPerSecond);
+		this.bytes = bytesPerSecond == 0 ? null : new TokenBucket(bytesPerSecond);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof ByteBuf frame) {
+			long now = System.nanoTime();
+			long waitNanos = 0;
+			if (messages != null) {
+				waitNanos = messages.consume(1, now);
+			}
+			if (bytes != null) {
+				waitNanos = Math.max(waitNanos, bytes.consume(frame.readableBytes(), now));
+			}
+			if (waitNanos > 0 && !paused) {
+				paused = true;
+				ReadPause.pause(ctx.channel(), ReadPause.RATE_LIMIT);
+				ctx.executor().schedule(() -> resume(ctx), waitNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+		super.channelRead(ctx, msg);
+	}
+
+	private void resume(ChannelHandlerContext ctx) {
+		paused = false;
+		// Reading stays paused while the business queue or a chunk stream still holds it
+		ReadPause.resume(ctx.channel(), ReadPause.RATE_LIMIT);
+	}
+
+	/**
+	 * Token bucket of one channel, only used on its event loop.
+	 * Consuming may run the bucket into debt, the debt tells how long to wait before the next consumption.
+	 */
+	private static final class TokenBucket {
+		private final double tokensPerNano;
+		private final double capacity;
+		private double tokens;
+		private long refilled = System.nanoTime();
+
+		private TokenBucket(long ratePerSecond) {
+			this.tokensPerNano = ratePerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+			this.capacity = ratePerSecond;
+			this.tokens = capacity;
+		}
+
+		/**
+		 * Take tokens
+		 *
+		 * @param amount tokens
+		 * @param now    System.nanoTime()
+		 *
+		 * @return nanoseconds until the bucket is out of debt, 0 if it is not in debt
+		 */
+		private long consume(long amount, long now) {
+			tokens = Math.min(capacity, tokens + (now - refilled) * tokensPerNano);
+			refilled = now;
+			tokens -= amount;
+			return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import io.netty.util.IllegalReferenceCountException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Answers repeated idempotent requests with the response frame encoded for the first one, skipping the handler and the serialization.
+ * Requests are keyed on their message type, serializer, flags and payload bytes, so a hit needs no decoding either,
+ * the answer is a fresh header with the sequenceId of the request in front of a retained slice of the cached frame.
+ * The cache is bounded by bytes and evicts with Caffeine's W-TinyLFU, entries expire a TTL after they were stored.
+ * It takes two stages per pipeline, both shared by all connections:
+ * <ul>
+ * <li>{@link #frameStage()} between the {@link ChunkedFrameAggregator} and the codec, it answers hits and stores the encoded responses</li>
+ * <li>{@link #messageStage()} right behind the codec, it decides with the predicate which requests and responses may be cached</li>
+ * </ul>
+ * Only successful responses that fit into one frame are cached. The frames are copied into unpooled direct buffers of their exact size,
+ * so long-lived entries do not pin chunks of the pooled arenas. The cache holds one reference, released when the entry is removed,
+ * and every answer in flight holds another, so an entry evicted while it is being written stays intact until the write is done.
+ */
+public class ResponseCache {
+	/**
+	 * requests with larger payloads are not cached, their keys would cost more than they save
+	 */
+	public static final int MAX_KEY_BYTES = 4096;
+	/**
+	 * requests of a connection waiting for a cacheable response, older ones are forgotten
+	 */
+	private static final int MAX_PENDING = 1024;
+	/**
+	 * bytes an entry costs besides its key and frame
+	 */
+	private static final int ENTRY_OVERHEAD = 64;
+	private static final int HEADER_LENGTH = NettyCustomizedMessageToMessageCodec.HEADER_LENGTH;
+	private static final AttributeKey<State> STATE = AttributeKey.valueOf(ResponseCache.class, "state");
+
+	private final Cache<Key, ByteBuf> cache;
+	private final boolean[] cachedTypes = new boolean[MessageRegistry.MAX_TYPE_ID + 1];
+	private final Predicate<CustomizedMessageType> cacheable;
+	private final FrameStage frameStage = new FrameStage();
+	private final MessageStage messageStage = new MessageStage();
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param maxBytes  bytes the cached keys and frames may take
+	 * @param ttl       time an entry is served after it was stored
+	 * @param cacheable whether the response to a decoded request may be cached, only for requests without side effects
+	 * @param types     message types of the requests to cache
+	 */
+	public ResponseCache(long maxBytes, Duration ttl, Predicate<CustomizedMessageType> cacheable, MessageType... types) {
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maxBytes)
+				.weigher((Key key, ByteBuf frame) -> ENTRY_OVERHEAD + key.payload.readableBytes() + frame.readableBytes())
+				.expireAfterWrite(ttl)
+				.removalListener((Key key, ByteBuf frame, RemovalCause cause) -> {
+					if (frame != null) {
+						frame.release();
+					}
+				})
+				.recordStats()
+				.build();
+		this.cacheable = cacheable;
+		for (MessageType type : types) {
+			cachedTypes[type.ordinal()] = true;
+		}
+	}
+
+	/**
+	 * Stage to add between the {@link ChunkedFrameAggregator} and the codec
+	 *
+	 * @return frame stage
+	 */
+	public ChannelHandler frameStage() {
+		return frameStage;
+	}
+
+	/**
+	 * Stage to add right behind the codec
+	 *
+	 * @return message stage
+	 */
+	public ChannelHandler messageStage() {
+		return messageStage;
+	}
+
+	/**
+	 * Requests answered from the cache
+	 *
+	 * @return hits since the start
+	 */
+	public long hits() {
+		return cache.stats().hitCount();
+	}
+
+	/**
+	 * Requests of a cached type that were not in the cache
+	 *
+	 * @return misses since the start
+	 */
+	public long misses() {
+		return cache.stats().missCount();
+	}
+
+	/**
+	 * Entries evicted for size, expired entries not included
+	 *
+	 * @return evictions since the start
+	 */
+	public long evictions() {
+		return cache.stats().evictionCount();
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Body of a cached frame for one answer
+	 *
+	 * @param frame cached frame, may be null
+	 *
+	 * @return retained slice of the body behind the header, null if there is no entry or it was removed and released meanwhile
+	 */
+	private static ByteBuf retainedBody(ByteBuf frame) {
+		if (frame == null) {
+			return null;
+		}
+		try {
+			return frame.retainedSlice(HEADER_LENGTH, frame.readableBytes() - HEADER_LENGTH);
+		} catch (IllegalReferenceCountException e) {
+			return null;
+		}
+	}
+
+	private static State state(Channel channel) {
+		State state = channel.attr(STATE).get();
+		if (state == null) {
+			state = new State(IdleMonitor.of(channel));
+			channel.attr(STATE).set(state);
+		}
+		return state;
+	}
+
+	/**
+	 * Answers hits and stores the response frames approved by the message stage
+	 */
+	@ChannelHandler.Sharable
+	private final class FrameStage extends ChannelDuplexHandler {
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			if (!(msg instanceof ByteBuf frame)) {
+				super.channelRead(ctx, msg);
+				return;
+			}
+			int start = frame.readerIndex();
+			int payloadLength = frame.readableBytes() - HEADER_LENGTH;
+			if (!cachedTypes[frame.getUnsignedByte(start + 6)] || payloadLength > MAX_KEY_BYTES) {
+				super.channelRead(ctx, msg);
+				return;
+			}
+			// The key of the lookup points into the frame, only a miss copies the payload
+			int header = frame.getUnsignedByte(start + 5) << 16 | frame.getUnsignedByte(start + FrameFlags.OFFSET) << 8 | frame.getUnsignedByte(start + 6);
+			Key key = new Key(header, frame.slice(start + HEADER_LENGTH, payloadLength));
+			int sequenceId = frame.getInt(start + NettyCustomizedMessageToMessageCodec.SEQUENCE_ID_OFFSET);
+			ByteBuf cached = cache.getIfPresent(key);
+			ByteBuf body = retainedBody(cached);
+			State state = state(ctx.channel());
+			if (body == null) {
+				state.pending.put(sequenceId, key.copy());
+				super.channelRead(ctx, msg);
+				return;
+			}
+			frame.release();
+			if (state.idleMonitor != null) {
+				state.idleMonitor.recordRead();
+			}
+			// The header is the only part copied, the body is shared with every other answer of the entry and keeps it alive
+			ByteBuf answerHeader = ctx.alloc().buffer(HEADER_LENGTH);
+			answerHeader.writeBytes(cached, 0, HEADER_LENGTH);
+			answerHeader.setInt(NettyCustomizedMessageToMessageCodec.SEQUENCE_ID_OFFSET, sequenceId);
+			ctx.write(answerHeader, ctx.voidPromise());
+			ctx.write(body, ctx.voidPromise());
+			state.flushPending = true;
+		}
+
+		@Override
+		public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+			State state = ctx.channel().attr(STATE).get();
+			if (state != null && state.flushPending) {
+				state.flushPending = false;
+				ctx.flush();
+			}
+			super.channelReadComplete(ctx);
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+			State state = ctx.channel().attr(STATE).get();
+			if (state != null && state.storing != null && msg instanceof ByteBuf frame) {
+				Key key = state.storing;
+				state.storing = null;
+				// A response split into chunks is not cached, it would have to be put back together first
+				if (!FrameFlags.isChunk(frame.getUnsignedByte(frame.readerIndex() + FrameFlags.OFFSET))) {
+					cache.put(key, Unpooled.directBuffer(frame.readableBytes()).writeBytes(frame, frame.readerIndex(), frame.readableBytes()));
+				}
+			}
+			super.write(ctx, msg, promise);
+		}
+	}
+
+	/**
+	 * Sorts out the requests that may not be cached and marks the responses to store while the codec encodes them
+	 */
+	@ChannelHandler.Sharable
+	private final class MessageStage extends ChannelDuplexHandler {
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			if (msg instanceof CustomizedMessageType message) {
+				State state = ctx.channel().attr(STATE).get();
+				if (state != null && !state.pending.isEmpty() && !cacheable.test(message)) {
+					state.pending.remove(message.getSequenceId());
+				}
+			}
+			super.channelRead(ctx, msg);
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+			State state = ctx.channel().attr(STATE).get();
+			if (state == null || state.pending.isEmpty() || !(msg instanceof CustomizedMessageType message)) {
+				super.write(ctx, msg, promise);
+				return;
+			}
+			Key key = state.pending.remove(message.getSequenceId());
+			if (key == null || message instanceof RpcResponse response && response.getError() != null) {
+				super.write(ctx, msg, promise);
+				return;
+			}
+			// The codec encodes synchronously on its way to the frame stage, which picks the frame up
+			state.storing = key;
+			try {
+				super.write(ctx, msg, promise);
+			} finally {
+				state.storing = null;
+			}
+		}
+	}
+
+	/**
+	 * Cache state of a connection, only touched on its event loop
+	 */
+	private static final class State {
+		private final IdleMonitor idleMonitor;
+		private final Map<Integer, Key> pending = new LinkedHashMap<>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Key> eldest) {
+				return size() > MAX_PENDING;
+			}
+		};
+		private Key storing;
+		private boolean flushPending;
+
+		private State(IdleMonitor idleMonitor) {
+			this.idleMonitor = idleMonitor;
+		}
+	}
+
+	/**
+	 * Serializer, message type and flags of a request and its payload bytes
+	 */
+	private static final class Key {
+		private final int header;
+		private final ByteBuf payload;
+		private final int hash;
+
+		private Key(int header, ByteBuf payload) {
+			this(header, payload, 31 * header + ByteBufUtil.hashCode(payload));
+		}
+
+		private Key(int header, ByteBuf payload, int hash) {
+			this.header = header;
+			this.payload = payload;
+			this.hash = hash;
+		}
+
+		/**
+		 * Key that owns its payload, for storing
+		 */
+		private Key copy() {
+			return new Key(header, Unpooled.wrappedBuffer(ByteBufUtil.getBytes(payload)), hash);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key key && header == key.header && hash == key.hash && ByteBufUtil.equals(payload, key.payload);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Routes decoded messages to the {@link MessageHandler} registered for their {@link MessageType}.
+ * A response returned by a handler is written back with the sequenceId of the message, so the client can match it to its request.
+ * Handlers are looked up in an array indexed by the message type, register them all before the server starts.
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class RpcDispatcher extends SimpleChannelInboundHandler<CustomizedMessageType> {
+	private final MessageHandler<?>[] handlers = new MessageHandler<?>[MessageRegistry.MAX_TYPE_ID + 1];
+	/**
+	 * handler time is recorded here when set
+	 */
+	@Setter
+	@Accessors(chain = true)
+	private NettyMetrics metrics;
+
+	/**
+	 * Register the handler of a message type, replacing any previous one
+	 *
+	 * @param messageType messageType
+	 * @param handler     handler
+	 * @param <T>         message class of the type
+	 *
+	 * @return this
+	 */
+	public <T extends CustomizedMessageType> RpcDispatcher register(MessageType messageType, MessageHandler<T> handler) {
+		return register(messageType.ordinal(), handler);
+	}
+
+	/**
+	 * Register the handler of a message type byte, for types registered by id, replacing any previous one
+	 *
+	 * @param typeId  message type byte
+	 * @param handler handler
+	 * @param <T>     message class of the type
+	 *
+	 * @return this
+	 */
+	public <T extends CustomizedMessageType> RpcDispatcher register(int typeId, MessageHandler<T> handler) {
+		if (typeId < 0 || typeId > MessageRegistry.MAX_TYPE_ID) {
+			throw new IllegalArgumentException("Message type id " + typeId + " does not fit into the message type byte");
+		}
+		handlers[typeId] = handler;
+		return this;
+	}
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, CustomizedMessageType message) {
+		dispatch(ctx, message);
+	}
+
+	/**
+	 * Run the handler of the message and write its response
+	 *
+	 * @param ctx     ctx
+	 * @param message message
+	 */
+	@SuppressWarnings("unchecked")
+	public void dispatch(ChannelHandlerContext ctx, CustomizedMessageType message) {
+		MessageHandler<CustomizedMessageType> handler = (MessageHandler<CustomizedMessageType>) handlers[message.getMessageType()];
+		CustomizedMessageType response;
+		if (handler == null) {
+			log.debug("No handler for message type {}", message.getMessageType());
+			response = message instanceof RpcRequest ? RpcResponse.failure("No handler for message type " + message.getMessageType()) : null;
+		} else {
+			long start = metrics == null ? 0 : System.nanoTime();
+			try {
+				response = handler.handle(ctx, message);
+			} catch (Exception e) {
+				log.warn("Handler of message type {} failed", message.getMessageType(), e);
+				response = message instanceof RpcRequest ? RpcResponse.failure(e.getMessage()) : null;
+			}
+			if (metrics != null) {
+				metrics.handled(System.nanoTime() - start);
+			}
+		}
+		if (response != null) {
+			response.setSequenceId(message.getSequenceId());
+			ctx.writeAndFlush(response, ctx.voidPromise());
+		}
+	}
+}
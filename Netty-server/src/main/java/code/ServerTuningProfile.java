@@ -0,0 +1,225 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.ToString;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Socket and buffer settings of the server.
+ * Start from one of the presets and adjust with the builder, or override a preset with a properties file whose keys are the field names.
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public class ServerTuningProfile {
+	/**
+	 * profile name, only used for logging
+	 */
+	@Builder.Default
+	private final String name = "custom";
+	/**
+	 * accept queue length of the listening socket
+	 */
+	@Builder.Default
+	private final int backlog = 1024;
+	/**
+	 * SO_RCVBUF in bytes, 0 leaves the kernel default and its auto tuning in place
+	 */
+	private final int soRcvBuf;
+	/**
+	 * SO_SNDBUF in bytes, 0 leaves the kernel default and its auto tuning in place
+	 */
+	private final int soSndBuf;
+	/**
+	 * disable Nagle's algorithm
+	 */
+	@Builder.Default
+	private final boolean tcpNoDelay = true;
+	/**
+	 * SO_KEEPALIVE
+	 */
+	@Builder.Default
+	private final boolean keepAlive = true;
+	/**
+	 * lower bound of the adaptive receive buffer
+	 */
+	@Builder.Default
+	private final int recvBufMin = 64;
+	/**
+	 * first guess of the adaptive receive buffer
+	 */
+	@Builder.Default
+	private final int recvBufInitial = 2048;
+	/**
+	 * upper bound of the adaptive receive buffer
+	 */
+	@Builder.Default
+	private final int recvBufMax = 65536;
+	/**
+	 * the channel becomes writable again once pending outbound bytes drop below this
+	 */
+	@Builder.Default
+	private final int writeBufferLowWaterMark = 32 * 1024;
+	/**
+	 * the channel becomes unwritable once pending outbound bytes exceed this
+	 */
+	@Builder.Default
+	private final int writeBufferHighWaterMark = 64 * 1024;
+	/**
+	 * pooled or unpooled buffer allocation
+	 */
+	@Builder.Default
+	private final boolean pooledAllocator = true;
+
+	/**
+	 * Bulk transfer: large read buffers and generous write water marks.
+	 * The socket buffers stay with the kernel, a fixed SO_RCVBUF or SO_SNDBUF turns off Linux auto tuning, which grows them well beyond 1 MiB on links with a large bandwidth-delay product.
+	 * Nagle stays off, with small request/response pairs it waits for delayed ACKs, the FlushConsolidationHandler coalesces flushes instead
+	 *
+	 * @return profile
+	 */
+	public static ServerTuningProfile throughput() {
+		return ServerTuningProfile.builder()
+				.name("throughput")
+				.backlog(4096)
+				.tcpNoDelay(true)
+				.recvBufMin(1024)
+				.recvBufInitial(16 * 1024)
+				.recvBufMax(256 * 1024)
+				.writeBufferLowWaterMark(512 * 1024)
+				.writeBufferHighWaterMark(1024 * 1024)
+				.build();
+	}
+
+	/**
+	 * Small messages: Nagle off, kernel socket buffers, small read buffers and tight write water marks
+	 *
+	 * @return profile
+	 */
+	public static ServerTuningProfile lowLatency() {
+		return ServerTuningProfile.builder()
+				.name("low-latency")
+				.tcpNoDelay(true)
+				.recvBufMin(64)
+				.recvBufInitial(1024)
+				.recvBufMax(16 * 1024)
+				.writeBufferLowWaterMark(16 * 1024)
+				.writeBufferHighWaterMark(32 * 1024)
+				.build();
+	}
+
+	/**
+	 * Look up a preset by name
+	 *
+	 * @param name throughput or low-latency
+	 *
+	 * @return profile
+	 */
+	public static ServerTuningProfile preset(String name) {
+		return switch (name) {
+			case "throughput" -> throughput();
+			case "low-latency" -> lowLatency();
+			default -> throw new IllegalArgumentException("Unknown tuning profile: " + name);
+		};
+	}
+
+	/**
+	 * Override the given profile with the keys present in a properties file
+	 *
+	 * @param path     properties file
+	 * @param defaults profile providing the values of absent keys
+	 *
+	 * @return profile
+	 */
+	@SneakyThrows
+	public static ServerTuningProfile load(Path path, ServerTuningProfile defaults) {
+		Properties properties = new Properties();
+		try (InputStream inputStream = Files.newInputStream(path)) {
+			properties.load(inputStream);
+		}
+		return fromProperties(properties, defaults);
+	}
+
+	/**
+	 * Override the given profile with the keys present in the properties
+	 *
+	 * @param properties properties, keys are the field names
+	 * @param defaults   profile providing the values of absent keys
+	 *
+	 * @return profile
+	 */
+	public static ServerTuningProfile fromProperties(Properties properties, ServerTuningProfile defaults) {
+		return defaults.toBuilder()
+				.name(properties.getProperty("name", defaults.name))
+				.backlog(intProperty(properties, "backlog", defaults.backlog))
+				.soRcvBuf(intProperty(properties, "soRcvBuf", defaults.soRcvBuf))
+				.soSndBuf(intProperty(properties, "soSndBuf", defaults.soSndBuf))
+				.tcpNoDelay(booleanProperty(properties, "tcpNoDelay", defaults.tcpNoDelay))
+				.keepAlive(booleanProperty(properties, "keepAlive", defaults.keepAlive))
+				.recvBufMin(intProperty(properties, "recvBufMin", defaults.recvBufMin))
+				.recvBufInitial(intProperty(properties, "recvBufInitial", defaults.recvBufInitial))
+				.recvBufMax(intProperty(properties, "recvBufMax", defaults.recvBufMax))
+				.writeBufferLowWaterMark(intProperty(properties, "writeBufferLowWaterMark", defaults.writeBufferLowWaterMark))
+				.writeBufferHighWaterMark(intProperty(properties, "writeBufferHighWaterMark", defaults.writeBufferHighWaterMark))
+				.pooledAllocator(booleanProperty(properties, "pooledAllocator", defaults.pooledAllocator))
+				.build();
+	}
+
+	/**
+	 * Allocator of the connections
+	 *
+	 * @return allocator
+	 */
+	public ByteBufAllocator allocator() {
+		return pooledAllocator ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+	}
+
+	/**
+	 * Apply the profile to the server bootstrap
+	 *
+	 * @param bootstrap bootstrap
+	 */
+	public void apply(ServerBootstrap bootstrap) {
+		ByteBufAllocator allocator = allocator();
+		bootstrap.option(ChannelOption.SO_BACKLOG, backlog);
+		bootstrap.option(ChannelOption.ALLOCATOR, allocator);
+		// Accepted sockets inherit the receive buffer of the listening socket, it has to be set before accept for window scaling to use it
+		if (soRcvBuf > 0) {
+			bootstrap.option(ChannelOption.SO_RCVBUF, soRcvBuf);
+		}
+		if (soSndBuf > 0) {
+			bootstrap.childOption(ChannelOption.SO_SNDBUF, soSndBuf);
+		}
+		bootstrap.childOption(ChannelOption.TCP_NODELAY, tcpNoDelay);
+		bootstrap.childOption(ChannelOption.SO_KEEPALIVE, keepAlive);
+		bootstrap.childOption(ChannelOption.ALLOCATOR, allocator);
+		bootstrap.childOption(ChannelOption.RCVBUF_ALLOCATOR, new AdaptiveRecvByteBufAllocator(recvBufMin, recvBufInitial, recvBufMax));
+		bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark));
+	}
+
+	private static int intProperty(Properties properties, String key, int defaultValue) {
+		String value = properties.getProperty(key);
+		return value == null ? defaultValue : Integer.parseInt(value.trim());
+	}
+
+	private static boolean booleanProperty(Properties properties, String key, boolean defaultValue) {
+		String value = properties.getProperty(key);
+		return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+	}
+}
@@ -0,0 +1,39 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+
+/**
+ * What a {@link BroadcastHub} does with a message for a subscriber that is not writable, whose outbound buffer is above the high water mark
+ */
+public enum SlowConsumerPolicy {
+	/**
+	 * skip the message for this subscriber, it misses it
+	 */
+	Drop,
+	/**
+	 * keep only the latest message per topic for this subscriber and send it once the subscriber is writable again
+	 */
+	Conflate,
+	/**
+	 * close the subscriber, it reconnects and subscribes again once it has caught up
+	 */
+	Disconnect;
+
+	/**
+	 * Resolve the configured policy
+	 *
+	 * @param name drop, conflate or disconnect, case insensitive
+	 *
+	 * @return policy
+	 */
+	public static SlowConsumerPolicy resolve(String name) {
+		for (SlowConsumerPolicy policy : values()) {
+			if (policy.name().equalsIgnoreCase(name)) {
+				return policy;
+			}
+		}
+		throw new IllegalArgumentException("Unknown slow consumer policy: " + name);
+	}
+}
@@ -0,0 +1,137 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pushes to connections of a server pipeline, slow ones are made unwritable by a frame held back without a flush
+ */
+class BroadcastHubTest {
+	private final List<CodecFixture> fixtures = new ArrayList<>();
+	private BroadcastHub hub;
+
+	@AfterEach
+	void tearDown() {
+		fixtures.forEach(CodecFixture::close);
+	}
+
+	@Test
+	void everyConnectionGetsItsOwnIdAndThePushFlag() {
+		hub = new BroadcastHub(new NettyCustomizedMessageToMessageCodec(), SlowConsumerPolicy.Drop);
+		CodecFixture first = connect();
+		CodecFixture second = connect();
+		// The first connection has answered a request already, its own ids go on from there
+		SequenceIdGenerator.of(first.receiver()).next();
+		RpcResponse message = RpcResponse.success("tick");
+		message.setSequenceId(7);
+		assertEquals(2, hub.broadcast(message));
+		assertEquals(7, message.getSequenceId());
+		RpcResponse pushed = first.reply(RpcResponse.class);
+		assertTrue(pushed.isPush());
+		assertEquals(2, pushed.getSequenceId());
+		assertEquals("tick", pushed.getBody());
+		pushed = second.reply(RpcResponse.class);
+		assertTrue(pushed.isPush());
+		assertEquals(1, pushed.getSequenceId());
+	}
+
+	@Test
+	void messagesArePublishedToSubscribersOnly() {
+		hub = new BroadcastHub(new NettyCustomizedMessageToMessageCodec(), SlowConsumerPolicy.Drop);
+		CodecFixture subscriber = connect();
+		CodecFixture other = connect();
+		assertTrue(hub.subscribe("quotes", subscriber.receiver()));
+		assertEquals(1, hub.publish("quotes", RpcResponse.success("a")));
+		assertEquals(0, hub.publish("news", RpcResponse.success("b")));
+		assertEquals("a", subscriber.reply(RpcResponse.class).getBody());
+		assertTrue(other.replies().isEmpty());
+		subscriber.receiver().close();
+		assertEquals(0, hub.topicCount());
+	}
+
+	@Test
+	void slowConsumersMissMessagesWithDrop() {
+		hub = new BroadcastHub(new NettyCustomizedMessageToMessageCodec(), SlowConsumerPolicy.Drop);
+		CodecFixture slow = connect();
+		CodecFixture fast = connect();
+		stall(slow);
+		hub.broadcast(RpcResponse.success("a"));
+		assertEquals(1, hub.dropped());
+		assertEquals("a", fast.reply(RpcResponse.class).getBody());
+		resume(slow);
+		assertEquals("held back", slow.reply(RpcResponse.class).getBody());
+	}
+
+	@Test
+	void slowConsumersGetTheLatestMessageWithConflate() {
+		hub = new BroadcastHub(new NettyCustomizedMessageToMessageCodec(), SlowConsumerPolicy.Conflate);
+		CodecFixture slow = connect();
+		stall(slow);
+		for (String body : new String[]{"a", "b", "c"}) {
+			hub.broadcast(RpcResponse.success(body));
+		}
+		assertEquals(2, hub.dropped());
+		resume(slow);
+		List<CustomizedMessageType> replies = slow.replies();
+		assertEquals(2, replies.size());
+		assertEquals("held back", ((RpcResponse) replies.get(0)).getBody());
+		assertEquals("c", ((RpcResponse) replies.get(1)).getBody());
+	}
+
+	@Test
+	void conflatedMessagesAreDroppedWithTheConnection() {
+		hub = new BroadcastHub(new NettyCustomizedMessageToMessageCodec(), SlowConsumerPolicy.Conflate);
+		CodecFixture slow = connect();
+		stall(slow);
+		hub.broadcast(RpcResponse.success("a"));
+		assertEquals(0, hub.dropped());
+		slow.receiver().close();
+		assertEquals(1, hub.dropped());
+	}
+
+	@Test
+	void slowConsumersAreClosedWithDisconnect() {
+		hub = new BroadcastHub(new NettyCustomizedMessageToMessageCodec(), SlowConsumerPolicy.Disconnect);
+		CodecFixture slow = connect();
+		CodecFixture fast = connect();
+		stall(slow);
+		assertEquals(2, hub.broadcast(RpcResponse.success("a")));
+		assertEquals(1, hub.dropped());
+		assertFalse(slow.receiver().isActive());
+		assertTrue(fast.receiver().isActive());
+		assertEquals("a", fast.reply(RpcResponse.class).getBody());
+	}
+
+	private CodecFixture connect() {
+		CodecFixture fixture = new CodecFixture(new ChannelHandler[]{new NettyCustomizedMessageToMessageCodec(), hub});
+		fixtures.add(fixture);
+		return fixture;
+	}
+
+	/**
+	 * Make a connection unwritable with a frame that is written but not flushed
+	 */
+	private static void stall(CodecFixture fixture) {
+		fixture.receiver().config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+		fixture.receiver().write(RpcResponse.success("held back"));
+		assertFalse(fixture.receiver().isWritable());
+	}
+
+	private static void resume(CodecFixture fixture) {
+		fixture.receiver().flush();
+		fixture.receiver().runPendingTasks();
+		assertTrue(fixture.receiver().isWritable());
+	}
+}
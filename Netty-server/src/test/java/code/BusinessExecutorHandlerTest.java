@@ -0,0 +1,132 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.ChannelHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Messages handed to a business executor, most tests run its tasks on the test thread to see the queue at each step
+ */
+class BusinessExecutorHandlerTest {
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+	private BusinessExecutorHandler handler;
+	private CodecFixture fixture;
+
+	@AfterEach
+	void tearDown() {
+		if (fixture != null) {
+			fixture.close();
+		}
+	}
+
+	@Test
+	void messagesOfAConnectionAreHandledInArrivalOrder() throws InterruptedException {
+		List<String> handled = Collections.synchronizedList(new ArrayList<>());
+		RpcDispatcher dispatcher = new RpcDispatcher().register(MessageType.RpcRequest, (MessageHandler<RpcRequest>) (ctx, request) -> {
+			handled.add(request.getBody());
+			return null;
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			open(dispatcher, executor, 1000, OverloadPolicy.Reject);
+			List<String> sent = new ArrayList<>();
+			for (int i = 0; i < 500; i++) {
+				sent.add("m-" + i);
+				fixture.send(new RpcRequest("echo", "m-" + i));
+			}
+			CodecFixture.await(() -> handler.pending() == 0);
+			assertEquals(sent, handled);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void requestsBeyondTheCapacityAreRejected() {
+		open(NettyServerLauncher.defaultDispatcher(), tasks::add, 2, OverloadPolicy.Reject);
+		for (int sequenceId = 1; sequenceId <= 4; sequenceId++) {
+			fixture.send(request(sequenceId, "m-" + sequenceId));
+		}
+		assertEquals(2, handler.pending());
+		List<CustomizedMessageType> rejected = fixture.replies();
+		assertEquals(2, rejected.size());
+		for (int i = 0; i < 2; i++) {
+			RpcResponse response = (RpcResponse) rejected.get(i);
+			assertEquals("Server overloaded", response.getError());
+			assertEquals(i + 3, response.getSequenceId());
+		}
+		runTasks();
+		List<CustomizedMessageType> answers = fixture.replies();
+		assertEquals(2, answers.size());
+		assertEquals("m-1", ((RpcResponse) answers.get(0)).getBody());
+		assertEquals("m-2", ((RpcResponse) answers.get(1)).getBody());
+		assertEquals(0, handler.pending());
+	}
+
+	@Test
+	void backpressurePausesReadingUntilHalfOfTheQueueIsFree() {
+		open(NettyServerLauncher.defaultDispatcher(), tasks::add, 4, OverloadPolicy.Backpressure);
+		for (int sequenceId = 1; sequenceId <= 3; sequenceId++) {
+			fixture.send(request(sequenceId, "m-" + sequenceId));
+		}
+		assertTrue(fixture.receiver().config().isAutoRead());
+		fixture.send(request(4, "m-4"));
+		assertFalse(fixture.receiver().config().isAutoRead());
+		assertTrue(ReadPause.isPaused(fixture.receiver(), ReadPause.BUSINESS_QUEUE));
+		// Frames already read while pausing are queued, not rejected
+		fixture.send(request(5, "m-5"));
+		assertEquals(5, handler.pending());
+		assertTrue(fixture.replies().isEmpty());
+		runTasks();
+		assertEquals(5, fixture.replies().size());
+		assertEquals(0, handler.pending());
+		assertTrue(fixture.receiver().config().isAutoRead());
+		assertFalse(ReadPause.isPaused(fixture.receiver(), ReadPause.BUSINESS_QUEUE));
+	}
+
+	@Test
+	void messagesAreRejectedWhenTheExecutorRefusesThem() {
+		open(NettyServerLauncher.defaultDispatcher(), task -> {
+			throw new RejectedExecutionException("shutting down");
+		}, 4, OverloadPolicy.Backpressure);
+		fixture.send(request(9, "a"));
+		RpcResponse response = fixture.reply(RpcResponse.class);
+		assertEquals("Server overloaded", response.getError());
+		assertEquals(9, response.getSequenceId());
+		assertEquals(0, handler.pending());
+	}
+
+	private void open(RpcDispatcher dispatcher, Executor executor, int queueCapacity, OverloadPolicy overloadPolicy) {
+		handler = new BusinessExecutorHandler(dispatcher, executor, queueCapacity, overloadPolicy);
+		fixture = new CodecFixture(new ChannelHandler[]{new NettyCustomizedMessageToMessageCodec(), handler});
+	}
+
+	private void runTasks() {
+		for (Runnable task; (task = tasks.poll()) != null; ) {
+			task.run();
+		}
+	}
+
+	private static RpcRequest request(int sequenceId, String body) {
+		RpcRequest request = new RpcRequest("echo", body);
+		request.setSequenceId(sequenceId);
+		return request;
+	}
+}
@@ -0,0 +1,81 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Accepted connections handed to the limiter the way a server channel does, as messages
+ */
+class ConnectionLimiterTest {
+	private final List<EmbeddedChannel> channels = new ArrayList<>();
+	private EmbeddedChannel server;
+
+	@AfterEach
+	void tearDown() {
+		channels.forEach(EmbeddedChannel::finishAndReleaseAll);
+		server.finishAndReleaseAll();
+	}
+
+	@Test
+	void connectionsAboveTheTotalAreClosed() {
+		ConnectionLimiter limiter = open(2, 0);
+		Channel first = accept("10.0.0.1");
+		Channel second = accept("10.0.0.2");
+		Channel third = accept("10.0.0.3");
+		assertTrue(first.isOpen());
+		assertTrue(second.isOpen());
+		assertFalse(third.isOpen());
+		assertEquals(2, limiter.connections());
+		assertEquals(1, limiter.rejected());
+		assertEquals(2, server.inboundMessages().size());
+		first.close();
+		assertEquals(1, limiter.connections());
+		assertTrue(accept("10.0.0.3").isOpen());
+	}
+
+	@Test
+	void connectionsAboveTheLimitOfTheirAddressAreClosed() {
+		ConnectionLimiter limiter = open(0, 1);
+		Channel first = accept("10.0.0.1");
+		assertFalse(accept("10.0.0.1").isOpen());
+		assertTrue(accept("10.0.0.2").isOpen());
+		assertEquals(2, limiter.connections());
+		assertEquals(1, limiter.rejected());
+		first.close();
+		assertTrue(accept("10.0.0.1").isOpen());
+	}
+
+	private ConnectionLimiter open(int maxConnections, int maxConnectionsPerAddress) {
+		ConnectionLimiter limiter = new ConnectionLimiter(maxConnections, maxConnectionsPerAddress);
+		server = new EmbeddedChannel(DefaultChannelId.newInstance(), limiter);
+		return limiter;
+	}
+
+	private Channel accept(String host) {
+		InetSocketAddress remoteAddress = new InetSocketAddress(host, 40_000 + channels.size());
+		EmbeddedChannel child = new EmbeddedChannel(DefaultChannelId.newInstance()) {
+			@Override
+			protected SocketAddress remoteAddress0() {
+				return remoteAddress;
+			}
+		};
+		channels.add(child);
+		server.writeInbound(child);
+		return child;
+	}
+}
@@ -0,0 +1,82 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Frames above the rate of a connection pause reading until the buckets have refilled
+ */
+class RateLimitHandlerTest {
+	private EmbeddedChannel channel;
+
+	@AfterEach
+	void tearDown() {
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	void framesAboveTheRatePauseReadingWithoutDroppingAnything() {
+		open(new RateLimitHandler(2, 0));
+		receive(3, 10);
+		assertEquals(3, channel.inboundMessages().size());
+		assertFalse(channel.config().isAutoRead());
+		assertTrue(ReadPause.isPaused(channel, ReadPause.RATE_LIMIT));
+		channel.advanceTimeBy(1, TimeUnit.SECONDS);
+		channel.runScheduledPendingTasks();
+		assertTrue(channel.config().isAutoRead());
+	}
+
+	@Test
+	void framesWithinTheRateKeepReading() {
+		open(new RateLimitHandler(100, 0));
+		receive(50, 10);
+		assertTrue(channel.config().isAutoRead());
+	}
+
+	@Test
+	void bytesAboveTheRatePauseReading() {
+		open(new RateLimitHandler(0, 1024));
+		receive(1, 1000);
+		assertTrue(channel.config().isAutoRead());
+		receive(1, 1000);
+		assertFalse(channel.config().isAutoRead());
+	}
+
+	@Test
+	void pausesOfOtherHandlersOutlastTheRateLimit() {
+		open(new RateLimitHandler(1, 0));
+		ReadPause.pause(channel, ReadPause.BUSINESS_QUEUE);
+		receive(2, 10);
+		channel.advanceTimeBy(1, TimeUnit.SECONDS);
+		channel.runScheduledPendingTasks();
+		assertFalse(ReadPause.isPaused(channel, ReadPause.RATE_LIMIT));
+		assertFalse(channel.config().isAutoRead());
+		ReadPause.resume(channel, ReadPause.BUSINESS_QUEUE);
+		assertTrue(channel.config().isAutoRead());
+	}
+
+	private void open(RateLimitHandler handler) {
+		channel = new EmbeddedChannel(DefaultChannelId.newInstance(), handler);
+		channel.freezeTime();
+	}
+
+	private void receive(int frames, int length) {
+		for (int i = 0; i < frames; i++) {
+			ByteBuf frame = Unpooled.buffer(length).writeZero(length);
+			channel.writeInbound(frame);
+		}
+	}
+}
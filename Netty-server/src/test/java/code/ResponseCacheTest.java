@@ -0,0 +1,129 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static code.CodecFixture.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Requests through a server pipeline with the cache stages, the dispatcher answers "echo" with the body and anything else with an error
+ */
+class ResponseCacheTest {
+	private static final long MAX_BYTES = 1024 * 1024;
+
+	private ResponseCache cache;
+	private CodecFixture fixture;
+
+	@AfterEach
+	void tearDown() {
+		if (fixture != null) {
+			fixture.close();
+		}
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	@Test
+	void repeatedRequestsAreAnsweredFromTheCache() {
+		open(MAX_BYTES, Duration.ofMinutes(1));
+		assertEquals("a", call(1, "echo", "a").getBody());
+		assertEquals(0, cache.hits());
+		assertEquals(1, cache.misses());
+		for (int sequenceId = 2; sequenceId <= 4; sequenceId++) {
+			RpcResponse response = call(sequenceId, "echo", "a");
+			assertTrue(response.isSuccess());
+			assertEquals("a", response.getBody());
+		}
+		assertEquals(3, cache.hits());
+		assertEquals(1, cache.misses());
+	}
+
+	@Test
+	void answersCarryTheSequenceIdOfTheirRequest() {
+		open(MAX_BYTES, Duration.ofMinutes(1));
+		call(7, "echo", "a");
+		for (int sequenceId : new int[]{8, 1_000_000, Integer.MAX_VALUE, -5}) {
+			assertEquals(sequenceId, call(sequenceId, "echo", "a").getSequenceId());
+		}
+		assertEquals(4, cache.hits());
+	}
+
+	@Test
+	void requestsDifferingInTheirPayloadAreCachedApart() {
+		open(MAX_BYTES, Duration.ofMinutes(1));
+		assertEquals("a", call(1, "echo", "a").getBody());
+		assertEquals("b", call(2, "echo", "b").getBody());
+		assertEquals("a", call(3, "echo", "a").getBody());
+		assertEquals("b", call(4, "echo", "b").getBody());
+		assertEquals(2, cache.hits());
+		assertEquals(2, cache.misses());
+	}
+
+	@Test
+	void errorsAreNotCached() {
+		open(MAX_BYTES, Duration.ofMinutes(1));
+		for (int sequenceId = 1; sequenceId <= 3; sequenceId++) {
+			RpcResponse response = call(sequenceId, "unknown", "a");
+			assertEquals("Unknown method: unknown", response.getError());
+		}
+		assertEquals(0, cache.hits());
+		assertEquals(3, cache.misses());
+	}
+
+	@Test
+	void requestsRefusedByThePredicateAreNotCached() {
+		open(MAX_BYTES, Duration.ofMinutes(1));
+		for (int sequenceId = 1; sequenceId <= 3; sequenceId++) {
+			assertEquals("uncached", call(sequenceId, "echo", "uncached").getBody());
+		}
+		assertEquals(0, cache.hits());
+	}
+
+	@Test
+	void entriesExpireAfterTheTtl() throws InterruptedException {
+		open(MAX_BYTES, Duration.ofMillis(100));
+		call(1, "echo", "a");
+		call(2, "echo", "a");
+		assertEquals(1, cache.hits());
+		TimeUnit.MILLISECONDS.sleep(200);
+		assertEquals("a", call(3, "echo", "a").getBody());
+		assertEquals(1, cache.hits());
+		assertEquals(2, cache.misses());
+	}
+
+	@Test
+	void entriesAreEvictedBeyondTheByteLimit() throws InterruptedException {
+		open(16 * 1024, Duration.ofMinutes(1));
+		for (int sequenceId = 1; sequenceId <= 200; sequenceId++) {
+			assertEquals("body-" + sequenceId, call(sequenceId, "echo", "body-" + sequenceId).getBody());
+		}
+		await(() -> cache.evictions() > 0);
+		assertEquals(0, cache.hits());
+	}
+
+	private void open(long maxBytes, Duration ttl) {
+		cache = new ResponseCache(maxBytes, ttl, message -> !(message instanceof RpcRequest request) || !"uncached".equals(request.getBody()),
+				MessageType.RpcRequest);
+		fixture = new CodecFixture(new CustomizedLengthFieldBasedFrameDecoder(), new ChunkedFrameAggregator(), cache.frameStage(),
+				new NettyCustomizedMessageToMessageCodec(), cache.messageStage(), NettyServerLauncher.defaultDispatcher());
+	}
+
+	/**
+	 * Send a request and decode the answer, hits arrive as a header and a body written apart
+	 */
+	private RpcResponse call(int sequenceId, String method, String body) {
+		RpcRequest request = new RpcRequest(method, body);
+		request.setSequenceId(sequenceId);
+		fixture.send(request);
+		return fixture.reply(RpcResponse.class);
+	}
+}
@@ -0,0 +1,42 @@
+plugins {
+    id("java")
+}
+
+group = "org.code"
+version = "1.0-SNAPSHOT"
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    // https://mvnrepository.com/artifact/org.openjdk.jmh/jmh-core
+    implementation("org.openjdk.jmh:jmh-core:1.37")
+    // https://mvnrepository.com/artifact/org.openjdk.jmh/jmh-generator-annprocess
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+
+    // https://mvnrepository.com/artifact/io.netty/netty-all
+    implementation("io.netty:netty-all:4.1.109.Final")
+
+    // https://mvnrepository.com/artifact/org.slf4j/slf4j-api
+    implementation("org.slf4j:slf4j-api:2.0.13")
+    // https://mvnrepository.com/artifact/ch.qos.logback/logback-classic
+    implementation("ch.qos.logback:logback-classic:1.5.6")
+    // https://mvnrepository.com/artifact/ch.qos.logback/logback-core
+    implementation("ch.qos.logback:logback-core:1.5.6")
+
+    implementation(project(":common"))
+}
+
+// Run with: gradle jmh
+// Extra JMH options can be passed along, e.g. gradle jmh -PjmhArgs="CodecBenchmark.decode -p algorithm=Binary"
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks with the GC profiler and writes build/jmh-result.json"
+    dependsOn(tasks.classes)
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    val resultFile = layout.buildDirectory.file("jmh-result.json").get().asFile
+    val jmhArgs = (project.findProperty("jmhArgs") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: emptyList()
+    args(listOf("-prof", "gc", "-rf", "json", "-rff", resultFile.path) + jmhArgs)
+}
@@ -0,0 +1,2 @@
+rootProject.name = "benchmarks"
+includeFlat("common")
\ No newline at end of file
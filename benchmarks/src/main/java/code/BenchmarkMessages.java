@@ -0,0 +1,31 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+
+/**
+ * Builds benchmark messages of a given type with a payload of roughly the given size.
+ */
+public final class BenchmarkMessages {
+	private BenchmarkMessages() {
+	}
+
+	/**
+	 * Create a message
+	 *
+	 * @param messageType messageType
+	 * @param payloadSize number of characters carried by the message
+	 *
+	 * @return message
+	 */
+	public static CustomizedMessageType create(MessageType messageType, int payloadSize) {
+		String text = "x".repeat(payloadSize);
+		return switch (messageType) {
+			case HeartbeatPacket -> new HeartbeatPacket(text);
+			case RpcRequest -> new RpcRequest("echo", text);
+			case RpcResponse -> RpcResponse.success(text);
+			case FileTransfer -> new FileTransfer(text, payloadSize);
+		};
+	}
+}
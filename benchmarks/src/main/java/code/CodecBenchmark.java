@@ -0,0 +1,135 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link NettyCustomizedMessageToMessageCodec}, {@link MessageRegistry} and {@link CustomizedLengthFieldBasedFrameDecoder}.
+ * Run with the GC profiler (the jmh task does so) to get gc.alloc.rate.norm, the bytes allocated per message.
+ * The encoded frame size of every parameter combination is reported as the frameBytes secondary result of {@link #encode(FrameSize)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+	/**
+	 * large enough for every payload size below
+	 */
+	private static final int MAX_FRAME_LENGTH = 1 << 20;
+
+	@Param({"HeartbeatPacket", "RpcRequest", "RpcResponse"})
+	private MessageType messageType;
+
+	@Param({"16", "256", "4096"})
+	private int payloadSize;
+
+	@Param({"Java", "Json", "Binary"})
+	private CustomizedSerializerAlgorithm algorithm;
+
+	private CustomizedMessageType message;
+	private ByteBuf frame;
+	private EmbeddedChannel encodeChannel;
+	private EmbeddedChannel decodeChannel;
+	private EmbeddedChannel frameChannel;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		MessageRegistry.setSerializer(messageType, algorithm);
+		message = BenchmarkMessages.create(messageType, payloadSize);
+		encodeChannel = new EmbeddedChannel(new NettyCustomizedMessageToMessageCodec());
+		decodeChannel = new EmbeddedChannel(newFrameDecoder(), new NettyCustomizedMessageToMessageCodec());
+		frameChannel = new EmbeddedChannel(newFrameDecoder());
+
+		encodeChannel.writeOutbound(message);
+		frame = encodeChannel.readOutbound();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		frame.release();
+		encodeChannel.finishAndReleaseAll();
+		decodeChannel.finishAndReleaseAll();
+		frameChannel.finishAndReleaseAll();
+	}
+
+	/**
+	 * Message to frame
+	 *
+	 * @param frameSize reports the frame size next to the score
+	 *
+	 * @return frame size, consumed so the work is not eliminated
+	 */
+	@Benchmark
+	public int encode(FrameSize frameSize) {
+		encodeChannel.writeOutbound(message);
+		ByteBuf encoded = encodeChannel.readOutbound();
+		int size = encoded.readableBytes();
+		encoded.release();
+		frameSize.frameBytes = size;
+		return size;
+	}
+
+	/**
+	 * Frame to message, through the frame decoder
+	 *
+	 * @return message
+	 */
+	@Benchmark
+	public Object decode() {
+		decodeChannel.writeInbound(frame.retainedDuplicate());
+		return decodeChannel.readInbound();
+	}
+
+	/**
+	 * Message to frame to message
+	 *
+	 * @return message
+	 */
+	@Benchmark
+	public Object roundTrip() {
+		encodeChannel.writeOutbound(message);
+		decodeChannel.writeInbound(encodeChannel.<ByteBuf>readOutbound());
+		return decodeChannel.readInbound();
+	}
+
+	/**
+	 * Frame decoding only, the frame arrives in two reads so the cumulation path is covered as well
+	 *
+	 * @return frame length
+	 */
+	@Benchmark
+	public int frameDecode() {
+		int half = frame.readableBytes() / 2;
+		frameChannel.writeInbound(frame.retainedSlice(0, half));
+		frameChannel.writeInbound(frame.retainedSlice(half, frame.readableBytes() - half));
+		ByteBuf decoded = frameChannel.readInbound();
+		int length = decoded.readableBytes();
+		decoded.release();
+		return length;
+	}
+
+	/**
+	 * Size of the encoded frame, JMH resets it before every iteration
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class FrameSize {
+		/**
+		 * bytes of the frame of the current parameters
+		 */
+		public long frameBytes;
+	}
+
+	private static CustomizedLengthFieldBasedFrameDecoder newFrameDecoder() {
+		return new CustomizedLengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 12, 4, 0, 0);
+	}
+}
@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("java-test-fixtures")
 }
 
 group = "org.code"
@@ -12,6 +13,11 @@ repositories {
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    // shared with the tests of the other modules, see CodecFixture
+    testFixturesImplementation(platform("org.junit:junit-bom:5.10.0"))
+    testFixturesImplementation("org.junit.jupiter:junit-jupiter-api")
+    testFixturesImplementation("io.netty:netty-all:4.1.109.Final")
 
     // https://mvnrepository.com/artifact/org.projectlombok/lombok
     compileOnly("org.projectlombok:lombok:1.18.32")
@@ -25,6 +31,14 @@ dependencies {
 
     // https://mvnrepository.com/artifact/io.netty/netty-all
     implementation("io.netty:netty-all:4.1.109.Final")
+    // https://mvnrepository.com/artifact/io.netty.incubator/netty-incubator-transport-native-io_uring
+    implementation("io.netty.incubator:netty-incubator-transport-native-io_uring:0.0.25.Final:linux-x86_64")
+    implementation("io.netty.incubator:netty-incubator-transport-native-io_uring:0.0.25.Final:linux-aarch_64")
+
+    // https://mvnrepository.com/artifact/com.fasterxml.jackson.core/jackson-databind
+    implementation("com.fasterxml.jackson.core:jackson-databind:2.17.1")
+    // https://mvnrepository.com/artifact/org.hdrhistogram/HdrHistogram
+    implementation("org.hdrhistogram:HdrHistogram:2.2.2")
 }
 
 tasks.test {
@@ -0,0 +1,21 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import java.util.List;
+
+/**
+ * Message types shipped with common
+ */
+public class BuiltInMessageRegistryProvider implements MessageRegistryProvider {
+	@Override
+	public List<MessageRegistration<?>> registrations() {
+		return List.of(
+				MessageRegistration.of(MessageType.HeartbeatPacket, HeartbeatPacket.class, CustomizedSerializerAlgorithm.Binary, HeartbeatPacket::new),
+				MessageRegistration.of(MessageType.RpcRequest, RpcRequest.class, CustomizedSerializerAlgorithm.Binary, RpcRequest::new),
+				MessageRegistration.of(MessageType.RpcResponse, RpcResponse.class, CustomizedSerializerAlgorithm.Binary, RpcResponse::new),
+				MessageRegistration.of(MessageType.FileTransfer, FileTransfer.class, CustomizedSerializerAlgorithm.Binary, FileTransfer::new)
+		);
+	}
+}
@@ -0,0 +1,207 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+/**
+ * Reassembles chunk frames into one frame per sequence id.
+ * Chunks are kept as they arrived and joined without copying, the codec then sees a regular frame.
+ * Chunks of different messages may interleave, frames that are not chunks pass straight through.
+ * Memory is bounded per connection, a message larger than maxMessageSize or partial messages above maxPendingBytes in total are dropped with a {@link TooLongFrameException}.
+ * The number of partial messages is bounded too, dropped ones count until their last chunk, a peer that opens more than maxMessages is disconnected.
+ * Add it between the {@link CustomizedLengthFieldBasedFrameDecoder} and the codec.
+ * Not sharable, the partial messages are per channel.
+ */
+public class ChunkedFrameAggregator extends ChannelInboundHandlerAdapter {
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = NettyCustomizedMessageToMessageCodec.DEFAULT_MAX_UNCOMPRESSED_SIZE;
+	public static final int DEFAULT_MAX_PENDING_BYTES = 2 * DEFAULT_MAX_MESSAGE_SIZE;
+	public static final int DEFAULT_MAX_MESSAGES = 1024;
+	private static final int MAX_COMPONENTS = 1024;
+	private static final int HEADER_LENGTH = NettyCustomizedMessageToMessageCodec.HEADER_LENGTH;
+	/**
+	 * marks a message whose remaining chunks are discarded
+	 */
+	private static final CompositeByteBuf DISCARDING = null;
+
+	private final int maxMessageSize;
+	private final long maxPendingBytes;
+	private final int maxMessages;
+	private final IntObjectMap<CompositeByteBuf> messages = new IntObjectHashMap<>();
+	private long pendingBytes;
+	/**
+	 * too many partial messages, chunks still decoded before the close are dropped
+	 */
+	private boolean closing;
+
+	/**
+	 * Aggregator with the default limits
+	 */
+	public ChunkedFrameAggregator() {
+		this(DEFAULT_MAX_MESSAGE_SIZE, DEFAULT_MAX_PENDING_BYTES, DEFAULT_MAX_MESSAGES);
+	}
+
+	/**
+	 * Aggregator with the default number of partial messages
+	 *
+	 * @param maxMessageSize  largest reassembled payload
+	 * @param maxPendingBytes largest number of bytes held by partial messages of the connection
+	 */
+	public ChunkedFrameAggregator(int maxMessageSize, long maxPendingBytes) {
+		this(maxMessageSize, maxPendingBytes, DEFAULT_MAX_MESSAGES);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param maxMessageSize  largest reassembled payload
+	 * @param maxPendingBytes largest number of bytes held by partial messages of the connection
+	 * @param maxMessages     largest number of partial messages of the connection, dropped ones included
+	 */
+	public ChunkedFrameAggregator(int maxMessageSize, long maxPendingBytes, int maxMessages) {
+		if (maxMessageSize <= 0 || maxPendingBytes < maxMessageSize) {
+			throw new IllegalArgumentException("maxMessageSize must be positive and fit into maxPendingBytes");
+		}
+		if (maxMessages <= 0) {
+			throw new IllegalArgumentException("maxMessages must be positive");
+		}
+		this.maxMessageSize = maxMessageSize;
+		this.maxPendingBytes = maxPendingBytes;
+		this.maxMessages = maxMessages;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) {
+		if (!isChunk(msg)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		ByteBuf frame = (ByteBuf) msg;
+		if (closing) {
+			frame.release();
+			return;
+		}
+		try {
+			aggregate(ctx, frame);
+		} finally {
+			frame.release();
+		}
+	}
+
+	/**
+	 * Whether the message is a chunk frame
+	 *
+	 * @param msg inbound message
+	 *
+	 * @return chunk
+	 */
+	static boolean isChunk(Object msg) {
+		if (!(msg instanceof ByteBuf)) {
+			return false;
+		}
+		ByteBuf frame = (ByteBuf) msg;
+		return FrameFlags.isChunk(frame.getUnsignedByte(frame.readerIndex() + FrameFlags.OFFSET));
+	}
+
+	/**
+	 * Add a chunk to its message and pass the message on once it is complete
+	 *
+	 * @param ctx   ctx
+	 * @param frame chunk frame, the caller releases it
+	 */
+	private void aggregate(ChannelHandlerContext ctx, ByteBuf frame) {
+		int start = frame.readerIndex();
+		int flags = frame.getUnsignedByte(start + FrameFlags.OFFSET);
+		int sequenceId = frame.getInt(start + 7);
+		int chunkLength = frame.readableBytes() - HEADER_LENGTH;
+		boolean last = FrameFlags.isLastChunk(flags);
+
+		CompositeByteBuf message;
+		if (messages.containsKey(sequenceId)) {
+			message = messages.get(sequenceId);
+			if (message == DISCARDING) {
+				if (last) {
+					messages.remove(sequenceId);
+				}
+				return;
+			}
+		} else if (messages.size() >= maxMessages) {
+			// Zero-length chunks and dropped messages hold no bytes, only their number bounds them
+			closing = true;
+			releaseAll();
+			ctx.fireExceptionCaught(new TooLongFrameException("More than maxMessages " + maxMessages + " chunked messages in flight"));
+			ctx.close();
+			return;
+		} else {
+			// The first chunk lends its header to the whole message
+			message = ctx.alloc().compositeBuffer(MAX_COMPONENTS);
+			message.addComponent(true, frame.retainedSlice(start, HEADER_LENGTH));
+			messages.put(sequenceId, message);
+		}
+
+		int payloadLength = message.readableBytes() - HEADER_LENGTH + chunkLength;
+		if (payloadLength > maxMessageSize || pendingBytes + chunkLength > maxPendingBytes) {
+			discard(sequenceId, message, last);
+			ctx.fireExceptionCaught(new TooLongFrameException("Chunked message " + sequenceId + " exceeds " + (payloadLength > maxMessageSize ? "maxMessageSize " + maxMessageSize : "maxPendingBytes " + maxPendingBytes)));
+			return;
+		}
+		message.addComponent(true, frame.retainedSlice(start + HEADER_LENGTH, chunkLength));
+		pendingBytes += chunkLength;
+		if (!last) {
+			return;
+		}
+
+		messages.remove(sequenceId);
+		pendingBytes -= payloadLength;
+		message.setByte(FrameFlags.OFFSET, FrameFlags.unchunk(flags));
+		message.setInt(HEADER_LENGTH - 4, payloadLength);
+		ctx.fireChannelRead(message);
+	}
+
+	/**
+	 * Drop a partial message and skip its remaining chunks
+	 *
+	 * @param sequenceId sequence id
+	 * @param message    partial message
+	 * @param last       the current chunk is its last one
+	 */
+	private void discard(int sequenceId, CompositeByteBuf message, boolean last) {
+		pendingBytes -= message.readableBytes() - HEADER_LENGTH;
+		message.release();
+		if (last) {
+			messages.remove(sequenceId);
+		} else {
+			messages.put(sequenceId, DISCARDING);
+		}
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		releaseAll();
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) {
+		releaseAll();
+	}
+
+	/**
+	 * Release every partial message
+	 */
+	private void releaseAll() {
+		for (CompositeByteBuf message : messages.values()) {
+			ReferenceCountUtil.release(message);
+		}
+		messages.clear();
+		pendingBytes = 0;
+	}
+}
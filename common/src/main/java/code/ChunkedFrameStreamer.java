@@ -0,0 +1,111 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands the chunks of the configured message types to the application as {@link MessageChunk}s instead of reassembling them.
+ * A message of any size then passes through a bounded amount of memory.
+ * Reading stops while more than highWaterMark chunk bytes are unreleased and resumes once the application has released them down to lowWaterMark.
+ * Chunks of other message types and regular frames pass through, add it in front of the {@link ChunkedFrameAggregator}.
+ * Not sharable, the unreleased bytes are per channel.
+ */
+public class ChunkedFrameStreamer extends ChannelInboundHandlerAdapter {
+	public static final int DEFAULT_HIGH_WATER_MARK = 1024 * 1024;
+	public static final int DEFAULT_LOW_WATER_MARK = DEFAULT_HIGH_WATER_MARK / 2;
+	private static final int HEADER_LENGTH = NettyCustomizedMessageToMessageCodec.HEADER_LENGTH;
+
+	private final long highWaterMark;
+	private final long lowWaterMark;
+	private final boolean[] streamed = new boolean[MessageRegistry.MAX_TYPE_ID + 1];
+	private final AtomicLong unreleasedBytes = new AtomicLong();
+	private volatile Channel channel;
+
+	/**
+	 * Streamer with the default water marks
+	 *
+	 * @param types message types to stream
+	 */
+	public ChunkedFrameStreamer(MessageType... types) {
+		this(DEFAULT_HIGH_WATER_MARK, DEFAULT_LOW_WATER_MARK, types);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param highWaterMark unreleased chunk bytes above which reading stops
+	 * @param lowWaterMark  unreleased chunk bytes below which reading resumes
+	 * @param types         message types to stream
+	 */
+	public ChunkedFrameStreamer(long highWaterMark, long lowWaterMark, MessageType... types) {
+		if (lowWaterMark < 0 || highWaterMark <= lowWaterMark) {
+			throw new IllegalArgumentException("water marks must satisfy 0 <= low < high");
+		}
+		this.highWaterMark = highWaterMark;
+		this.lowWaterMark = lowWaterMark;
+		for (MessageType type : types) {
+			streamed[type.ordinal()] = true;
+		}
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+		channel = ctx.channel();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) {
+		if (!ChunkedFrameAggregator.isChunk(msg)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		ByteBuf frame = (ByteBuf) msg;
+		int start = frame.readerIndex();
+		int messageType = frame.getUnsignedByte(start + 6);
+		if (!streamed[messageType]) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		int sequenceId = frame.getInt(start + 7);
+		boolean last = FrameFlags.isLastChunk(frame.getUnsignedByte(start + FrameFlags.OFFSET));
+		int length = frame.readableBytes() - HEADER_LENGTH;
+		// The chunk keeps the frame alive, it is released together with the chunk
+		ByteBuf content = frame.slice(start + HEADER_LENGTH, length);
+		if (unreleasedBytes.addAndGet(length) > highWaterMark && !ReadPause.isPaused(ctx.channel(), ReadPause.CHUNK_STREAM)) {
+			ReadPause.pause(ctx.channel(), ReadPause.CHUNK_STREAM);
+		}
+		ctx.fireChannelRead(new MessageChunk(messageType, sequenceId, last, content, () -> released(length)));
+	}
+
+	/**
+	 * Account a released chunk and resume reading below the low water mark
+	 *
+	 * @param length chunk bytes
+	 */
+	private void released(int length) {
+		Channel channel = this.channel;
+		if (unreleasedBytes.addAndGet(-length) <= lowWaterMark && ReadPause.isPaused(channel, ReadPause.CHUNK_STREAM)) {
+			channel.eventLoop().execute(() -> {
+				if (unreleasedBytes.get() <= lowWaterMark) {
+					ReadPause.resume(channel, ReadPause.CHUNK_STREAM);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Number of chunk bytes the application holds
+	 *
+	 * @return unreleased bytes
+	 */
+	public long unreleasedBytes() {
+		return unreleasedBytes.get();
+	}
+}
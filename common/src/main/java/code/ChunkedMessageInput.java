@@ -0,0 +1,121 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streams raw bytes as the chunk frames of one message, for a {@link ChunkedWriteHandler} in the pipeline.
+ * Only one chunk is read ahead at a time, and the ChunkedWriteHandler stops pulling chunks while the channel is not writable, so a source of any size is sent in bounded memory.
+ * The receiver gets the chunks from a {@link ChunkedFrameStreamer} configured for the message type.
+ * The serializer byte of the frames is 0, the payload is not a serialized message.
+ */
+public class ChunkedMessageInput implements ChunkedInput<ByteBuf> {
+	private static final int HEADER_LENGTH = NettyCustomizedMessageToMessageCodec.HEADER_LENGTH;
+
+	private final ReadableByteChannel source;
+	private final MessageType messageType;
+	private final int sequenceId;
+	private final int chunkSize;
+	private long progress;
+	private boolean endOfInput;
+
+	/**
+	 * Input over a stream
+	 *
+	 * @param source      bytes to send, closed at the end
+	 * @param messageType message type of the frames
+	 * @param sequenceId  sequence id shared by all chunks, see {@link SequenceIdGenerator}
+	 * @param chunkSize   largest payload of one chunk
+	 */
+	public ChunkedMessageInput(InputStream source, MessageType messageType, int sequenceId, int chunkSize) {
+		this(Channels.newChannel(source), messageType, sequenceId, chunkSize);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param source      bytes to send, closed at the end
+	 * @param messageType message type of the frames
+	 * @param sequenceId  sequence id shared by all chunks, see {@link SequenceIdGenerator}
+	 * @param chunkSize   largest payload of one chunk
+	 */
+	public ChunkedMessageInput(ReadableByteChannel source, MessageType messageType, int sequenceId, int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+		}
+		this.source = source;
+		this.messageType = messageType;
+		this.sequenceId = sequenceId;
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public boolean isEndOfInput() {
+		return endOfInput;
+	}
+
+	@Override
+	public void close() throws Exception {
+		source.close();
+	}
+
+	@Deprecated
+	@Override
+	public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+		return readChunk(ctx.alloc());
+	}
+
+	@Override
+	public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+		if (endOfInput) {
+			return null;
+		}
+		ByteBuf frame = allocator.buffer(HEADER_LENGTH + chunkSize);
+		try {
+			frame.writeInt(NettyCustomizedMessageToMessageCodec.MAGIC_NUMBER);
+			frame.writeByte(NettyCustomizedMessageToMessageCodec.VERSION);
+			frame.writeByte(0);
+			frame.writeByte(messageType.ordinal());
+			frame.writeInt(sequenceId);
+			frame.writeByte(FrameFlags.NONE);
+			frame.writeInt(0);
+			// Fill the chunk, a source that ends exactly at a chunk boundary is closed by an empty last chunk
+			while (frame.writerIndex() - HEADER_LENGTH < chunkSize) {
+				int read = source.read(frame.nioBuffer(frame.writerIndex(), HEADER_LENGTH + chunkSize - frame.writerIndex()));
+				if (read < 0) {
+					endOfInput = true;
+					break;
+				}
+				frame.writerIndex(frame.writerIndex() + read);
+			}
+			int length = frame.writerIndex() - HEADER_LENGTH;
+			frame.setByte(FrameFlags.OFFSET, FrameFlags.chunk(FrameFlags.NONE, endOfInput));
+			frame.setInt(HEADER_LENGTH - 4, length);
+			progress += length;
+			return frame;
+		} catch (Throwable e) {
+			frame.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public long length() {
+		return -1;
+	}
+
+	@Override
+	public long progress() {
+		return progress;
+	}
+}
@@ -0,0 +1,203 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Field helpers for the compact binary format.
+ * Integers are written as base 128 varints, signed values are zigzag encoded first.
+ * Strings and byte arrays are prefixed with a varint of length + 1, so that 0 stands for null.
+ */
+public final class CompactBinary {
+	private CompactBinary() {
+	}
+
+	/**
+	 * Write an unsigned varint, 1 to 5 bytes
+	 *
+	 * @param out   out
+	 * @param value value
+	 */
+	public static void writeVarInt(ByteBuf out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Read an unsigned varint
+	 *
+	 * @param in in
+	 *
+	 * @return value
+	 */
+	public static int readVarInt(ByteBuf in) {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new CorruptedFrameException("varint is longer than 5 bytes");
+	}
+
+	/**
+	 * Write a zigzag encoded varint, small negative values stay small
+	 *
+	 * @param out   out
+	 * @param value value
+	 */
+	public static void writeSignedVarInt(ByteBuf out, int value) {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Read a zigzag encoded varint
+	 *
+	 * @param in in
+	 *
+	 * @return value
+	 */
+	public static int readSignedVarInt(ByteBuf in) {
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Write an unsigned varlong, 1 to 10 bytes
+	 *
+	 * @param out   out
+	 * @param value value
+	 */
+	public static void writeVarLong(ByteBuf out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Read an unsigned varlong
+	 *
+	 * @param in in
+	 *
+	 * @return value
+	 */
+	public static long readVarLong(ByteBuf in) {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new CorruptedFrameException("varlong is longer than 10 bytes");
+	}
+
+	/**
+	 * Write a boolean as a single byte
+	 *
+	 * @param out   out
+	 * @param value value
+	 */
+	public static void writeBoolean(ByteBuf out, boolean value) {
+		out.writeBoolean(value);
+	}
+
+	/**
+	 * Read a boolean
+	 *
+	 * @param in in
+	 *
+	 * @return value
+	 */
+	public static boolean readBoolean(ByteBuf in) {
+		return in.readBoolean();
+	}
+
+	/**
+	 * Write a length prefixed UTF-8 string, null is allowed
+	 *
+	 * @param out   out
+	 * @param value value
+	 */
+	public static void writeString(ByteBuf out, CharSequence value) {
+		if (value == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, ByteBufUtil.utf8Bytes(value) + 1);
+		ByteBufUtil.writeUtf8(out, value);
+	}
+
+	/**
+	 * Read a length prefixed UTF-8 string
+	 *
+	 * @param in in
+	 *
+	 * @return value, may be null
+	 */
+	public static String readString(ByteBuf in) {
+		int length = readLength(in);
+		return length < 0 ? null : in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+	}
+
+	/**
+	 * Write a length prefixed byte array, null is allowed
+	 *
+	 * @param out   out
+	 * @param value value
+	 */
+	public static void writeBytes(ByteBuf out, byte[] value) {
+		if (value == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, value.length + 1);
+		out.writeBytes(value);
+	}
+
+	/**
+	 * Read a length prefixed byte array
+	 *
+	 * @param in in
+	 *
+	 * @return value, may be null
+	 */
+	public static byte[] readBytes(ByteBuf in) {
+		int length = readLength(in);
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Read a length prefix and check it against the remaining bytes
+	 *
+	 * @param in in
+	 *
+	 * @return length, -1 for null
+	 */
+	private static int readLength(ByteBuf in) {
+		int length = readVarInt(in) - 1;
+		if (length < -1 || length > in.readableBytes()) {
+			throw new CorruptedFrameException("length " + length + " exceeds the " + in.readableBytes() + " remaining bytes");
+		}
+		return length;
+	}
+}
@@ -0,0 +1,28 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Message that can be written with {@link CustomizedSerializerAlgorithm#Binary}.
+ * The order of the writes in {@link #writeTo(ByteBuf)} is the schema, {@link #readFrom(ByteBuf)} must read the fields back in the same order.
+ * Use the helpers in {@link CompactBinary} for the individual fields.
+ * sequenceId and messageType are carried by the frame header and are not part of the payload.
+ */
+public interface CompactSerializable {
+	/**
+	 * Write the fields of this message in schema order
+	 *
+	 * @param out buffer to write to
+	 */
+	void writeTo(ByteBuf out);
+
+	/**
+	 * Read the fields of this message in schema order
+	 *
+	 * @param in buffer to read from
+	 */
+	void readFrom(ByteBuf in);
+}
@@ -3,19 +3,53 @@ package code;
 // Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
 // Author: NoCodeNoLife-cloud
 // stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Custom length field based frame decoder.
  * Inherited from the LengthFieldBasedFrameDecoder class.
+ * With the frame layout of {@link NettyCustomizedMessageToMessageCodec} the header is checked as soon as it has arrived, before the rest of
+ * the frame is buffered: a wrong magic number or version, an unknown serializer or message type, invalid flags, or a length above the limit
+ * closes the connection. A stream that lost its framing cannot be resynchronized, and a peer sending such frames is broken or hostile.
  */
+@Slf4j
 public class CustomizedLengthFieldBasedFrameDecoder extends LengthFieldBasedFrameDecoder {
+	/**
+	 * Largest frame accepted by default, leaves room for payloads compressed by the codec
+	 */
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024;
+	/**
+	 * a flood of broken connections must not flood the log as well
+	 */
+	private static final RateLimitedLog REJECT_LOG = RateLimitedLog.perSecond(1);
+	private static final int SERIALIZERS = CustomizedSerializerAlgorithm.values().length;
+
+	private final int maxFrameLength;
+	/**
+	 * the frames have the layout of {@link NettyCustomizedMessageToMessageCodec}, so their headers can be checked
+	 */
+	private final boolean validateHeader;
+
 	/**
 	 * Default constructor.
 	 * Call the parameterized constructor with default parameters.
 	 */
 	public CustomizedLengthFieldBasedFrameDecoder() {
-		this(1024, 12, 4, 0, 0);
+		this(DEFAULT_MAX_FRAME_LENGTH);
+	}
+
+	/**
+	 * Constructor with the frame layout of {@link NettyCustomizedMessageToMessageCodec}.
+	 *
+	 * @param maxFrameLength The maximum frame length received.
+	 */
+	public CustomizedLengthFieldBasedFrameDecoder(int maxFrameLength) {
+		super(maxFrameLength, 12, 4, 0, 0);
+		this.maxFrameLength = maxFrameLength;
+		this.validateHeader = true;
 	}
 
 	/**
@@ -29,5 +63,56 @@ public class CustomizedLengthFieldBasedFrameDecoder extends LengthFieldBasedFram
 	 */
 	public CustomizedLengthFieldBasedFrameDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength, int lengthAdjustment, int initialBytesToStrip) {
 		super(maxFrameLength, lengthFieldOffset, lengthFieldLength, lengthAdjustment, initialBytesToStrip);
+		this.maxFrameLength = maxFrameLength;
+		this.validateHeader = false;
+	}
+
+	@Override
+	protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+		if (validateHeader && in.readableBytes() >= NettyCustomizedMessageToMessageCodec.HEADER_LENGTH) {
+			String problem = checkHeader(in, in.readerIndex());
+			if (problem != null) {
+				long suppressed = REJECT_LOG.acquire();
+				if (suppressed >= 0) {
+					log.warn("Rejected a frame from {}: {} ({} more suppressed)", ctx.channel().remoteAddress(), problem, suppressed);
+				}
+				in.skipBytes(in.readableBytes());
+				ctx.close();
+				return null;
+			}
+		}
+		return super.decode(ctx, in);
+	}
+
+	/**
+	 * Check a frame header without reading it
+	 *
+	 * @param in    buffer
+	 * @param index index of the header
+	 *
+	 * @return what is wrong with it, null if it is fine
+	 */
+	private String checkHeader(ByteBuf in, int index) {
+		if (in.getInt(index) != NettyCustomizedMessageToMessageCodec.MAGIC_NUMBER) {
+			return "wrong magic number";
+		}
+		if (in.getByte(index + 4) != NettyCustomizedMessageToMessageCodec.VERSION) {
+			return "unsupported version " + in.getByte(index + 4);
+		}
+		if (in.getUnsignedByte(index + 5) >= SERIALIZERS) {
+			return "unknown serializer " + in.getUnsignedByte(index + 5);
+		}
+		if (MessageRegistry.get(in.getUnsignedByte(index + 6)) == null) {
+			return "unknown message type " + in.getUnsignedByte(index + 6);
+		}
+		int flags = in.getUnsignedByte(index + FrameFlags.OFFSET);
+		if (!FrameFlags.isValid(flags)) {
+			return "invalid flags 0x" + Integer.toHexString(flags);
+		}
+		int length = in.getInt(index + NettyCustomizedMessageToMessageCodec.HEADER_LENGTH - 4);
+		if (length < 0 || length > maxFrameLength - NettyCustomizedMessageToMessageCodec.HEADER_LENGTH) {
+			return "frame length " + length + " exceeds " + maxFrameLength;
+		}
+		return null;
 	}
 }
\ No newline at end of file
@@ -17,17 +17,17 @@ import java.io.Serializable;
 @ToString(callSuper = true)
 public abstract class CustomizedMessageType implements Serializable {// TODO: Define message types that inherit from CustomizedMessageType
 	/**
-	 * count
-	 */
-	private static int count = 0;
-	/**
-	 * sequenceId
+	 * sequenceId, 0 for a message that does not answer a request, the codec then puts the next id of the {@link SequenceIdGenerator} of each channel it is sent on into the frame
 	 */
 	private int sequenceId;
 	/**
 	 * messageType
 	 */
 	private int messageType;
+	/**
+	 * set by the codec from the frame flags, the server pushed the message and its sequenceId answers no request
+	 */
+	private transient boolean push;
 
 	/**
 	 * CustomizedMessageType
@@ -35,8 +35,18 @@ public abstract class CustomizedMessageType implements Serializable {// TODO: De
 	 * @param messageType messageType
 	 */
 	public CustomizedMessageType(MessageType messageType) {
-		count++;
-		this.sequenceId = count;
 		this.messageType = messageType.ordinal();
 	}
+
+	/**
+	 * CustomizedMessageType of a type registered by its id, see {@link MessageRegistration#of(int, Class, CustomizedSerializerAlgorithm, java.util.function.Supplier)}
+	 *
+	 * @param messageType message type byte
+	 */
+	protected CustomizedMessageType(int messageType) {
+		if (messageType < 0 || messageType > MessageRegistry.MAX_TYPE_ID) {
+			throw new IllegalArgumentException("Message type id " + messageType + " does not fit into the message type byte");
+		}
+		this.messageType = messageType;
+	}
 }
\ No newline at end of file
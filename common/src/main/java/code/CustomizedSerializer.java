@@ -3,6 +3,8 @@ package code;
 // Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
 // Author: NoCodeNoLife-cloud
 // stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * This interface provides methods for custom serialization and deserialization.
@@ -22,6 +24,24 @@ public interface CustomizedSerializer {
 	 */
 	<T> T deserialize(Class<T> clazz, byte[] bytes);
 
+	/**
+	 * Method to deserialize the next length bytes of the buffer into an object of a given class.
+	 * The reader index of the buffer is advanced by length.
+	 * The default implementation copies the bytes and falls back to {@link #deserialize(Class, byte[])}.
+	 *
+	 * @param clazz  clazz
+	 * @param in     buffer to read from
+	 * @param length number of bytes that belong to the object
+	 * @param <T>    T
+	 *
+	 * @return T
+	 */
+	default <T> T deserialize(Class<T> clazz, ByteBuf in, int length) {
+		byte[] bytes = ByteBufUtil.getBytes(in, in.readerIndex(), length);
+		in.skipBytes(length);
+		return deserialize(clazz, bytes);
+	}
+
 	/**
 	 * Method to serialize an object into bytes
 	 *
@@ -31,4 +51,16 @@ public interface CustomizedSerializer {
 	 * @return data
 	 */
 	<T> byte[] serialize(T object);
+
+	/**
+	 * Method to serialize an object directly into the given buffer.
+	 * The default implementation falls back to {@link #serialize(Object)} and copies the result.
+	 *
+	 * @param object object
+	 * @param out    buffer to write to
+	 * @param <T>    T
+	 */
+	default <T> void serialize(T object, ByteBuf out) {
+		out.writeBytes(serialize(object));
+	}
 }
\ No newline at end of file
@@ -3,7 +3,16 @@ package code;
 // Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
 // Author: NoCodeNoLife-cloud
 // stay hungry，stay foolish
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
 import java.io.*;
+import java.lang.reflect.Constructor;
 
 /**
  * Customized serializer algorithm
@@ -27,6 +36,19 @@ public enum CustomizedSerializerAlgorithm implements CustomizedSerializer {
 			}
 		}
 
+		/**
+		 * Method to deserialize straight from the buffer using Java serialization
+		 */
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T> T deserialize(Class<T> clazz, ByteBuf in, int length) {
+			try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteBufInputStream(in, length))) {
+				return (T) objectInputStream.readObject();
+			} catch (IOException | ClassNotFoundException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
 		/**
 		 * Method to serialize an object into bytes using Java serialization
 		 */
@@ -41,6 +63,155 @@ public enum CustomizedSerializerAlgorithm implements CustomizedSerializer {
 				throw new RuntimeException("Serialization failed", e);
 			}
 		}
+
+		/**
+		 * Method to serialize an object straight into the buffer using Java serialization
+		 */
+		@Override
+		public <T> void serialize(T object, ByteBuf out) {
+			try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(new ByteBufOutputStream(out))) {
+				objectOutputStream.writeObject(object);
+			} catch (IOException e) {
+				throw new RuntimeException("Serialization failed", e);
+			}
+		}
+	},
+	/**
+	 * JSON serialization and deserialization, backed by Jackson
+	 */
+	Json {
+		/**
+		 * Method to deserialize JSON bytes into an object of a given class
+		 */
+		@Override
+		public <T> T deserialize(Class<T> clazz, byte[] bytes) {
+			try {
+				return OBJECT_MAPPER.readValue(bytes, clazz);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Method to deserialize JSON straight from the buffer
+		 */
+		@Override
+		public <T> T deserialize(Class<T> clazz, ByteBuf in, int length) {
+			try (InputStream inputStream = new ByteBufInputStream(in.readSlice(length))) {
+				return OBJECT_MAPPER.readValue(inputStream, clazz);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Method to serialize an object into JSON bytes
+		 */
+		@Override
+		public <T> byte[] serialize(T object) {
+			try {
+				return OBJECT_MAPPER.writeValueAsBytes(object);
+			} catch (IOException e) {
+				throw new RuntimeException("Serialization failed", e);
+			}
+		}
+
+		/**
+		 * Method to serialize an object as JSON straight into the buffer
+		 */
+		@Override
+		public <T> void serialize(T object, ByteBuf out) {
+			try (OutputStream outputStream = new ByteBufOutputStream(out)) {
+				OBJECT_MAPPER.writeValue(outputStream, object);
+			} catch (IOException e) {
+				throw new RuntimeException("Serialization failed", e);
+			}
+		}
+	},
+	/**
+	 * Compact binary serialization and deserialization, the schema is given by {@link CompactSerializable}
+	 */
+	Binary {
+		/**
+		 * Method to deserialize compact binary bytes into an object of a given class
+		 */
+		@Override
+		public <T> T deserialize(Class<T> clazz, byte[] bytes) {
+			return deserialize(clazz, Unpooled.wrappedBuffer(bytes), bytes.length);
+		}
+
+		/**
+		 * Method to deserialize compact binary straight from the buffer
+		 */
+		@Override
+		public <T> T deserialize(Class<T> clazz, ByteBuf in, int length) {
+			try {
+				T object = clazz.cast(CONSTRUCTORS.get(clazz).newInstance());
+				// read from a slice, so a broken schema can never read into the next frame
+				((CompactSerializable) object).readFrom(in.readSlice(length));
+				return object;
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Method to serialize an object into compact binary bytes
+		 */
+		@Override
+		public <T> byte[] serialize(T object) {
+			ByteBuf byteBuf = Unpooled.buffer();
+			serialize(object, byteBuf);
+			return ByteBufUtil.getBytes(byteBuf);
+		}
+
+		/**
+		 * Method to serialize an object as compact binary straight into the buffer
+		 */
+		@Override
+		public <T> void serialize(T object, ByteBuf out) {
+			if (!(object instanceof CompactSerializable compactSerializable)) {
+				throw new IllegalArgumentException(object.getClass().getName() + " does not implement CompactSerializable");
+			}
+			compactSerializable.writeTo(out);
+		}
+	};
+
+	/**
+	 * cached values, {@link #values()} clones the array on every call
+	 */
+	private static final CustomizedSerializerAlgorithm[] VALUES = values();
+	/**
+	 * shared Jackson mapper, thread safe once configured
+	 */
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	/**
+	 * cached no-arg constructors of the message classes read by {@link #Binary}
+	 */
+	private static final ClassValue<Constructor<?>> CONSTRUCTORS = new ClassValue<>() {
+		@Override
+		protected Constructor<?> computeValue(Class<?> type) {
+			try {
+				Constructor<?> constructor = type.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				return constructor;
+			} catch (NoSuchMethodException e) {
+				throw new IllegalArgumentException(type.getName() + " has no no-arg constructor", e);
+			}
+		}
+	};
+
+	/**
+	 * Algorithm of a serialization method byte
+	 *
+	 * @param ordinal ordinal
+	 *
+	 * @return algorithm
+	 */
+	public static CustomizedSerializerAlgorithm of(int ordinal) {
+		if (ordinal < 0 || ordinal >= VALUES.length) {
+			throw new IllegalArgumentException("Unknown serialization method: " + ordinal);
+		}
+		return VALUES[ordinal];
 	}
-	// TODO: Add more serializer algorithms
 }
\ No newline at end of file
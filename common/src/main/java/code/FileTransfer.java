@@ -0,0 +1,50 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Announces a file sent by a {@link FileTransferWriter}.
+ * The body is not part of this message, it follows as the chunk frames of the same sequenceId and message type,
+ * which a {@link ChunkedFrameStreamer} hands to a {@link FileTransferReceiver}.
+ */
+@Getter
+@Setter
+@ToString(callSuper = true)
+public class FileTransfer extends CustomizedMessageType implements CompactSerializable {
+	/**
+	 * file name, the receiver drops any directories
+	 */
+	private String name;
+	/**
+	 * body length in bytes
+	 */
+	private long length;
+
+	public FileTransfer() {
+		super(MessageType.FileTransfer);
+	}
+
+	public FileTransfer(String name, long length) {
+		super(MessageType.FileTransfer);
+		this.name = name;
+		this.length = length;
+	}
+
+	@Override
+	public void writeTo(ByteBuf out) {
+		CompactBinary.writeString(out, name);
+		CompactBinary.writeVarLong(out, length);
+	}
+
+	@Override
+	public void readFrom(ByteBuf in) {
+		name = CompactBinary.readString(in);
+		length = CompactBinary.readVarLong(in);
+	}
+}
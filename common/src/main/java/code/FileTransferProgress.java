@@ -0,0 +1,35 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * User event fired by a {@link FileTransferReceiver} after every chunk written to disk and once more when the file is complete
+ */
+@Value
+public class FileTransferProgress {
+	/**
+	 * sequenceId of the transfer
+	 */
+	int sequenceId;
+	/**
+	 * file being written, the final path once the transfer is done
+	 */
+	Path path;
+	/**
+	 * bytes written so far
+	 */
+	long transferred;
+	/**
+	 * body length announced by the sender
+	 */
+	long length;
+	/**
+	 * the file is complete and in place
+	 */
+	boolean done;
+}
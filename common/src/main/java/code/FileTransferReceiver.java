@@ -0,0 +1,204 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the files sent by a {@link FileTransferWriter} into a directory.
+ * Every chunk goes from the frame straight into a FileChannel and is released, so the heap never holds more than the chunks
+ * the {@link ChunkedFrameStreamer} lets through, whatever the size of the file.
+ * A file is written to a temporary file of its own, name.random.part, and moved to its name once complete, so transfers of the same name
+ * on other connections cannot touch it. A {@link FileTransferProgress} user event is fired after every chunk.
+ * Every open transfer holds a file descriptor, a connection may only have maxOpenTransfers at once, further announcements are refused.
+ * Add it behind the codec, with a ChunkedFrameStreamer for {@link MessageType#FileTransfer} in front of the aggregator.
+ * Not sharable, the open files are per channel.
+ */
+@Slf4j
+public class FileTransferReceiver extends ChannelInboundHandlerAdapter {
+	public static final long DEFAULT_MAX_LENGTH = 1L << 30;
+	public static final int DEFAULT_MAX_OPEN_TRANSFERS = 4;
+	private static final RateLimitedLog DROP_LOG = RateLimitedLog.perSecond(1);
+	private static final int FILE_TRANSFER = MessageType.FileTransfer.ordinal();
+
+	private final Path directory;
+	private final long maxLength;
+	private final int maxOpenTransfers;
+	private final Map<Integer, Sink> sinks = new HashMap<>();
+
+	/**
+	 * Receiver with the default limits
+	 *
+	 * @param directory directory the files are written to
+	 */
+	public FileTransferReceiver(Path directory) {
+		this(directory, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Receiver with the default number of open transfers
+	 *
+	 * @param directory directory the files are written to
+	 * @param maxLength largest file accepted, larger ones are refused and their chunks dropped
+	 */
+	public FileTransferReceiver(Path directory, long maxLength) {
+		this(directory, maxLength, DEFAULT_MAX_OPEN_TRANSFERS);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param directory        directory the files are written to
+	 * @param maxLength        largest file accepted, larger ones are refused and their chunks dropped
+	 * @param maxOpenTransfers transfers a connection may have open at once, further ones are refused and their chunks dropped
+	 */
+	public FileTransferReceiver(Path directory, long maxLength, int maxOpenTransfers) {
+		if (maxOpenTransfers <= 0) {
+			throw new IllegalArgumentException("maxOpenTransfers must be positive: " + maxOpenTransfers);
+		}
+		this.directory = directory;
+		this.maxLength = maxLength;
+		this.maxOpenTransfers = maxOpenTransfers;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof FileTransfer transfer) {
+			open(transfer);
+		} else if (msg instanceof MessageChunk chunk && chunk.getMessageType() == FILE_TRANSFER) {
+			try {
+				write(ctx, chunk);
+			} finally {
+				chunk.release();
+			}
+		} else {
+			super.channelRead(ctx, msg);
+		}
+	}
+
+	private void open(FileTransfer transfer) {
+		Path name = transfer.getName() == null ? null : Path.of(transfer.getName()).getFileName();
+		if (name == null || name.toString().equals(".") || name.toString().equals("..") || transfer.getLength() < 0 || transfer.getLength() > maxLength) {
+			log.warn("Refused file transfer {}", transfer);
+			return;
+		}
+		// A transfer announced again under the same id starts over
+		Sink previous = sinks.remove(transfer.getSequenceId());
+		if (previous != null) {
+			previous.abort();
+		}
+		if (sinks.size() >= maxOpenTransfers) {
+			log.warn("Refused file transfer {}, {} transfers are open already", transfer, sinks.size());
+			return;
+		}
+		Path path = directory.resolve(name);
+		Path part = null;
+		try {
+			part = Files.createTempFile(directory, name + ".", ".part");
+			FileChannel file = FileChannel.open(part, StandardOpenOption.WRITE);
+			sinks.put(transfer.getSequenceId(), new Sink(path, part, file, transfer.getLength()));
+		} catch (IOException e) {
+			log.error("Cannot write file transfer {} to {}", transfer.getSequenceId(), directory, e);
+			deleteQuietly(part);
+		}
+	}
+
+	private void write(ChannelHandlerContext ctx, MessageChunk chunk) {
+		Sink sink = sinks.get(chunk.getSequenceId());
+		if (sink == null) {
+			long suppressed = DROP_LOG.acquire();
+			if (suppressed >= 0) {
+				log.warn("Dropped chunk of unknown or refused file transfer {} from {} ({} more suppressed)", chunk.getSequenceId(), ctx.channel(), suppressed);
+			}
+			return;
+		}
+		ByteBuf content = chunk.content();
+		try {
+			if (sink.transferred + content.readableBytes() > sink.length) {
+				throw new IOException("File transfer " + chunk.getSequenceId() + " is longer than the announced " + sink.length + " bytes");
+			}
+			while (content.isReadable()) {
+				sink.transferred += content.readBytes(sink.file, sink.transferred, content.readableBytes());
+			}
+			if (chunk.isLast()) {
+				sinks.remove(chunk.getSequenceId());
+				sink.complete();
+				log.info("Received {} ({} bytes)", sink.path, sink.length);
+			}
+		} catch (IOException e) {
+			sinks.remove(chunk.getSequenceId());
+			sink.abort();
+			log.error("File transfer {} to {} failed", chunk.getSequenceId(), sink.part, e);
+			return;
+		}
+		ctx.fireUserEventTriggered(new FileTransferProgress(chunk.getSequenceId(), chunk.isLast() ? sink.path : sink.part, sink.transferred,
+				sink.length, chunk.isLast()));
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		// Transfers cut off by the connection leave nothing behind
+		sinks.values().forEach(Sink::abort);
+		sinks.clear();
+		super.channelInactive(ctx);
+	}
+
+	/**
+	 * File of one transfer
+	 */
+	private static final class Sink {
+		private final Path path;
+		private final Path part;
+		private final FileChannel file;
+		private final long length;
+		private long transferred;
+
+		private Sink(Path path, Path part, FileChannel file, long length) {
+			this.path = path;
+			this.part = part;
+			this.file = file;
+			this.length = length;
+		}
+
+		private void complete() throws IOException {
+			file.close();
+			if (transferred != length) {
+				throw new IOException("File transfer ended after " + transferred + " of " + length + " bytes");
+			}
+			Files.move(part, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		private void abort() {
+			try {
+				file.close();
+			} catch (IOException e) {
+				log.debug("Failed to close {}", part, e);
+			}
+			deleteQuietly(part);
+		}
+	}
+
+	private static void deleteQuietly(Path part) {
+		if (part == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(part);
+		} catch (IOException e) {
+			log.debug("Failed to clean up {}", part, e);
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelProgressiveFuture;
+import io.netty.channel.ChannelProgressivePromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sends a file as a {@link FileTransfer} followed by the chunk frames of its body, the receiver needs a {@link ChunkedFrameStreamer}
+ * for {@link MessageType#FileTransfer} and a {@link FileTransferReceiver}.
+ * Where the transport supports it the body of every chunk is a {@link DefaultFileRegion}, which the kernel copies from the page cache
+ * straight into the socket with sendfile, only the 16-byte header of a chunk is allocated. Elsewhere, e.g. under TLS, the chunks are
+ * read into pooled buffers like a ChunkedFile would.
+ * A window of chunks is in flight at a time and every written chunk lets the next one go, so a file of any size is sent in bounded memory,
+ * the returned future reports the progress as the chunks are written.
+ */
+@Slf4j
+public final class FileTransferWriter implements ChannelFutureListener {
+	/**
+	 * chunks handed to the channel before the first has been written
+	 */
+	public static final int DEFAULT_WINDOW = 16;
+	private static final int HEADER_LENGTH = NettyCustomizedMessageToMessageCodec.HEADER_LENGTH;
+
+	private final Channel channel;
+	private final FileChannel file;
+	private final long length;
+	private final int sequenceId;
+	private final int chunkSize;
+	private final int window;
+	private final boolean zeroCopy;
+	private final ChannelProgressivePromise promise;
+	/**
+	 * body bytes handed to the channel
+	 */
+	private long position;
+	/**
+	 * chunks handed to the channel and not yet written
+	 */
+	private int inFlight;
+	/**
+	 * chunks written
+	 */
+	private long completed;
+	private boolean lastChunkSent;
+
+	private FileTransferWriter(Channel channel, FileChannel file, long length, int chunkSize, int window, boolean zeroCopy, ChannelProgressivePromise promise) {
+		this.channel = channel;
+		this.file = file;
+		this.length = length;
+		this.sequenceId = SequenceIdGenerator.of(channel).next();
+		this.chunkSize = chunkSize;
+		this.window = window;
+		this.zeroCopy = zeroCopy;
+		this.promise = promise;
+	}
+
+	/**
+	 * Send a file under its own name, with sendfile if the channel supports it
+	 *
+	 * @param channel channel
+	 * @param path    file
+	 *
+	 * @return future reporting the progress, done once the whole body has been written
+	 */
+	public static ChannelProgressiveFuture send(Channel channel, Path path) {
+		return send(channel, path, path.getFileName().toString(), NettyCustomizedMessageToMessageCodec.DEFAULT_MAX_CHUNK_SIZE,
+				DEFAULT_WINDOW, supportsZeroCopy(channel));
+	}
+
+	/**
+	 * Send a file
+	 *
+	 * @param channel   channel
+	 * @param path      file
+	 * @param name      name announced to the receiver
+	 * @param chunkSize largest body of one chunk frame, must stay below the receiver's frame limit
+	 * @param window    chunks in flight
+	 * @param zeroCopy  send the chunk bodies as file regions, only for transports that write them with sendfile
+	 *
+	 * @return future reporting the progress, done once the whole body has been written
+	 */
+	public static ChannelProgressiveFuture send(Channel channel, Path path, String name, int chunkSize, int window, boolean zeroCopy) {
+		if (chunkSize <= 0 || window <= 0) {
+			throw new IllegalArgumentException("chunkSize and window must be positive");
+		}
+		ChannelProgressivePromise promise = channel.newProgressivePromise();
+		if (TransportType.isInProcess(channel)) {
+			return promise.setFailure(new UnsupportedOperationException("File transfers need a socket transport, in-process connections carry no frames"));
+		}
+		FileChannel file;
+		long length;
+		try {
+			file = FileChannel.open(path, StandardOpenOption.READ);
+			length = file.size();
+		} catch (IOException e) {
+			return promise.setFailure(e);
+		}
+		FileTransferWriter writer = new FileTransferWriter(channel, file, length, chunkSize, window, zeroCopy, promise);
+		if (channel.eventLoop().inEventLoop()) {
+			writer.start(name);
+		} else {
+			channel.eventLoop().execute(() -> writer.start(name));
+		}
+		return promise;
+	}
+
+	/**
+	 * Whether the chunk bodies can go out as file regions on a channel, which needs a socket of the Nio or Epoll transport
+	 * and no handler that has to see the bytes, like TLS
+	 *
+	 * @param channel channel
+	 *
+	 * @return true if file regions are written with sendfile
+	 */
+	public static boolean supportsZeroCopy(Channel channel) {
+		return (channel instanceof NioSocketChannel || channel instanceof EpollSocketChannel) && channel.pipeline().get(SslHandler.class) == null;
+	}
+
+	private void start(String name) {
+		FileTransfer transfer = new FileTransfer(name, length);
+		transfer.setSequenceId(sequenceId);
+		channel.write(transfer).addListener(future -> {
+			if (!future.isSuccess()) {
+				fail(future.cause());
+			}
+		});
+		writeChunks();
+	}
+
+	/**
+	 * Hand chunks to the channel until the window is full or the body has been handed over
+	 */
+	private void writeChunks() {
+		try {
+			while (inFlight < window && !lastChunkSent) {
+				writeChunk();
+			}
+		} catch (Throwable e) {
+			fail(e);
+			return;
+		}
+		channel.flush();
+	}
+
+	private void writeChunk() throws IOException {
+		int chunkLength = (int) Math.min(chunkSize, length - position);
+		lastChunkSent = position + chunkLength == length;
+		ByteBuf header = channel.alloc().buffer(zeroCopy ? HEADER_LENGTH : HEADER_LENGTH + chunkLength);
+		header.writeInt(NettyCustomizedMessageToMessageCodec.MAGIC_NUMBER);
+		header.writeByte(NettyCustomizedMessageToMessageCodec.VERSION);
+		// The body is raw bytes, not a serialized message
+		header.writeByte(0);
+		header.writeByte(MessageType.FileTransfer.ordinal());
+		header.writeInt(sequenceId);
+		header.writeByte(FrameFlags.chunk(FrameFlags.NONE, lastChunkSent));
+		header.writeInt(chunkLength);
+		ChannelFuture future;
+		if (zeroCopy) {
+			future = channel.write(header);
+			if (chunkLength > 0) {
+				future = channel.write(new SharedFileRegion(file, position, chunkLength));
+			}
+		} else {
+			try {
+				while (header.readableBytes() < HEADER_LENGTH + chunkLength) {
+					int read = header.writeBytes(file, position + header.readableBytes() - HEADER_LENGTH, HEADER_LENGTH + chunkLength - header.readableBytes());
+					if (read < 0) {
+						throw new EOFException("File shrank during the transfer");
+					}
+				}
+			} catch (Throwable e) {
+				header.release();
+				throw e;
+			}
+			future = channel.write(header);
+		}
+		position += chunkLength;
+		inFlight++;
+		future.addListener(this);
+	}
+
+	/**
+	 * Called on the event loop once a chunk has been written
+	 *
+	 * @param future write of the last part of the chunk
+	 */
+	@Override
+	public void operationComplete(ChannelFuture future) {
+		inFlight--;
+		if (!future.isSuccess()) {
+			fail(future.cause());
+			return;
+		}
+		completed++;
+		promise.tryProgress(Math.min(length, completed * chunkSize), length);
+		if (lastChunkSent && inFlight == 0) {
+			close();
+			promise.trySuccess();
+		} else if (!promise.isDone()) {
+			writeChunks();
+		}
+	}
+
+	private void fail(Throwable cause) {
+		if (promise.tryFailure(cause)) {
+			log.warn("File transfer {} on {} failed", sequenceId, channel, cause);
+			close();
+			// The receiver cannot tell a truncated body from a slow one, the connection is no use for this transfer anymore
+			channel.close();
+		}
+	}
+
+	private void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			log.debug("Failed to close the file of transfer {}", sequenceId, e);
+		}
+	}
+
+	/**
+	 * Region over a slice of a file shared by all chunks, releasing it leaves the file open for the next chunks
+	 */
+	private static final class SharedFileRegion extends DefaultFileRegion {
+		SharedFileRegion(FileChannel file, long position, long count) {
+			super(file, position, count);
+		}
+
+		@Override
+		protected void deallocate() {
+			// The writer closes the file once the last chunk has been written
+		}
+	}
+}
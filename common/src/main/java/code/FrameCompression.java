@@ -0,0 +1,225 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Payload compression of a frame, the ordinal goes into the {@link FrameFlags} byte.
+ * A compressed payload starts with its 4-byte uncompressed length, followed by the compressed bytes.
+ * The length is a claim of the peer, the output buffer only grows towards it as the bytes are actually decompressed.
+ */
+public enum FrameCompression {
+	/**
+	 * uncompressed
+	 */
+	None {
+		@Override
+		protected void compressTo(ByteBuf src, ByteBuf out) {
+			out.writeBytes(src);
+		}
+
+		@Override
+		protected void decompressTo(ByteBuf src, ByteBuf out) {
+			out.writeBytes(src);
+		}
+	},
+	/**
+	 * zlib through the JDK, better ratio, more CPU
+	 */
+	Zlib {
+		@Override
+		protected void compressTo(ByteBuf src, ByteBuf out) {
+			Deflater deflater = DEFLATERS.get();
+			deflater.reset();
+			deflater.setInput(src.nioBuffer());
+			deflater.finish();
+			while (!deflater.finished()) {
+				out.ensureWritable(Math.max(64, src.readableBytes() >> 1));
+				ByteBuffer target = out.nioBuffer(out.writerIndex(), out.writableBytes());
+				out.writerIndex(out.writerIndex() + deflater.deflate(target));
+			}
+			src.skipBytes(src.readableBytes());
+		}
+
+		@Override
+		protected void decompressTo(ByteBuf src, ByteBuf out) {
+			Inflater inflater = INFLATERS.get();
+			inflater.reset();
+			inflater.setInput(src.nioBuffer());
+			try {
+				while (!inflater.finished()) {
+					if (!out.isWritable()) {
+						if (out.writerIndex() == out.maxCapacity()) {
+							// Full at the claimed size, the stream must not have anything left
+							if (inflater.inflate(new byte[1]) > 0) {
+								throw new CorruptedFrameException("Payload decompresses to more than " + out.maxCapacity() + " bytes");
+							}
+							break;
+						}
+						out.ensureWritable(1);
+					}
+					ByteBuffer target = out.nioBuffer(out.writerIndex(), out.writableBytes());
+					int inflated = inflater.inflate(target);
+					if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					out.writerIndex(out.writerIndex() + inflated);
+				}
+			} catch (DataFormatException e) {
+				throw new CorruptedFrameException(e);
+			}
+			src.skipBytes(src.readableBytes());
+		}
+	},
+	/**
+	 * snappy through netty, fast with a moderate ratio
+	 */
+	Snappy {
+		@Override
+		protected void compressTo(ByteBuf src, ByteBuf out) {
+			// Netty's snappy encoder only handles blocks up to 32 KiB, every block is prefixed with its compressed length
+			io.netty.handler.codec.compression.Snappy snappy = new io.netty.handler.codec.compression.Snappy();
+			while (src.isReadable()) {
+				int lengthIndex = out.writerIndex();
+				out.writeInt(0);
+				int blockLength = Math.min(src.readableBytes(), SNAPPY_BLOCK_SIZE);
+				snappy.encode(src.readSlice(blockLength), out, blockLength);
+				out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+				snappy.reset();
+			}
+		}
+
+		@Override
+		protected void decompressTo(ByteBuf src, ByteBuf out) {
+			io.netty.handler.codec.compression.Snappy snappy = new io.netty.handler.codec.compression.Snappy();
+			while (src.isReadable()) {
+				int blockLength = src.readInt();
+				if (blockLength < 0 || blockLength > src.readableBytes()) {
+					throw new CorruptedFrameException("Snappy block of " + blockLength + " bytes exceeds the payload");
+				}
+				snappy.decode(src.readSlice(blockLength), out);
+				snappy.reset();
+			}
+		}
+	};
+
+	/**
+	 * Deflater and Inflater hold native zlib state that is expensive to set up, every event loop reuses its own
+	 */
+	private static final FastThreadLocal<Deflater> DEFLATERS = new FastThreadLocal<>() {
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(Deflater.BEST_SPEED);
+		}
+
+		@Override
+		protected void onRemoval(Deflater deflater) {
+			deflater.end();
+		}
+	};
+	private static final FastThreadLocal<Inflater> INFLATERS = new FastThreadLocal<>() {
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater();
+		}
+
+		@Override
+		protected void onRemoval(Inflater inflater) {
+			inflater.end();
+		}
+	};
+	private static final FrameCompression[] VALUES = values();
+	private static final int SNAPPY_BLOCK_SIZE = Short.MAX_VALUE;
+	/**
+	 * smallest output buffer of a decompression, it grows by doubling
+	 */
+	private static final int INITIAL_OUTPUT_SIZE = 1024;
+
+	/**
+	 * Compression of a flags value
+	 *
+	 * @param ordinal ordinal
+	 *
+	 * @return compression
+	 */
+	public static FrameCompression of(int ordinal) {
+		if (ordinal < 0 || ordinal >= VALUES.length) {
+			throw new CorruptedFrameException("Unknown compression: " + ordinal);
+		}
+		return VALUES[ordinal];
+	}
+
+	/**
+	 * Resolve the configured compression
+	 *
+	 * @param name none, zlib or snappy, case insensitive
+	 *
+	 * @return compression
+	 */
+	public static FrameCompression resolve(String name) {
+		for (FrameCompression compression : VALUES) {
+			if (compression.name().equalsIgnoreCase(name)) {
+				return compression;
+			}
+		}
+		throw new IllegalArgumentException("Unknown compression: " + name);
+	}
+
+	/**
+	 * Compress all readable bytes of src into out, prefixed with their length
+	 *
+	 * @param src payload
+	 * @param out buffer to append to
+	 */
+	public void compress(ByteBuf src, ByteBuf out) {
+		out.writeInt(src.readableBytes());
+		compressTo(src, out);
+	}
+
+	/**
+	 * Decompress a payload written by {@link #compress(ByteBuf, ByteBuf)}
+	 *
+	 * @param allocator           allocator of the result
+	 * @param src                 compressed payload, consumed entirely
+	 * @param maxUncompressedSize refuse payloads that claim to be larger than this
+	 *
+	 * @return uncompressed payload, to be released by the caller
+	 */
+	public ByteBuf decompress(ByteBufAllocator allocator, ByteBuf src, int maxUncompressedSize) {
+		int uncompressedSize = src.readInt();
+		if (uncompressedSize < 0 || uncompressedSize > maxUncompressedSize) {
+			throw new TooLongFrameException("Uncompressed payload of " + uncompressedSize + " bytes exceeds " + maxUncompressedSize);
+		}
+		// Start small, a frame of a few bytes must not reserve the whole claimed size up front
+		ByteBuf out = allocator.buffer(Math.min(uncompressedSize, Math.max(INITIAL_OUTPUT_SIZE, src.readableBytes() << 2)), uncompressedSize);
+		try {
+			try {
+				decompressTo(src, out);
+			} catch (IndexOutOfBoundsException e) {
+				throw new CorruptedFrameException("Payload decompresses to more than " + uncompressedSize + " bytes", e);
+			}
+			if (out.readableBytes() != uncompressedSize) {
+				throw new CorruptedFrameException("Payload decompressed to " + out.readableBytes() + " bytes instead of " + uncompressedSize);
+			}
+			return out;
+		} catch (RuntimeException e) {
+			out.release();
+			throw e;
+		}
+	}
+
+	protected abstract void compressTo(ByteBuf src, ByteBuf out);
+
+	protected abstract void decompressTo(ByteBuf src, ByteBuf out);
+}
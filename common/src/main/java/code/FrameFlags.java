@@ -0,0 +1,167 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+
+/**
+ * The flags byte of the frame header, right after the sequence number.
+ * It used to be the padding byte 0xff, which still means "no flags", so frames of older peers decode unchanged.
+ * Any other value has the high bit clear and carries these bits:
+ * <pre>
+ * bit 0-1  compression, the ordinal of {@link FrameCompression}
+ * bit 2    chunk, the frame carries one piece of a message split by sequence id
+ * bit 3    last chunk, the final piece of that message
+ * bit 4    push, the server sent the message on its own, its sequenceId answers no request
+ * </pre>
+ * The other bits are reserved and must be clear, see {@link #isValid(int)}.
+ */
+public final class FrameFlags {
+	/**
+	 * header offset of the flags byte
+	 */
+	public static final int OFFSET = 11;
+	/**
+	 * no flags, the old padding value
+	 */
+	public static final int NONE = 0xff;
+	/**
+	 * bits holding the compression
+	 */
+	public static final int COMPRESSION_MASK = 0x03;
+	/**
+	 * frame is a chunk of a larger message
+	 */
+	public static final int CHUNK = 0x04;
+	/**
+	 * frame is the last chunk of a larger message
+	 */
+	public static final int LAST_CHUNK = 0x08;
+	/**
+	 * frame is a push of the server BroadcastHub, its sequenceId comes from the id space of the server
+	 */
+	public static final int PUSH = 0x10;
+	/**
+	 * bits that have a meaning
+	 */
+	private static final int DEFINED = COMPRESSION_MASK | CHUNK | LAST_CHUNK | PUSH;
+	private static final int COMPRESSIONS = FrameCompression.values().length;
+
+	private FrameFlags() {
+	}
+
+	/**
+	 * Whether a flags byte can be decoded: "no flags", or only defined bits with a known compression, and last chunk only on a chunk
+	 *
+	 * @param flags flags byte
+	 *
+	 * @return valid
+	 */
+	public static boolean isValid(int flags) {
+		if (isNone(flags)) {
+			return true;
+		}
+		return (flags & ~DEFINED) == 0 && (flags & COMPRESSION_MASK) < COMPRESSIONS && ((flags & LAST_CHUNK) == 0 || (flags & CHUNK) != 0);
+	}
+
+	/**
+	 * Compression of a frame
+	 *
+	 * @param flags flags byte
+	 *
+	 * @return compression
+	 */
+	public static FrameCompression compression(int flags) {
+		return isNone(flags) ? FrameCompression.None : FrameCompression.of(flags & COMPRESSION_MASK);
+	}
+
+	/**
+	 * Flags byte of a frame
+	 *
+	 * @param compression compression
+	 *
+	 * @return flags byte
+	 */
+	public static int of(FrameCompression compression) {
+		return compression == FrameCompression.None ? NONE : compression.ordinal();
+	}
+
+	/**
+	 * Whether the byte is the legacy "no flags" value
+	 *
+	 * @param flags flags byte
+	 *
+	 * @return none
+	 */
+	public static boolean isNone(int flags) {
+		return (flags & 0xff) == NONE;
+	}
+
+	/**
+	 * Whether the frame is a chunk of a larger message
+	 *
+	 * @param flags flags byte
+	 *
+	 * @return chunk
+	 */
+	public static boolean isChunk(int flags) {
+		return !isNone(flags) && (flags & CHUNK) != 0;
+	}
+
+	/**
+	 * Whether the frame is the last chunk of a larger message
+	 *
+	 * @param flags flags byte
+	 *
+	 * @return last chunk
+	 */
+	public static boolean isLastChunk(int flags) {
+		return isChunk(flags) && (flags & LAST_CHUNK) != 0;
+	}
+
+	/**
+	 * Whether the frame is a push rather than the answer to a request
+	 *
+	 * @param flags flags byte
+	 *
+	 * @return push
+	 */
+	public static boolean isPush(int flags) {
+		return !isNone(flags) && (flags & PUSH) != 0;
+	}
+
+	/**
+	 * Flags byte of a push
+	 *
+	 * @param flags flags byte of the frame
+	 *
+	 * @return flags byte
+	 */
+	public static int push(int flags) {
+		return (isNone(flags) ? 0 : flags) | PUSH;
+	}
+
+	/**
+	 * Flags byte of a chunk
+	 *
+	 * @param flags flags byte of the whole message
+	 * @param last  last chunk
+	 *
+	 * @return flags byte
+	 */
+	public static int chunk(int flags, boolean last) {
+		return (isNone(flags) ? 0 : flags) | CHUNK | (last ? LAST_CHUNK : 0);
+	}
+
+	/**
+	 * Flags byte of a reassembled message
+	 *
+	 * @param flags flags byte of one of its chunks
+	 *
+	 * @return flags byte
+	 */
+	public static int unchunk(int flags) {
+		int remaining = flags & ~(CHUNK | LAST_CHUNK);
+		return remaining == 0 ? NONE : remaining;
+	}
+}
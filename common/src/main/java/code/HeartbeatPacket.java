@@ -3,6 +3,7 @@ package code;
 // Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
 // Author: NoCodeNoLife-cloud
 // stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -12,8 +13,12 @@ import lombok.extern.slf4j.Slf4j;
 @Getter
 @Setter
 @ToString(callSuper = true)
-public class HeartbeatPacket extends CustomizedMessageType {
+public class HeartbeatPacket extends RecyclableMessage implements CompactSerializable {
 	private String info;
+	/**
+	 * heartbeat interval in milliseconds, proposed by the client and answered with the accepted value by the server, 0 when not negotiating
+	 */
+	private int intervalMillis;
 
 	public HeartbeatPacket() {
 		super(MessageType.HeartbeatPacket);
@@ -23,4 +28,28 @@ public class HeartbeatPacket extends CustomizedMessageType {
 		super(MessageType.HeartbeatPacket);
 		this.info = info;
 	}
+
+	public HeartbeatPacket(String info, int intervalMillis) {
+		super(MessageType.HeartbeatPacket);
+		this.info = info;
+		this.intervalMillis = intervalMillis;
+	}
+
+	@Override
+	protected void clear() {
+		info = null;
+		intervalMillis = 0;
+	}
+
+	@Override
+	public void writeTo(ByteBuf out) {
+		CompactBinary.writeString(out, info);
+		CompactBinary.writeVarInt(out, intervalMillis);
+	}
+
+	@Override
+	public void readFrom(ByteBuf in) {
+		info = CompactBinary.readString(in);
+		intervalMillis = CompactBinary.readVarInt(in);
+	}
 }
\ No newline at end of file
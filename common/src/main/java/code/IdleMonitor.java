@@ -0,0 +1,230 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.timeout.IdleStateEvent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idle detection and heartbeat timing of a connection, a lighter replacement for IdleStateHandler.
+ * Every message written proves the connection alive to the peer, so heartbeats are only due on a connection that sends no application traffic.
+ * Recording traffic is a field write, the checks run on the {@link IdleTimingWheel} shared by all connections of the event loop.
+ * The events are those of IdleStateHandler, so the heartbeat handlers keep working:
+ * <ul>
+ * <li>{@link IdleStateEvent#WRITER_IDLE_STATE_EVENT} when a heartbeat is due, after heartbeatInterval without writes</li>
+ * <li>{@link IdleStateEvent#READER_IDLE_STATE_EVENT} when the connection should be closed, after idleTimeout without reads</li>
+ * </ul>
+ * The interval is negotiated with {@link HeartbeatPacket#getIntervalMillis()}: the client proposes its interval, the server clamps it to
+ * its bounds, adopts a timeout of {@link #MISSED_HEARTBEATS} intervals and writes the accepted value back into the packet for its answer,
+ * the client then adopts the accepted interval. Add it right behind the codec. Not sharable, the timestamps are per channel.
+ */
+public class IdleMonitor extends ChannelDuplexHandler {
+	/**
+	 * heartbeats that may go missing before the connection is closed
+	 */
+	public static final int MISSED_HEARTBEATS = 3;
+
+	private final int minIntervalMillis;
+	private final int maxIntervalMillis;
+	private long heartbeatIntervalNanos;
+	private long idleTimeoutNanos;
+	private long lastRead;
+	private long lastWrite;
+	private boolean scheduled;
+	private ChannelHandlerContext ctx;
+	private IdleTimingWheel wheel;
+	/**
+	 * tick at which the wheel expires this monitor
+	 */
+	long deadlineTick;
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param heartbeatIntervalMillis heartbeat interval, 0 for a side that does not send heartbeats
+	 * @param idleTimeoutMillis       close timeout, 0 to never close
+	 * @param minIntervalMillis       smallest interval a peer may negotiate
+	 * @param maxIntervalMillis       largest interval a peer may negotiate
+	 */
+	public IdleMonitor(int heartbeatIntervalMillis, int idleTimeoutMillis, int minIntervalMillis, int maxIntervalMillis) {
+		if (heartbeatIntervalMillis < 0 || idleTimeoutMillis < 0 || minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis) {
+			throw new IllegalArgumentException("invalid idle monitor settings");
+		}
+		this.heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMillis);
+		this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+		this.minIntervalMillis = minIntervalMillis;
+		this.maxIntervalMillis = maxIntervalMillis;
+	}
+
+	/**
+	 * Monitor of the side that sends heartbeats
+	 *
+	 * @param heartbeatIntervalMillis proposed heartbeat interval
+	 *
+	 * @return monitor that closes after {@link #MISSED_HEARTBEATS} intervals without reads
+	 */
+	public static IdleMonitor client(int heartbeatIntervalMillis) {
+		return new IdleMonitor(heartbeatIntervalMillis, MISSED_HEARTBEATS * heartbeatIntervalMillis, 1, Integer.MAX_VALUE / MISSED_HEARTBEATS);
+	}
+
+	/**
+	 * Monitor of the side that answers heartbeats
+	 *
+	 * @param idleTimeoutMillis close timeout until a client negotiates its interval
+	 * @param minIntervalMillis smallest interval a client may negotiate
+	 * @param maxIntervalMillis largest interval a client may negotiate
+	 *
+	 * @return monitor
+	 */
+	public static IdleMonitor server(int idleTimeoutMillis, int minIntervalMillis, int maxIntervalMillis) {
+		return new IdleMonitor(0, idleTimeoutMillis, minIntervalMillis, maxIntervalMillis);
+	}
+
+	/**
+	 * Monitor of a channel
+	 *
+	 * @param channel channel
+	 *
+	 * @return monitor, null if the pipeline has none
+	 */
+	public static IdleMonitor of(Channel channel) {
+		return channel.pipeline().get(IdleMonitor.class);
+	}
+
+	/**
+	 * Current heartbeat interval, to propose in a {@link HeartbeatPacket}
+	 *
+	 * @return interval in milliseconds
+	 */
+	public int heartbeatIntervalMillis() {
+		return (int) TimeUnit.NANOSECONDS.toMillis(heartbeatIntervalNanos);
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+		this.ctx = ctx;
+		this.wheel = IdleTimingWheel.of(ctx.executor());
+		if (ctx.channel().isActive()) {
+			start();
+		}
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		start();
+		super.channelActive(ctx);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		stop();
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) {
+		stop();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		lastRead = wheel.now();
+		if (msg instanceof HeartbeatPacket heartbeatPacket && heartbeatPacket.getIntervalMillis() > 0) {
+			negotiate(heartbeatPacket);
+		}
+		super.channelRead(ctx, msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		lastWrite = wheel.now();
+		super.write(ctx, msg, promise);
+	}
+
+	/**
+	 * Record a read that is answered in front of the codec and never reaches this handler, e.g. by a response cache
+	 */
+	public void recordRead() {
+		lastRead = wheel.now();
+	}
+
+	/**
+	 * Adopt the interval of a heartbeat.
+	 * A side that sends heartbeats takes the interval the other side accepted, the other side clamps the proposal and writes it back.
+	 *
+	 * @param heartbeatPacket received heartbeat
+	 */
+	private void negotiate(HeartbeatPacket heartbeatPacket) {
+		int intervalMillis = Math.max(minIntervalMillis, Math.min(maxIntervalMillis, heartbeatPacket.getIntervalMillis()));
+		if (heartbeatIntervalNanos > 0) {
+			heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		} else {
+			heartbeatPacket.setIntervalMillis(intervalMillis);
+		}
+		idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos((long) MISSED_HEARTBEATS * intervalMillis);
+	}
+
+	private void start() {
+		if (!scheduled && (heartbeatIntervalNanos > 0 || idleTimeoutNanos > 0)) {
+			scheduled = true;
+			// Check after a tick, the check schedules the next one at the nearest threshold
+			wheel.schedule(this, 0);
+			lastRead = wheel.now();
+			lastWrite = lastRead;
+		}
+	}
+
+	/**
+	 * Leave the wheel, so a closed connection is not held until its deadline
+	 */
+	private void stop() {
+		if (scheduled) {
+			scheduled = false;
+			wheel.cancel(this);
+		}
+	}
+
+	/**
+	 * Called by the wheel on the event loop once the next check is due
+	 */
+	void expire() {
+		scheduled = false;
+		if (!ctx.channel().isActive()) {
+			return;
+		}
+		if (idleTimeoutNanos > 0 && wheel.now() - lastRead >= idleTimeoutNanos) {
+			ctx.fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+		} else if (heartbeatIntervalNanos > 0 && wheel.now() - lastWrite >= heartbeatIntervalNanos) {
+			// The heartbeat handler writes a heartbeat, which restarts the interval
+			ctx.fireUserEventTriggered(IdleStateEvent.WRITER_IDLE_STATE_EVENT);
+		}
+		if (ctx.channel().isActive()) {
+			scheduled = true;
+			wheel.schedule(this, nextCheck());
+		}
+	}
+
+	/**
+	 * Delay until the next threshold is reached
+	 */
+	private long nextCheck() {
+		long next = Long.MAX_VALUE;
+		if (heartbeatIntervalNanos > 0) {
+			next = remaining(heartbeatIntervalNanos, wheel.now() - lastWrite);
+		}
+		if (idleTimeoutNanos > 0) {
+			next = Math.min(next, remaining(idleTimeoutNanos, wheel.now() - lastRead));
+		}
+		return next;
+	}
+
+	private static long remaining(long threshold, long idle) {
+		return idle < threshold ? threshold - idle : threshold;
+	}
+}
@@ -0,0 +1,150 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel of one event loop, shared by the {@link IdleMonitor}s of all its connections.
+ * A single periodic task per event loop replaces a timer per connection and handler, and it runs on the event loop itself, so the
+ * monitors need no synchronization. The task only runs while monitors are registered.
+ * It also serves as a coarse clock: {@link #now()} is the time of the last tick, far cheaper to read per message than System.nanoTime().
+ */
+final class IdleTimingWheel implements Runnable {
+	static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	/**
+	 * slots of the wheel, one round takes 51.2 seconds, longer delays wait for their round in the slot
+	 */
+	private static final int SLOTS = 512;
+	private static final ConcurrentMap<EventExecutor, IdleTimingWheel> WHEELS = new ConcurrentHashMap<>();
+
+	private final EventExecutor executor;
+	private final ArrayDeque<IdleMonitor>[] slots;
+	private long tick;
+	private long now = System.nanoTime();
+	private int size;
+	private ScheduledFuture<?> task;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private IdleTimingWheel(EventExecutor executor) {
+		this.executor = executor;
+		this.slots = new ArrayDeque[SLOTS];
+		for (int i = 0; i < SLOTS; i++) {
+			slots[i] = new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * Wheel of an event loop, created on first use and dropped when the event loop terminates
+	 *
+	 * @param executor event loop
+	 *
+	 * @return wheel
+	 */
+	static IdleTimingWheel of(EventExecutor executor) {
+		IdleTimingWheel wheel = WHEELS.get(executor);
+		if (wheel == null) {
+			IdleTimingWheel created = new IdleTimingWheel(executor);
+			wheel = WHEELS.putIfAbsent(executor, created);
+			if (wheel == null) {
+				wheel = created;
+				// Event loops come and go with their groups, a wheel must not keep a terminated one reachable
+				executor.terminationFuture().addListener(future -> WHEELS.remove(executor, created));
+			}
+		}
+		return wheel;
+	}
+
+	/**
+	 * Time of the last tick, in System.nanoTime() terms
+	 *
+	 * @return coarse now
+	 */
+	long now() {
+		return now;
+	}
+
+	/**
+	 * Call {@link IdleMonitor#expire()} after a delay, event loop only
+	 *
+	 * @param monitor    monitor
+	 * @param delayNanos delay, rounded up to whole ticks
+	 */
+	void schedule(IdleMonitor monitor, long delayNanos) {
+		if (task == null) {
+			now = System.nanoTime();
+			task = executor.scheduleAtFixedRate(this, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+		}
+		long ticks = Math.max(1, (delayNanos + TICK_NANOS - 1) / TICK_NANOS);
+		monitor.deadlineTick = tick + ticks;
+		slots[(int) ((tick + ticks) & (SLOTS - 1))].add(monitor);
+		size++;
+	}
+
+	@Override
+	public void run() {
+		now = System.nanoTime();
+		tick++;
+		ArrayDeque<IdleMonitor> slot = slots[(int) (tick & (SLOTS - 1))];
+		// Only visit the entries present now, expiring monitors may schedule themselves into this slot again
+		for (int i = slot.size(); i > 0; i--) {
+			IdleMonitor monitor = slot.poll();
+			if (monitor == null) {
+				// An expiring monitor closed another connection of the slot
+				break;
+			}
+			if (monitor.deadlineTick > tick) {
+				slot.add(monitor);
+			} else {
+				size--;
+				monitor.expire();
+			}
+		}
+		stopIfEmpty();
+	}
+
+	/**
+	 * Take a monitor out of the wheel before its deadline, e.g. once its connection closed, event loop only
+	 *
+	 * @param monitor scheduled monitor
+	 */
+	void cancel(IdleMonitor monitor) {
+		// A slot holds the connections of one tick of a round, removing from it is cheap
+		if (slots[(int) (monitor.deadlineTick & (SLOTS - 1))].remove(monitor)) {
+			size--;
+			stopIfEmpty();
+		}
+	}
+
+	private void stopIfEmpty() {
+		if (size == 0 && task != null) {
+			task.cancel(false);
+			task = null;
+		}
+	}
+
+	/**
+	 * Monitors in the wheel, event loop only
+	 *
+	 * @return monitors
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Number of event loops with a wheel
+	 *
+	 * @return wheels
+	 */
+	static int count() {
+		return WHEELS.size();
+	}
+}
@@ -0,0 +1,60 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import lombok.Getter;
+
+/**
+ * One piece of a streamed message, handed to the application by a {@link ChunkedFrameStreamer}.
+ * The content is the raw payload of the chunk frame.
+ * The application must release every chunk, the connection stops reading while too many chunk bytes are unreleased.
+ */
+@Getter
+public class MessageChunk extends DefaultByteBufHolder {
+	private final int messageType;
+	private final int sequenceId;
+	private final boolean last;
+	private final Runnable onRelease;
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param messageType message type
+	 * @param sequenceId  sequence id of the streamed message
+	 * @param last        last chunk of the message
+	 * @param content     payload of the chunk
+	 * @param onRelease   called once the content is released
+	 */
+	MessageChunk(int messageType, int sequenceId, boolean last, ByteBuf content, Runnable onRelease) {
+		super(content);
+		this.messageType = messageType;
+		this.sequenceId = sequenceId;
+		this.last = last;
+		this.onRelease = onRelease;
+	}
+
+	@Override
+	public boolean release() {
+		return released(super.release());
+	}
+
+	@Override
+	public boolean release(int decrement) {
+		return released(super.release(decrement));
+	}
+
+	private boolean released(boolean deallocated) {
+		if (deallocated) {
+			onRelease.run();
+		}
+		return deallocated;
+	}
+
+	@Override
+	public String toString() {
+		return "MessageChunk(messageType=" + messageType + ", sequenceId=" + sequenceId + ", last=" + last + ", bytes=" + content().readableBytes() + ")";
+	}
+}
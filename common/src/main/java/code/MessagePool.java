@@ -0,0 +1,48 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.util.Recycler;
+
+import java.util.function.Supplier;
+
+/**
+ * Pool of one message class on top of netty's Recycler, which keeps a stack per thread, so event loops take and return instances without
+ * contention. Instances released on another thread, a business executor for instance, find their way back to the thread that created them.
+ * Use it as the factory of a {@link MessageRegistration}, see {@link MessageRegistry#enablePooling()}.
+ *
+ * @param <T> message class
+ */
+public final class MessagePool<T extends RecyclableMessage> implements Supplier<T> {
+	private final Recycler<T> recycler;
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param factory creates the instances the pool grows with
+	 */
+	public MessagePool(Supplier<T> factory) {
+		this.recycler = new Recycler<>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			protected T newObject(Handle<T> handle) {
+				T message = factory.get();
+				message.pooled((Handle<RecyclableMessage>) handle);
+				return message;
+			}
+		};
+	}
+
+	/**
+	 * Take an instance, release it to give it back
+	 *
+	 * @return cleared instance with a reference count of 1
+	 */
+	@Override
+	public T get() {
+		T message = recycler.get();
+		message.acquired();
+		return message;
+	}
+}
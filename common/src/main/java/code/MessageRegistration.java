@@ -0,0 +1,142 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.function.Supplier;
+
+/**
+ * Codec entry of one message type: its class, the serializer it is sent with and a factory for decoding.
+ * Built-in types are identified by their {@link MessageType}, types of other modules may claim any free id of the message type byte instead.
+ *
+ * @param <T> message class
+ */
+@Getter
+@ToString
+public final class MessageRegistration<T extends CustomizedMessageType> {
+	/**
+	 * message type byte of the frame header, 0 to {@link MessageRegistry#MAX_TYPE_ID}
+	 */
+	private final int typeId;
+	private final Class<T> messageClass;
+	private final CustomizedSerializerAlgorithm serializer;
+	@ToString.Exclude
+	private final Supplier<T> factory;
+
+	private MessageRegistration(int typeId, Class<T> messageClass, CustomizedSerializerAlgorithm serializer, Supplier<T> factory) {
+		this.typeId = typeId;
+		this.messageClass = messageClass;
+		this.serializer = serializer;
+		this.factory = factory;
+	}
+
+	/**
+	 * Create a registration
+	 *
+	 * @param messageType  messageType
+	 * @param messageClass class the type decodes to
+	 * @param serializer   algorithm messages of this type are encoded with
+	 * @param factory      creates empty instances for {@link CustomizedSerializerAlgorithm#Binary} to fill
+	 * @param <T>          message class
+	 *
+	 * @return registration
+	 */
+	public static <T extends CustomizedMessageType> MessageRegistration<T> of(MessageType messageType, Class<T> messageClass, CustomizedSerializerAlgorithm serializer, Supplier<T> factory) {
+		return of(messageType.ordinal(), messageClass, serializer, factory);
+	}
+
+	/**
+	 * Create a registration for a message type byte that has no {@link MessageType}, its messages pass the id to {@link CustomizedMessageType#CustomizedMessageType(int)}
+	 *
+	 * @param typeId       message type byte, 0 to {@link MessageRegistry#MAX_TYPE_ID}, the ids below {@code MessageType.values().length} are taken by the built-in types
+	 * @param messageClass class the type decodes to
+	 * @param serializer   algorithm messages of this type are encoded with
+	 * @param factory      creates empty instances for {@link CustomizedSerializerAlgorithm#Binary} to fill
+	 * @param <T>          message class
+	 *
+	 * @return registration
+	 */
+	public static <T extends CustomizedMessageType> MessageRegistration<T> of(int typeId, Class<T> messageClass, CustomizedSerializerAlgorithm serializer, Supplier<T> factory) {
+		if (typeId < 0 || typeId > MessageRegistry.MAX_TYPE_ID) {
+			throw new IllegalArgumentException("Message type id " + typeId + " does not fit into the message type byte");
+		}
+		if (serializer == CustomizedSerializerAlgorithm.Binary && !CompactSerializable.class.isAssignableFrom(messageClass)) {
+			throw new IllegalArgumentException(messageClass.getName() + " does not implement CompactSerializable");
+		}
+		return new MessageRegistration<>(typeId, messageClass, serializer, factory);
+	}
+
+	/**
+	 * Same registration with another serializer
+	 *
+	 * @param serializer serializer
+	 *
+	 * @return registration
+	 */
+	public MessageRegistration<T> withSerializer(CustomizedSerializerAlgorithm serializer) {
+		return of(typeId, messageClass, serializer, factory);
+	}
+
+	/**
+	 * Same registration taking its instances from a {@link MessagePool}
+	 *
+	 * @return registration
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public MessageRegistration<T> pooled() {
+		if (!RecyclableMessage.class.isAssignableFrom(messageClass)) {
+			throw new IllegalArgumentException(messageClass.getName() + " is not a RecyclableMessage");
+		}
+		return isPooled() ? this : new MessageRegistration<>(typeId, messageClass, serializer, new MessagePool(factory));
+	}
+
+	/**
+	 * Whether instances come from a {@link MessagePool}
+	 *
+	 * @return pooled
+	 */
+	public boolean isPooled() {
+		return factory instanceof MessagePool;
+	}
+
+	/**
+	 * Serialize a message with the bound serializer
+	 *
+	 * @param message message
+	 * @param out     buffer to write to
+	 */
+	public void serialize(T message, ByteBuf out) {
+		serializer.serialize(message, out);
+	}
+
+	/**
+	 * Deserialize the next length bytes with the bound serializer.
+	 * Compact binary payloads are read into an instance from the factory, pooled if the registration is, other algorithms go through the class.
+	 * A frame written with another algorithm is refused, the peer must not pick a serializer, least of all Java serialization for a type that never uses it.
+	 *
+	 * @param algorithm serialization method byte of the frame
+	 * @param in        buffer to read from
+	 * @param length    payload length
+	 *
+	 * @return message
+	 *
+	 * @throws CorruptedFrameException the frame names another serializer than the bound one
+	 */
+	public T deserialize(int algorithm, ByteBuf in, int length) {
+		if (algorithm != serializer.ordinal()) {
+			throw new CorruptedFrameException("Message type " + typeId + " is bound to " + serializer + ", the frame uses serialization method " + algorithm);
+		}
+		if (serializer == CustomizedSerializerAlgorithm.Binary) {
+			T message = messageClass.cast(factory.get());
+			// read from a slice, so a broken schema can never read into the next frame
+			((CompactSerializable) message).readFrom(in.readSlice(length));
+			return message;
+		}
+		return messageClass.cast(serializer.deserialize(messageClass, in, length));
+	}
+}
@@ -0,0 +1,126 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ServiceLoader;
+
+/**
+ * Message types known to the codec.
+ * Registrations are kept in a dense array indexed by the message type byte of the frame header, so the codec finds them without boxing or hashing.
+ * Types of other modules are not limited to {@link MessageType}, a registration may claim any id of the byte, see {@link MessageRegistration#of(int, Class, CustomizedSerializerAlgorithm, java.util.function.Supplier)}.
+ * Every {@link MessageRegistryProvider} found by the ServiceLoader is registered when the class loads, more types can be registered at startup.
+ * Writes copy the array, reads never lock.
+ */
+@Slf4j
+public final class MessageRegistry {
+	/**
+	 * largest id the message type byte can carry
+	 */
+	public static final int MAX_TYPE_ID = 0xFF;
+	private static volatile MessageRegistration<?>[] registrations = new MessageRegistration<?>[MAX_TYPE_ID + 1];
+
+	static {
+		for (MessageRegistryProvider provider : ServiceLoader.load(MessageRegistryProvider.class)) {
+			provider.registrations().forEach(MessageRegistry::register);
+		}
+	}
+
+	private MessageRegistry() {
+	}
+
+	/**
+	 * Register a message type, replacing any previous registration of it
+	 *
+	 * @param registration registration
+	 */
+	public static synchronized void register(MessageRegistration<?> registration) {
+		MessageRegistration<?>[] copy = registrations.clone();
+		MessageRegistration<?> previous = copy[registration.getTypeId()];
+		if (previous != null && previous.getMessageClass() != registration.getMessageClass()) {
+			log.warn("Message type {} of {} is taken over by {}", registration.getTypeId(), previous.getMessageClass().getName(), registration.getMessageClass().getName());
+		}
+		copy[registration.getTypeId()] = registration;
+		registrations = copy;
+		log.debug("Registered {}", registration);
+	}
+
+	/**
+	 * Change the serializer a registered message type is encoded with
+	 *
+	 * @param messageType messageType
+	 * @param serializer  algorithm written into the serialization method byte of the frame header
+	 */
+	public static void setSerializer(MessageType messageType, CustomizedSerializerAlgorithm serializer) {
+		setSerializer(messageType.ordinal(), serializer);
+	}
+
+	/**
+	 * Change the serializer a registered message type byte is encoded with
+	 *
+	 * @param typeId     message type byte
+	 * @param serializer algorithm written into the serialization method byte of the frame header
+	 */
+	public static synchronized void setSerializer(int typeId, CustomizedSerializerAlgorithm serializer) {
+		MessageRegistration<?> registration = get(typeId);
+		if (registration == null) {
+			throw new IllegalArgumentException("Message type " + typeId + " is not registered");
+		}
+		register(registration.withSerializer(serializer));
+	}
+
+	/**
+	 * Take the instances of every registered {@link RecyclableMessage} type from a {@link MessagePool}.
+	 * Call it at startup, before traffic flows. Pooled messages must be released by whoever consumes them, see {@link RecyclableMessage}.
+	 */
+	public static synchronized void enablePooling() {
+		for (MessageRegistration<?> registration : registrations) {
+			if (registration != null && RecyclableMessage.class.isAssignableFrom(registration.getMessageClass())) {
+				register(registration.pooled());
+			}
+		}
+	}
+
+	/**
+	 * New message of a registered type, taken from its pool if pooling is enabled
+	 *
+	 * @param messageType messageType
+	 * @param <T>         message class
+	 *
+	 * @return message
+	 */
+	public static <T extends CustomizedMessageType> T newMessage(MessageType messageType) {
+		return newMessage(messageType.ordinal());
+	}
+
+	/**
+	 * New message of a registered type byte, taken from its pool if pooling is enabled
+	 *
+	 * @param typeId message type byte
+	 * @param <T>    message class
+	 *
+	 * @return message
+	 */
+	public static <T extends CustomizedMessageType> T newMessage(int typeId) {
+		MessageRegistration<T> registration = get(typeId);
+		if (registration == null) {
+			throw new IllegalArgumentException("Message type " + typeId + " is not registered");
+		}
+		return registration.getFactory().get();
+	}
+
+	/**
+	 * Registration of a message type byte
+	 *
+	 * @param messageType message type byte of the frame header
+	 * @param <T>         message class
+	 *
+	 * @return registration, null if the type is not registered
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends CustomizedMessageType> MessageRegistration<T> get(int messageType) {
+		return (MessageRegistration<T>) registrations[messageType & 0xFF];
+	}
+}
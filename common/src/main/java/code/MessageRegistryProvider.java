@@ -0,0 +1,19 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import java.util.List;
+
+/**
+ * Contributes message types to the {@link MessageRegistry}.
+ * Implementations are discovered with {@link java.util.ServiceLoader}, list them in META-INF/services/code.MessageRegistryProvider.
+ */
+public interface MessageRegistryProvider {
+	/**
+	 * Registrations of this provider
+	 *
+	 * @return registrations
+	 */
+	List<MessageRegistration<?>> registrations();
+}
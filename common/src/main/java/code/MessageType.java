@@ -9,6 +9,9 @@ package code;
  * Custom message type
  */
 public enum MessageType {
-	HeartbeatPacket
+	HeartbeatPacket,
+	RpcRequest,
+	RpcResponse,
+	FileTransfer
 	// TODO: Add more message types
 }
\ No newline at end of file
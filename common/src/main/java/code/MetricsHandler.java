@@ -0,0 +1,35 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Tracks the connections of a pipeline in a {@link NettyMetrics}.
+ * Idle closes are not counted here, the handler that closes an idle connection records it with {@link NettyMetrics#idleClosed()}.
+ */
+@ChannelHandler.Sharable
+public class MetricsHandler extends ChannelInboundHandlerAdapter {
+	private final NettyMetrics metrics;
+
+	public MetricsHandler(NettyMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		metrics.connected(ctx.channel());
+		super.channelActive(ctx);
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) {
+		// Handlers added to a live channel do not see channelActive
+		if (ctx.channel().isActive()) {
+			metrics.connected(ctx.channel());
+		}
+	}
+}
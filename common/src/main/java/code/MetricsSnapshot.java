@@ -0,0 +1,72 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Point-in-time view of a {@link NettyMetrics}, counters and histograms cover everything since the metrics were created
+ */
+@Value
+public class MetricsSnapshot {
+	long activeConnections;
+	long idleCloses;
+	long pendingOutboundBytes;
+	/**
+	 * direct and heap memory the allocator took from the system, -1 if the allocator does not report it
+	 */
+	long usedDirectMemory;
+	long usedHeapMemory;
+	/**
+	 * bytes handed out by the arenas of a pooled allocator, -1 for other allocators
+	 */
+	long activeDirectArenaBytes;
+	long activeHeapArenaBytes;
+	List<TypeStats> types;
+	LatencyStats encode;
+	LatencyStats decode;
+	/**
+	 * client side, from writing a request to receiving its response
+	 */
+	LatencyStats request;
+	/**
+	 * server side, time spent in the application handler
+	 */
+	LatencyStats handle;
+
+	/**
+	 * Traffic of one registered message type
+	 */
+	@Value
+	public static class TypeStats {
+		/**
+		 * message type byte, see {@link MessageRegistration#getTypeId()}
+		 */
+		int typeId;
+		/**
+		 * simple name of the message class
+		 */
+		String name;
+		long messagesIn;
+		long bytesIn;
+		long messagesOut;
+		long bytesOut;
+	}
+
+	/**
+	 * Latency distribution in microseconds
+	 */
+	@Value
+	public static class LatencyStats {
+		long count;
+		double mean;
+		long p50;
+		long p90;
+		long p99;
+		long p999;
+		long max;
+	}
+}
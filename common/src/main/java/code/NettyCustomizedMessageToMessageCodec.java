@@ -7,68 +7,244 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToMessageCodec;
+import lombok.Setter;
+import lombok.experimental.Accessors;
 
-import java.util.HashMap;
 import java.util.List;
 
 /**
  * The type Message codec.
  * In order to solve the sticky package problem, it is necessary to add: LengthFieldBasedFrameDecoder(1024, 12, 4, 0, 0)
+ * Payloads larger than the chunk size are sent as several chunk frames of the same sequence id, a {@link ChunkedFrameAggregator} in front of the codec puts them back together.
  */
 @ChannelHandler.Sharable
 public class NettyCustomizedMessageToMessageCodec extends MessageToMessageCodec<ByteBuf, CustomizedMessageType> {
 	/**
-	 * type field mapping type class
-	 * key is MessageType ordinate, value is type
+	 * 4-byte magic number, the bytes 1, 2, 3, 4
 	 */
-	private static final HashMap<Integer, Class<?>> TYPE_MAPPING = new HashMap<>();
+	public static final int MAGIC_NUMBER = 0x01020304;
 	/**
-	 * Message type mapping serialization method
-	 * key is MessageType ordinate, value is CustomizedSerializerAlgorithm ordinate
+	 * protocol version
 	 */
-	private static final HashMap<Integer, Integer> SERIALIZATION_METHOD = new HashMap<>();
+	public static final int VERSION = 1;
+	/**
+	 * magic(4) + version(1) + serialization(1) + type(1) + sequenceId(4) + flags(1) + length(4)
+	 */
+	public static final int HEADER_LENGTH = 16;
+	/**
+	 * offset of the sequenceId in the header
+	 */
+	public static final int SEQUENCE_ID_OFFSET = 7;
+	/**
+	 * payloads at least this large are compressed, unless configured otherwise
+	 */
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+	/**
+	 * largest payload a compressed frame may expand to
+	 */
+	public static final int DEFAULT_MAX_UNCOMPRESSED_SIZE = 16 * 1024 * 1024;
+	/**
+	 * largest payload of one frame, half of the default frame limit
+	 */
+	public static final int DEFAULT_MAX_CHUNK_SIZE = CustomizedLengthFieldBasedFrameDecoder.DEFAULT_MAX_FRAME_LENGTH / 2;
+
+	/**
+	 * compression applied to outgoing payloads, incoming frames are decompressed according to their flags regardless
+	 */
+	private final FrameCompression compression;
+	/**
+	 * smallest payload worth compressing
+	 */
+	private final int compressionThreshold;
+	/**
+	 * largest payload a compressed frame may expand to
+	 */
+	private final int maxUncompressedSize;
+	/**
+	 * largest payload of one frame, larger ones are split into chunks
+	 */
+	private final int maxChunkSize;
+	/**
+	 * traffic and codec time are recorded here when set
+	 */
+	@Setter
+	@Accessors(chain = true)
+	private NettyMetrics metrics;
 
-	static {
-		TYPE_MAPPING.put(MessageType.HeartbeatPacket.ordinal(), HeartbeatPacket.class);
-		SERIALIZATION_METHOD.put(MessageType.HeartbeatPacket.ordinal(), CustomizedSerializerAlgorithm.Java.ordinal());
-		// TODO: Initialize SERIALIZATION_METHOD and TYPE_MAPPING
+	/**
+	 * Codec without outgoing compression
+	 */
+	public NettyCustomizedMessageToMessageCodec() {
+		this(FrameCompression.None, DEFAULT_COMPRESSION_THRESHOLD);
+	}
+
+	/**
+	 * Codec compressing outgoing payloads above a threshold
+	 *
+	 * @param compression          compression
+	 * @param compressionThreshold smallest payload in bytes worth compressing
+	 */
+	public NettyCustomizedMessageToMessageCodec(FrameCompression compression, int compressionThreshold) {
+		this(compression, compressionThreshold, DEFAULT_MAX_UNCOMPRESSED_SIZE);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param compression          compression
+	 * @param compressionThreshold smallest payload in bytes worth compressing
+	 * @param maxUncompressedSize  largest payload a compressed frame may expand to
+	 */
+	public NettyCustomizedMessageToMessageCodec(FrameCompression compression, int compressionThreshold, int maxUncompressedSize) {
+		this(compression, compressionThreshold, maxUncompressedSize, DEFAULT_MAX_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param compression          compression
+	 * @param compressionThreshold smallest payload in bytes worth compressing
+	 * @param maxUncompressedSize  largest payload a compressed frame may expand to
+	 * @param maxChunkSize         largest payload of one frame, must stay below the peer's frame limit
+	 */
+	public NettyCustomizedMessageToMessageCodec(FrameCompression compression, int compressionThreshold, int maxUncompressedSize, int maxChunkSize) {
+		if (maxChunkSize <= 0) {
+			throw new IllegalArgumentException("maxChunkSize must be positive: " + maxChunkSize);
+		}
+		this.compression = compression;
+		this.compressionThreshold = compressionThreshold;
+		this.maxUncompressedSize = maxUncompressedSize;
+		this.maxChunkSize = maxChunkSize;
 	}
 
 	@Override
 	protected void encode(ChannelHandlerContext ctx, CustomizedMessageType msg, List<Object> out) {
-		// ByteBuf byteBuf = ctx.alloc().buffer();
-		ByteBuf byteBuf = ByteBufAllocator.DEFAULT.buffer();
-		// 4-byte magic number
-		byteBuf.writeBytes(new byte[]{1, 2, 3, 4});
-		// 1 -byte version
-		byteBuf.writeByte(1);
-		// 1-byte serialization method
-		// Here it is assumed that 0 represents the jdk serialization method, and 1 represents the json serialization method
-		byteBuf.writeByte(SERIALIZATION_METHOD.get(msg.getMessageType()));
-		// 1-byte instruction type
-		byteBuf.writeByte(msg.getMessageType());
-		// 4-byte request sequence number
-		byteBuf.writeInt(msg.getSequenceId());
-		byteBuf.writeByte(0xff);
-		// text length
-		// Get the byte array of the content
-		byte[] bytes = null;
-		// TODO: Serialize the message according to the serialization method
-		if (SERIALIZATION_METHOD.get(msg.getMessageType()) == CustomizedSerializerAlgorithm.Java.ordinal()) {
-			bytes = CustomizedSerializerAlgorithm.Java.serialize(msg);
+		// Messages that do not answer a request get the next id of this connection, in the frame only,
+		// the message itself stays unassigned and may still be written to other channels
+		int sequenceId = msg.getSequenceId() == 0 ? SequenceIdGenerator.of(ctx.channel()).next() : msg.getSequenceId();
+		ByteBuf byteBuf = encodeFrame(ctx.alloc(), msg, sequenceId);
+		if (byteBuf.readableBytes() - HEADER_LENGTH > maxChunkSize) {
+			try {
+				retainedFrames(ctx.alloc(), byteBuf, sequenceId, out);
+			} finally {
+				byteBuf.release();
+			}
+			return;
 		}
-		// set length
-		byteBuf.writeInt(bytes.length);
-		// write content
-		byteBuf.writeBytes(bytes);
 		// add to out list
 		out.add(byteBuf);
 	}
 
+	/**
+	 * Encode a message into one complete frame, compressed if worth it but not split into chunks.
+	 * A frame encoded once can be sent to many connections with {@link #retainedFrames}.
+	 *
+	 * @param alloc allocator
+	 * @param msg   message, its sequenceId goes into the header as it is
+	 *
+	 * @return frame
+	 */
+	public ByteBuf encodeFrame(ByteBufAllocator alloc, CustomizedMessageType msg) {
+		return encodeFrame(alloc, msg, msg.getSequenceId());
+	}
+
+	/**
+	 * Encode a message into one complete frame under the given sequence id, the message is not changed
+	 *
+	 * @param alloc      allocator
+	 * @param msg        message
+	 * @param sequenceId sequence id to put into the header
+	 *
+	 * @return frame
+	 */
+	public ByteBuf encodeFrame(ByteBufAllocator alloc, CustomizedMessageType msg, int sequenceId) {
+		long start = metrics == null ? 0 : System.nanoTime();
+		MessageRegistration<CustomizedMessageType> registration = MessageRegistry.get(msg.getMessageType());
+		if (registration == null) {
+			throw new EncoderException("Message type " + msg.getMessageType() + " is not registered");
+		}
+		// Allocate from the channel allocator so the frame comes from the pooled arena
+		ByteBuf byteBuf = alloc.buffer();
+		try {
+			// 4-byte magic number
+			byteBuf.writeInt(MAGIC_NUMBER);
+			// 1 -byte version
+			byteBuf.writeByte(VERSION);
+			// 1-byte serialization method
+			// 0 represents the jdk serialization method, 1 the json serialization method and 2 the compact binary method
+			byteBuf.writeByte(registration.getSerializer().ordinal());
+			// 1-byte instruction type
+			byteBuf.writeByte(msg.getMessageType());
+			// 4-byte request sequence number
+			byteBuf.writeInt(sequenceId);
+			// 1-byte flags, see FrameFlags
+			byteBuf.writeByte(FrameFlags.NONE);
+			// text length, reserved here and back-patched once the content is written
+			int lengthIndex = byteBuf.writerIndex();
+			byteBuf.writeInt(0);
+			// write content straight into the frame
+			registration.serialize(msg, byteBuf);
+			// set length
+			byteBuf.setInt(lengthIndex, byteBuf.writerIndex() - HEADER_LENGTH);
+			byteBuf = compressIfWorthIt(alloc, byteBuf);
+		} catch (Throwable e) {
+			byteBuf.release();
+			throw e;
+		}
+		if (metrics != null) {
+			metrics.encoded(msg.getMessageType(), byteBuf.readableBytes(), System.nanoTime() - start);
+		}
+		return byteBuf;
+	}
+
+	/**
+	 * Frames that carry an encoded frame under another sequence id, split into chunks of at most maxChunkSize payload bytes if needed.
+	 * They share the payload memory of the frame, each one only adds its own header, so sending one frame to many connections
+	 * costs a header per connection instead of an encoding.
+	 *
+	 * @param alloc      allocator
+	 * @param frame      complete frame from {@link #encodeFrame}, not released here
+	 * @param sequenceId sequence id to put into the headers
+	 * @param out        out list
+	 */
+	public void retainedFrames(ByteBufAllocator alloc, ByteBuf frame, int sequenceId, List<Object> out) {
+		int start = frame.readerIndex();
+		int end = frame.writerIndex();
+		int flags = frame.getUnsignedByte(start + FrameFlags.OFFSET);
+		boolean chunked = end - start - HEADER_LENGTH > maxChunkSize;
+		for (int offset = start + HEADER_LENGTH; offset < end || offset == start + HEADER_LENGTH; offset += maxChunkSize) {
+			int chunkLength = Math.min(maxChunkSize, end - offset);
+			ByteBuf header = alloc.buffer(HEADER_LENGTH);
+			header.writeBytes(frame, start, HEADER_LENGTH);
+			header.setInt(SEQUENCE_ID_OFFSET, sequenceId);
+			if (chunked) {
+				header.setByte(FrameFlags.OFFSET, FrameFlags.chunk(flags, offset + chunkLength == end));
+				header.setInt(HEADER_LENGTH - 4, chunkLength);
+			}
+			out.add(alloc.compositeBuffer(2).addComponents(true, header, frame.retainedSlice(offset, chunkLength)));
+		}
+	}
+
 	@Override
 	protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
-		Object message = null;
+		out.add(decodeFrame(ctx.alloc(), msg));
+	}
+
+	/**
+	 * Decode one complete frame into a message, the frame is read but not released.
+	 * Also gives in-process connections their own instance of a frame encoded once, see {@link TransportType#isInProcess}.
+	 *
+	 * @param alloc allocator for decompression
+	 * @param msg   frame, not a chunk
+	 *
+	 * @return message
+	 */
+	public CustomizedMessageType decodeFrame(ByteBufAllocator alloc, ByteBuf msg) {
+		long start = metrics == null ? 0 : System.nanoTime();
+		int frameLength = msg.readableBytes();
 		// read magic number
 		int magicNum = msg.readInt();
 		// read version number
@@ -76,25 +252,75 @@ public class NettyCustomizedMessageToMessageCodec extends MessageToMessageCodec<
 		// read serialization type
 		byte serializerAlgorithm = msg.readByte();
 		// read message type
-		byte messageType = msg.readByte();
+		int messageType = msg.readUnsignedByte();
 		// read sequence number
 		int sequenceId = msg.readInt();
-		// read 0xff
-		msg.readByte();
+		// read flags
+		byte flags = msg.readByte();
 		// read length
 		int length = msg.readInt();
-		// create a byte array for storing data
-		byte[] bytes = new byte[length];
-		// read data into byte array
-		msg.readBytes(bytes, 0, length);
-		// serialization type
-		// get message class
-		Class<?> messageClass = TYPE_MAPPING.get((int) messageType);
-		if (serializerAlgorithm == CustomizedSerializerAlgorithm.Java.ordinal()) {
-			System.out.println("JAVA");
-			// deserialize message object
-			message = CustomizedSerializerAlgorithm.Java.deserialize(messageClass, bytes);
+		if (!FrameFlags.isValid(flags)) {
+			throw new CorruptedFrameException("Invalid flags 0x" + Integer.toHexString(flags & 0xff) + " of message " + sequenceId);
+		}
+		if (FrameFlags.isChunk(flags)) {
+			throw new CorruptedFrameException("Chunk of message " + sequenceId + " reached the codec, a ChunkedFrameAggregator is missing");
+		}
+		// look up the message type
+		MessageRegistration<CustomizedMessageType> registration = MessageRegistry.get(messageType);
+		if (registration == null) {
+			throw new CorruptedFrameException("Message type " + messageType + " is not registered");
+		}
+		FrameCompression frameCompression = FrameFlags.compression(flags);
+		CustomizedMessageType message;
+		if (frameCompression == FrameCompression.None) {
+			// deserialize message object straight from the frame, without copying it into a byte array
+			message = registration.deserialize(serializerAlgorithm, msg, length);
+		} else {
+			ByteBuf payload = frameCompression.decompress(alloc, msg.readSlice(length), maxUncompressedSize);
+			try {
+				message = registration.deserialize(serializerAlgorithm, payload, payload.readableBytes());
+			} finally {
+				payload.release();
+			}
+		}
+		// the header is authoritative, compact binary payloads do not carry these fields at all
+		message.setSequenceId(sequenceId);
+		message.setMessageType(messageType);
+		message.setPush(FrameFlags.isPush(flags));
+		if (metrics != null) {
+			metrics.decoded(messageType, frameLength, System.nanoTime() - start);
+		}
+		return message;
+	}
+
+	/**
+	 * Replace the frame by a compressed one when the payload reaches the threshold and compression actually shrinks it
+	 *
+	 * @param alloc allocator
+	 * @param frame complete uncompressed frame
+	 *
+	 * @return frame to send, the other one has been released
+	 */
+	private ByteBuf compressIfWorthIt(ByteBufAllocator alloc, ByteBuf frame) {
+		int payloadLength = frame.readableBytes() - HEADER_LENGTH;
+		if (compression == FrameCompression.None || payloadLength < compressionThreshold) {
+			return frame;
+		}
+		ByteBuf compressed = alloc.buffer(HEADER_LENGTH + (payloadLength >> 1));
+		try {
+			compressed.writeBytes(frame, frame.readerIndex(), HEADER_LENGTH);
+			compression.compress(frame.slice(frame.readerIndex() + HEADER_LENGTH, payloadLength), compressed);
+		} catch (Throwable e) {
+			compressed.release();
+			throw e;
+		}
+		if (compressed.readableBytes() >= frame.readableBytes()) {
+			compressed.release();
+			return frame;
 		}
-		out.add(message);
+		compressed.setByte(FrameFlags.OFFSET, FrameFlags.of(compression));
+		compressed.setInt(HEADER_LENGTH - 4, compressed.readableBytes() - HEADER_LENGTH);
+		frame.release();
+		return compressed;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,219 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of a process, shared by all of its connections.
+ * Recording is wait-free, a {@link LongAdder} increment or an HdrHistogram {@link Recorder} write, so it is cheap enough for every message.
+ * Aggregation happens when a {@link #snapshot()} is pulled or logged.
+ * The codec records traffic and codec time, a {@link MetricsHandler} tracks connections, the RPC layers record latencies.
+ */
+@Slf4j
+public class NettyMetrics {
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private final LongAdder[] messagesIn = adders();
+	private final LongAdder[] bytesIn = adders();
+	private final LongAdder[] messagesOut = adders();
+	private final LongAdder[] bytesOut = adders();
+	private final LongAdder idleCloses = new LongAdder();
+	private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+	private final LatencyRecorder encode = new LatencyRecorder();
+	private final LatencyRecorder decode = new LatencyRecorder();
+	private final LatencyRecorder request = new LatencyRecorder();
+	private final LatencyRecorder handle = new LatencyRecorder();
+	private final ByteBufAllocator allocator;
+
+	/**
+	 * Metrics of connections that use the default allocator
+	 */
+	public NettyMetrics() {
+		this(ByteBufAllocator.DEFAULT);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param allocator allocator of the connections, its memory is reported
+	 */
+	public NettyMetrics(ByteBufAllocator allocator) {
+		this.allocator = allocator;
+	}
+
+	private static LongAdder[] adders() {
+		// indexed by the message type byte of the frame header, the type id of the registration
+		LongAdder[] adders = new LongAdder[MessageRegistry.MAX_TYPE_ID + 1];
+		for (int i = 0; i < adders.length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	/**
+	 * Record a decoded message
+	 *
+	 * @param messageType message type byte
+	 * @param bytes       frame bytes
+	 * @param nanos       time spent decoding
+	 */
+	public void decoded(int messageType, int bytes, long nanos) {
+		messagesIn[messageType].increment();
+		bytesIn[messageType].add(bytes);
+		decode.record(nanos);
+	}
+
+	/**
+	 * Record an encoded message
+	 *
+	 * @param messageType message type byte
+	 * @param bytes       frame bytes
+	 * @param nanos       time spent encoding
+	 */
+	public void encoded(int messageType, int bytes, long nanos) {
+		messagesOut[messageType].increment();
+		bytesOut[messageType].add(bytes);
+		encode.record(nanos);
+	}
+
+	/**
+	 * Record the round trip of a request, from writing it to receiving its response
+	 *
+	 * @param nanos round trip time
+	 */
+	public void requestCompleted(long nanos) {
+		request.record(nanos);
+	}
+
+	/**
+	 * Record the time an application handler took
+	 *
+	 * @param nanos handler time
+	 */
+	public void handled(long nanos) {
+		handle.record(nanos);
+	}
+
+	/**
+	 * Record a connection closed for being idle, by the handler that closes it
+	 */
+	public void idleClosed() {
+		idleCloses.increment();
+	}
+
+	/**
+	 * Track an active connection until it closes
+	 *
+	 * @param channel channel
+	 */
+	void connected(Channel channel) {
+		channels.add(channel);
+	}
+
+	/**
+	 * Aggregate all metrics
+	 *
+	 * @return snapshot
+	 */
+	public synchronized MetricsSnapshot snapshot() {
+		List<MetricsSnapshot.TypeStats> types = new ArrayList<>();
+		for (int typeId = 0; typeId <= MessageRegistry.MAX_TYPE_ID; typeId++) {
+			MessageRegistration<?> registration = MessageRegistry.get(typeId);
+			if (registration != null) {
+				types.add(new MetricsSnapshot.TypeStats(typeId, registration.getMessageClass().getSimpleName(), messagesIn[typeId].sum(),
+						bytesIn[typeId].sum(), messagesOut[typeId].sum(), bytesOut[typeId].sum()));
+			}
+		}
+		long pendingOutboundBytes = 0;
+		for (Channel channel : channels) {
+			ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+			if (outboundBuffer != null) {
+				pendingOutboundBytes += outboundBuffer.totalPendingWriteBytes();
+			}
+		}
+		long usedDirectMemory = -1;
+		long usedHeapMemory = -1;
+		long activeDirectArenaBytes = -1;
+		long activeHeapArenaBytes = -1;
+		if (allocator instanceof ByteBufAllocatorMetricProvider provider) {
+			ByteBufAllocatorMetric metric = provider.metric();
+			usedDirectMemory = metric.usedDirectMemory();
+			usedHeapMemory = metric.usedHeapMemory();
+			if (metric instanceof PooledByteBufAllocatorMetric pooled) {
+				activeDirectArenaBytes = activeBytes(pooled.directArenas());
+				activeHeapArenaBytes = activeBytes(pooled.heapArenas());
+			}
+		}
+		return new MetricsSnapshot(channels.size(), idleCloses.sum(), pendingOutboundBytes, usedDirectMemory, usedHeapMemory,
+				activeDirectArenaBytes, activeHeapArenaBytes, types, encode.stats(), decode.stats(), request.stats(), handle.stats());
+	}
+
+	private static long activeBytes(List<PoolArenaMetric> arenas) {
+		long bytes = 0;
+		for (PoolArenaMetric arena : arenas) {
+			bytes += arena.numActiveBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Log a snapshot periodically
+	 *
+	 * @param executor executor to log from, one of the event loops will do
+	 * @param period   period
+	 * @param unit     unit of period
+	 *
+	 * @return future to cancel the logging
+	 */
+	public ScheduledFuture<?> logPeriodically(EventExecutor executor, long period, TimeUnit unit) {
+		return executor.scheduleAtFixedRate(() -> log.info("{}", snapshot()), period, period, unit);
+	}
+
+	/**
+	 * Latency histogram fed by many threads, aggregated on snapshot
+	 */
+	private static final class LatencyRecorder {
+		private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+		private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+		private Histogram interval;
+
+		private void record(long nanos) {
+			recorder.recordValue(Math.max(0, nanos));
+		}
+
+		/**
+		 * Fold the values recorded since the last call into the total, only called under the snapshot lock
+		 */
+		private MetricsSnapshot.LatencyStats stats() {
+			interval = recorder.getIntervalHistogram(interval);
+			total.add(interval);
+			return new MetricsSnapshot.LatencyStats(total.getTotalCount(), total.getMean() / 1000, micros(50), micros(90), micros(99), micros(99.9),
+					total.getMaxValue() / 1000);
+		}
+
+		private long micros(double percentile) {
+			return total.getValueAtPercentile(percentile) / 1000;
+		}
+	}
+}
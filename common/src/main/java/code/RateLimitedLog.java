@@ -0,0 +1,71 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limit for a log statement that would otherwise fire for every message.
+ * At most permits lines pass per interval, the others are only counted and the count is reported with the next line that passes.
+ * <pre>
+ * long suppressed = HEARTBEAT_LOG.acquire();
+ * if (suppressed >= 0) {
+ *     log.info("Received heartbeat packet: {} ({} suppressed)", heartbeatPacket, suppressed);
+ * }
+ * </pre>
+ */
+public final class RateLimitedLog {
+	private final int permits;
+	private final long intervalNanos;
+	private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+	private final AtomicInteger used = new AtomicInteger();
+	private final LongAdder suppressed = new LongAdder();
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param permits  lines per interval
+	 * @param interval interval
+	 * @param unit     unit of interval
+	 */
+	public RateLimitedLog(int permits, long interval, TimeUnit unit) {
+		if (permits <= 0 || interval <= 0) {
+			throw new IllegalArgumentException("permits and interval must be positive");
+		}
+		this.permits = permits;
+		this.intervalNanos = unit.toNanos(interval);
+	}
+
+	/**
+	 * Limit of a few lines per second
+	 *
+	 * @param permits lines per second
+	 *
+	 * @return rate limit
+	 */
+	public static RateLimitedLog perSecond(int permits) {
+		return new RateLimitedLog(permits, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Ask whether a line may be logged
+	 *
+	 * @return number of lines suppressed since the last one that passed, or -1 if this one must be dropped
+	 */
+	public long acquire() {
+		long now = System.nanoTime();
+		long start = windowStart.get();
+		if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+			used.set(0);
+		}
+		if (used.incrementAndGet() > permits) {
+			suppressed.increment();
+			return -1;
+		}
+		return suppressed.sumThenReset();
+	}
+}
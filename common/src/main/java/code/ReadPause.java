@@ -0,0 +1,89 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * Pauses of reading from a channel, held by several handlers at once.
+ * Every handler that turns auto-read off for its own reason holds one bit of a per-channel mask, reading only resumes once no bit is left,
+ * so e.g. a rate limiter whose timer fires does not undo the pause of a full business queue.
+ * Pause and resume only on the event loop of the channel, {@link #isPaused} may be read from any thread.
+ */
+public final class ReadPause {
+	/**
+	 * the connection sends faster than its rate limit, see RateLimitHandler
+	 */
+	public static final int RATE_LIMIT = 1;
+	/**
+	 * the business queue of the connection is full, see BusinessExecutorHandler
+	 */
+	public static final int BUSINESS_QUEUE = 1 << 1;
+	/**
+	 * the application holds too many streamed chunk bytes, see {@link ChunkedFrameStreamer}
+	 */
+	public static final int CHUNK_STREAM = 1 << 2;
+	private static final AttributeKey<ReadPause> KEY = AttributeKey.valueOf(ReadPause.class, "readPause");
+
+	private volatile int reasons;
+
+	private ReadPause() {
+	}
+
+	/**
+	 * Stop reading for a reason
+	 *
+	 * @param channel channel
+	 * @param reason  one of the reason bits
+	 */
+	public static void pause(Channel channel, int reason) {
+		ReadPause readPause = of(channel);
+		readPause.reasons |= reason;
+		channel.config().setAutoRead(false);
+	}
+
+	/**
+	 * Drop a reason to stop reading, reading resumes if it was the last one
+	 *
+	 * @param channel channel
+	 * @param reason  one of the reason bits
+	 */
+	public static void resume(Channel channel, int reason) {
+		ReadPause readPause = of(channel);
+		readPause.reasons &= ~reason;
+		if (readPause.reasons == 0 && channel.isActive()) {
+			channel.config().setAutoRead(true);
+		}
+	}
+
+	/**
+	 * Whether reading is paused for a reason.
+	 * Callable from any thread, but off the event loop the answer is a racy hint: a pause being set at the same time may not be visible yet,
+	 * so a caller that skips its resume on false must have the pausing side check again after pausing.
+	 *
+	 * @param channel channel
+	 * @param reason  one of the reason bits
+	 *
+	 * @return paused
+	 */
+	public static boolean isPaused(Channel channel, int reason) {
+		ReadPause readPause = channel.attr(KEY).get();
+		return readPause != null && (readPause.reasons & reason) != 0;
+	}
+
+	private static ReadPause of(Channel channel) {
+		Attribute<ReadPause> attribute = channel.attr(KEY);
+		ReadPause readPause = attribute.get();
+		if (readPause == null) {
+			ReadPause created = new ReadPause();
+			readPause = attribute.setIfAbsent(created);
+			if (readPause == null) {
+				readPause = created;
+			}
+		}
+		return readPause;
+	}
+}
@@ -0,0 +1,126 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Message that can be pooled by a {@link MessagePool}.
+ * Pooled instances are reference counted like ByteBufs: the last {@link #release()} clears them and hands them back to the pool.
+ * The codec releases outbound messages once they are encoded, SimpleChannelInboundHandlers release inbound messages once they are handled,
+ * other handlers that consume a message release it with ReferenceCountUtil.release.
+ * Releasing too often throws an IllegalReferenceCountException, pooled instances that are never released are reported by netty's
+ * ResourceLeakDetector, run with -Dio.netty.leakDetection.level=paranoid to track every instance.
+ * Instances created with new are not pooled and not counted, releasing them does nothing, so unpooled code needs no changes.
+ */
+public abstract class RecyclableMessage extends CustomizedMessageType implements ReferenceCounted {
+	private static final ResourceLeakDetector<RecyclableMessage> LEAK_DETECTOR =
+			ResourceLeakDetectorFactory.instance().newResourceLeakDetector(RecyclableMessage.class);
+	private static final AtomicIntegerFieldUpdater<RecyclableMessage> REF_CNT = AtomicIntegerFieldUpdater.newUpdater(RecyclableMessage.class, "refCnt");
+
+	private transient volatile int refCnt = 1;
+	private transient Recycler.Handle<RecyclableMessage> handle;
+	private transient ResourceLeakTracker<RecyclableMessage> leak;
+
+	protected RecyclableMessage(MessageType messageType) {
+		super(messageType);
+	}
+
+	/**
+	 * Reset the fields of the subclass, so a recycled instance keeps no references and decodes like a new one
+	 */
+	protected abstract void clear();
+
+	/**
+	 * Bind a new instance to its pool
+	 *
+	 * @param handle handle to recycle it with
+	 */
+	void pooled(Recycler.Handle<RecyclableMessage> handle) {
+		this.handle = handle;
+	}
+
+	/**
+	 * Take a pooled instance into use
+	 */
+	void acquired() {
+		refCnt = 1;
+		leak = LEAK_DETECTOR.track(this);
+	}
+
+	@Override
+	public int refCnt() {
+		return handle == null ? 1 : refCnt;
+	}
+
+	@Override
+	public RecyclableMessage retain() {
+		return retain(1);
+	}
+
+	@Override
+	public RecyclableMessage retain(int increment) {
+		if (handle == null) {
+			return this;
+		}
+		int old = REF_CNT.getAndAdd(this, increment);
+		if (old <= 0) {
+			REF_CNT.getAndAdd(this, -increment);
+			throw new IllegalReferenceCountException(old, increment);
+		}
+		return this;
+	}
+
+	@Override
+	public RecyclableMessage touch() {
+		if (leak != null) {
+			leak.record();
+		}
+		return this;
+	}
+
+	@Override
+	public RecyclableMessage touch(Object hint) {
+		if (leak != null) {
+			leak.record(hint);
+		}
+		return this;
+	}
+
+	@Override
+	public boolean release() {
+		return release(1);
+	}
+
+	@Override
+	public boolean release(int decrement) {
+		if (handle == null) {
+			return false;
+		}
+		int old = REF_CNT.getAndAdd(this, -decrement);
+		if (old < decrement) {
+			REF_CNT.getAndAdd(this, decrement);
+			throw new IllegalReferenceCountException(old, -decrement);
+		}
+		if (old > decrement) {
+			return false;
+		}
+		if (leak != null) {
+			leak.close(this);
+			leak = null;
+		}
+		clear();
+		setSequenceId(0);
+		setPush(false);
+		handle.recycle(this);
+		return true;
+	}
+}
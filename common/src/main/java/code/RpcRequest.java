@@ -0,0 +1,54 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Request of the request/response layer, answered by an {@link RpcResponse} with the same sequenceId
+ */
+@Getter
+@Setter
+@ToString(callSuper = true)
+public class RpcRequest extends RecyclableMessage implements CompactSerializable {
+	/**
+	 * name of the operation, interpreted by the server side handler
+	 */
+	private String method;
+	/**
+	 * request body
+	 */
+	private String body;
+
+	public RpcRequest() {
+		super(MessageType.RpcRequest);
+	}
+
+	public RpcRequest(String method, String body) {
+		super(MessageType.RpcRequest);
+		this.method = method;
+		this.body = body;
+	}
+
+	@Override
+	protected void clear() {
+		method = null;
+		body = null;
+	}
+
+	@Override
+	public void writeTo(ByteBuf out) {
+		CompactBinary.writeString(out, method);
+		CompactBinary.writeString(out, body);
+	}
+
+	@Override
+	public void readFrom(ByteBuf in) {
+		method = CompactBinary.readString(in);
+		body = CompactBinary.readString(in);
+	}
+}
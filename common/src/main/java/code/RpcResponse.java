@@ -0,0 +1,83 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Response of the request/response layer, carries the sequenceId of the {@link RpcRequest} it answers
+ */
+@Getter
+@Setter
+@ToString(callSuper = true)
+public class RpcResponse extends RecyclableMessage implements CompactSerializable {
+	/**
+	 * response body
+	 */
+	private String body;
+	/**
+	 * error message, null when the request succeeded
+	 */
+	private String error;
+
+	public RpcResponse() {
+		super(MessageType.RpcResponse);
+	}
+
+	/**
+	 * Successful response, pooled if pooling is enabled
+	 *
+	 * @param body body
+	 *
+	 * @return response
+	 */
+	public static RpcResponse success(String body) {
+		RpcResponse rpcResponse = MessageRegistry.newMessage(MessageType.RpcResponse);
+		rpcResponse.body = body;
+		return rpcResponse;
+	}
+
+	/**
+	 * Failed response, pooled if pooling is enabled
+	 *
+	 * @param error error message
+	 *
+	 * @return response
+	 */
+	public static RpcResponse failure(String error) {
+		RpcResponse rpcResponse = MessageRegistry.newMessage(MessageType.RpcResponse);
+		rpcResponse.error = error == null ? "unknown error" : error;
+		return rpcResponse;
+	}
+
+	/**
+	 * Whether the request succeeded
+	 *
+	 * @return success
+	 */
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	@Override
+	protected void clear() {
+		body = null;
+		error = null;
+	}
+
+	@Override
+	public void writeTo(ByteBuf out) {
+		CompactBinary.writeString(out, body);
+		CompactBinary.writeString(out, error);
+	}
+
+	@Override
+	public void readFrom(ByteBuf in) {
+		body = CompactBinary.readString(in);
+		error = CompactBinary.readString(in);
+	}
+}
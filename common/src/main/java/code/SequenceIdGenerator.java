@@ -0,0 +1,54 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free sequence id allocator of one connection.
+ * Ids are unique within a connection until the counter wraps around after 2^32 ids, 0 is never handed out since it marks an unassigned message.
+ * Every channel has its own counter, so connections do not contend with each other.
+ */
+public final class SequenceIdGenerator {
+	private static final AttributeKey<SequenceIdGenerator> KEY = AttributeKey.valueOf(SequenceIdGenerator.class, "sequenceIdGenerator");
+
+	private final AtomicInteger counter = new AtomicInteger();
+
+	/**
+	 * Generator of a channel, created on first use
+	 *
+	 * @param channel channel
+	 *
+	 * @return generator
+	 */
+	public static SequenceIdGenerator of(Channel channel) {
+		Attribute<SequenceIdGenerator> attribute = channel.attr(KEY);
+		SequenceIdGenerator generator = attribute.get();
+		if (generator == null) {
+			SequenceIdGenerator created = new SequenceIdGenerator();
+			generator = attribute.setIfAbsent(created);
+			if (generator == null) {
+				generator = created;
+			}
+		}
+		return generator;
+	}
+
+	/**
+	 * Next id, callable from any thread
+	 *
+	 * @return id, never 0
+	 */
+	public int next() {
+		int id;
+		do {
+			id = counter.incrementAndGet();
+		} while (id == 0);
+		return id;
+	}
+}
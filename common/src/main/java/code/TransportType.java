@@ -0,0 +1,266 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.incubator.channel.uring.IOUringChannelOption;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Socket transport, selects the event loop group and channel classes of the launchers.
+ * Native transports are only used when their native library loads on this host, otherwise Nio is used.
+ * {@link #Local} connects a client and a server of the same JVM without sockets.
+ */
+@Slf4j
+public enum TransportType {
+	/**
+	 * JDK NIO selector, available everywhere
+	 */
+	Nio {
+		@Override
+		public boolean isAvailable() {
+			return true;
+		}
+
+		@Override
+		public EventLoopGroup newEventLoopGroup(int threads) {
+			return new NioEventLoopGroup(threads);
+		}
+
+		@Override
+		public Class<? extends ServerChannel> serverChannelClass() {
+			return NioServerSocketChannel.class;
+		}
+
+		@Override
+		public Class<? extends Channel> socketChannelClass() {
+			return NioSocketChannel.class;
+		}
+
+		@Override
+		public boolean enableReusePort(AbstractBootstrap<?, ?> bootstrap) {
+			return false;
+		}
+	},
+	/**
+	 * Linux epoll, edge triggered
+	 */
+	Epoll {
+		@Override
+		public boolean isAvailable() {
+			return io.netty.channel.epoll.Epoll.isAvailable();
+		}
+
+		@Override
+		public EventLoopGroup newEventLoopGroup(int threads) {
+			return new EpollEventLoopGroup(threads);
+		}
+
+		@Override
+		public Class<? extends ServerChannel> serverChannelClass() {
+			return EpollServerSocketChannel.class;
+		}
+
+		@Override
+		public Class<? extends Channel> socketChannelClass() {
+			return EpollSocketChannel.class;
+		}
+
+		@Override
+		public boolean enableReusePort(AbstractBootstrap<?, ?> bootstrap) {
+			bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+			return true;
+		}
+	},
+	/**
+	 * Linux io_uring, from the netty incubator, needs a 5.9+ kernel
+	 */
+	IoUring {
+		@Override
+		public boolean isAvailable() {
+			return IOUring.isAvailable();
+		}
+
+		@Override
+		public EventLoopGroup newEventLoopGroup(int threads) {
+			return new IOUringEventLoopGroup(threads);
+		}
+
+		@Override
+		public Class<? extends ServerChannel> serverChannelClass() {
+			return IOUringServerSocketChannel.class;
+		}
+
+		@Override
+		public Class<? extends Channel> socketChannelClass() {
+			return IOUringSocketChannel.class;
+		}
+
+		@Override
+		public boolean enableReusePort(AbstractBootstrap<?, ?> bootstrap) {
+			bootstrap.option(IOUringChannelOption.SO_REUSEPORT, true);
+			return true;
+		}
+	},
+	/**
+	 * In-process LocalChannel, for a client and a server in the same JVM.
+	 * Messages are handed over by reference, the pipelines leave out the frame decoder and the codec, see {@link #isInProcess(Channel)}.
+	 * The server port only names the {@link LocalAddress} to bind, socket options do not apply.
+	 */
+	Local {
+		@Override
+		public boolean isAvailable() {
+			return true;
+		}
+
+		@Override
+		public EventLoopGroup newEventLoopGroup(int threads) {
+			return new DefaultEventLoopGroup(threads);
+		}
+
+		@Override
+		public Class<? extends ServerChannel> serverChannelClass() {
+			return LocalServerChannel.class;
+		}
+
+		@Override
+		public Class<? extends Channel> socketChannelClass() {
+			return LocalChannel.class;
+		}
+
+		@Override
+		public boolean enableReusePort(AbstractBootstrap<?, ?> bootstrap) {
+			return false;
+		}
+
+		@Override
+		public SocketAddress address(String inetHost, int inetPort) {
+			return new LocalAddress("netty:" + inetPort);
+		}
+
+		@Override
+		public boolean isInProcess() {
+			return true;
+		}
+	};
+
+	/**
+	 * Whether the native library of this transport could be loaded
+	 *
+	 * @return available
+	 */
+	public abstract boolean isAvailable();
+
+	/**
+	 * Create an event loop group of this transport
+	 *
+	 * @param threads number of event loops, 0 means netty's default of twice the processors
+	 *
+	 * @return event loop group
+	 */
+	public abstract EventLoopGroup newEventLoopGroup(int threads);
+
+	/**
+	 * Server channel class to pass to ServerBootstrap.channel
+	 *
+	 * @return server channel class
+	 */
+	public abstract Class<? extends ServerChannel> serverChannelClass();
+
+	/**
+	 * Client channel class to pass to Bootstrap.channel
+	 *
+	 * @return client channel class
+	 */
+	public abstract Class<? extends Channel> socketChannelClass();
+
+	/**
+	 * Set SO_REUSEPORT on the bootstrap, so several server channels can bind the same port and the kernel spreads accepts across them
+	 *
+	 * @param bootstrap bootstrap
+	 *
+	 * @return false if the transport does not support SO_REUSEPORT, the bootstrap is left untouched then
+	 */
+	public abstract boolean enableReusePort(AbstractBootstrap<?, ?> bootstrap);
+
+	/**
+	 * Address of a server of this transport, to bind or connect to
+	 *
+	 * @param inetHost host, null to bind all interfaces
+	 * @param inetPort port
+	 *
+	 * @return address
+	 */
+	public SocketAddress address(String inetHost, int inetPort) {
+		return inetHost == null ? new InetSocketAddress(inetPort) : new InetSocketAddress(inetHost, inetPort);
+	}
+
+	/**
+	 * Whether the connections of this transport stay inside the JVM and carry messages instead of frames
+	 *
+	 * @return in-process
+	 */
+	public boolean isInProcess() {
+		return false;
+	}
+
+	/**
+	 * Whether a connection stays inside the JVM, its pipeline then carries {@link CustomizedMessageType}s by reference,
+	 * without a frame decoder or codec
+	 *
+	 * @param channel channel
+	 *
+	 * @return in-process
+	 */
+	public static boolean isInProcess(Channel channel) {
+		return channel instanceof LocalChannel;
+	}
+
+	/**
+	 * Resolve the configured transport.
+	 * "auto" picks Epoll when it is available, io_uring is only used when asked for explicitly.
+	 * A requested native transport that is not available falls back to Nio.
+	 *
+	 * @param name nio, epoll, io_uring, local or auto, case insensitive
+	 *
+	 * @return transport to use
+	 */
+	public static TransportType resolve(String name) {
+		if (name == null || name.isBlank() || "auto".equalsIgnoreCase(name)) {
+			return Epoll.isAvailable() ? Epoll : Nio;
+		}
+		String normalized = name.replace("_", "").replace("-", "");
+		for (TransportType transportType : values()) {
+			if (transportType.name().equalsIgnoreCase(normalized)) {
+				if (transportType.isAvailable()) {
+					return transportType;
+				}
+				log.warn("Transport {} is not available on this host, falling back to Nio", transportType);
+				return Nio;
+			}
+		}
+		throw new IllegalArgumentException("Unknown transport: " + name);
+	}
+}
@@ -0,0 +1,63 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.logging.LogLevel;
+import io.netty.handler.logging.LoggingHandler;
+
+/**
+ * Logs the traffic of a single live connection on demand, so one connection can be debugged while the others run a lean pipeline.
+ * The tap is the first handler of the pipeline and logs every event and the hex dump of every frame at INFO, under the logger code.WireTap.
+ */
+public final class WireTap {
+	/**
+	 * name of the tap in the pipeline
+	 */
+	public static final String NAME = "wireTap";
+	private static final LoggingHandler HANDLER = new LoggingHandler(WireTap.class, LogLevel.INFO);
+
+	private WireTap() {
+	}
+
+	/**
+	 * Start logging the traffic of a channel, callable from any thread
+	 *
+	 * @param channel channel
+	 */
+	public static void attach(Channel channel) {
+		channel.eventLoop().execute(() -> {
+			ChannelPipeline pipeline = channel.pipeline();
+			if (channel.isActive() && pipeline.get(NAME) == null) {
+				pipeline.addFirst(NAME, HANDLER);
+			}
+		});
+	}
+
+	/**
+	 * Stop logging the traffic of a channel, callable from any thread
+	 *
+	 * @param channel channel
+	 */
+	public static void detach(Channel channel) {
+		channel.eventLoop().execute(() -> {
+			ChannelPipeline pipeline = channel.pipeline();
+			if (pipeline.get(NAME) != null) {
+				pipeline.remove(NAME);
+			}
+		});
+	}
+
+	/**
+	 * Whether the traffic of a channel is being logged
+	 *
+	 * @param channel channel
+	 *
+	 * @return attached
+	 */
+	public static boolean isAttached(Channel channel) {
+		return channel.pipeline().get(NAME) != null;
+	}
+}
@@ -0,0 +1,204 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static code.CodecFixture.text;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Messages split into chunk frames by the codec and put back together by the aggregator
+ */
+class ChunkedFrameAggregatorTest {
+	private static final int CHUNK_SIZE = 1024;
+	private static final int MAX_MESSAGE_SIZE = 16 * CHUNK_SIZE;
+	private static final int HEADER_LENGTH = NettyCustomizedMessageToMessageCodec.HEADER_LENGTH;
+
+	private CodecFixture fixture;
+
+	@AfterEach
+	void tearDown() {
+		if (fixture != null) {
+			fixture.close();
+		}
+	}
+
+	@Test
+	void smallMessagesAreNotSplit() {
+		open(new ChunkedFrameAggregator());
+		List<ByteBuf> frames = encode(1, text(CHUNK_SIZE / 2));
+		assertEquals(1, frames.size());
+		assertFalse(FrameFlags.isChunk(frames.get(0).getUnsignedByte(FrameFlags.OFFSET)));
+		assertEquals(text(CHUNK_SIZE / 2), receive(frames).getBody());
+	}
+
+	@Test
+	void largeMessagesAreSplitAndReassembled() {
+		open(new ChunkedFrameAggregator());
+		String body = text(5 * CHUNK_SIZE + 17);
+		List<ByteBuf> frames = encode(1, body);
+		assertEquals(6, frames.size());
+		for (int i = 0; i < frames.size(); i++) {
+			int flags = frames.get(i).getUnsignedByte(FrameFlags.OFFSET);
+			assertTrue(FrameFlags.isChunk(flags));
+			assertEquals(i == frames.size() - 1, FrameFlags.isLastChunk(flags));
+			assertEquals(1, frames.get(i).getInt(NettyCustomizedMessageToMessageCodec.SEQUENCE_ID_OFFSET));
+		}
+		RpcRequest request = receive(frames);
+		assertEquals(1, request.getSequenceId());
+		assertEquals(body, request.getBody());
+	}
+
+	@Test
+	void interleavedMessagesAreKeptApart() {
+		open(new ChunkedFrameAggregator());
+		String first = text(3 * CHUNK_SIZE);
+		String second = text(2 * CHUNK_SIZE).toUpperCase();
+		List<ByteBuf> firstFrames = encode(1, first);
+		List<ByteBuf> secondFrames = encode(2, second);
+		List<ByteBuf> interleaved = new ArrayList<>();
+		for (int i = 0; i < Math.max(firstFrames.size(), secondFrames.size()); i++) {
+			if (i < firstFrames.size()) {
+				interleaved.add(firstFrames.get(i));
+			}
+			if (i < secondFrames.size()) {
+				interleaved.add(secondFrames.get(i));
+			}
+		}
+		fixture.receive(interleaved);
+		// The shorter message completes first
+		RpcRequest request = fixture.read(RpcRequest.class);
+		assertEquals(2, request.getSequenceId());
+		assertEquals(second, request.getBody());
+		request = fixture.read(RpcRequest.class);
+		assertEquals(1, request.getSequenceId());
+		assertEquals(first, request.getBody());
+	}
+
+	@Test
+	void messagesAboveTheSizeLimitAreDropped() {
+		open(new ChunkedFrameAggregator(MAX_MESSAGE_SIZE, 4L * MAX_MESSAGE_SIZE));
+		List<ByteBuf> frames = encode(1, text(MAX_MESSAGE_SIZE + CHUNK_SIZE));
+		assertThrows(TooLongFrameException.class, () -> fixture.receive(frames));
+		// The remaining chunks of the dropped message are skipped quietly, later messages still get through
+		fixture.receive(frames.subList(MAX_MESSAGE_SIZE / CHUNK_SIZE + 1, frames.size()));
+		assertNull(fixture.receiver().readInbound());
+		assertEquals(text(2 * CHUNK_SIZE), receive(encode(2, text(2 * CHUNK_SIZE))).getBody());
+	}
+
+	@Test
+	void partialMessagesAboveThePendingLimitAreDropped() {
+		open(new ChunkedFrameAggregator(MAX_MESSAGE_SIZE, MAX_MESSAGE_SIZE + CHUNK_SIZE / 2));
+		List<ByteBuf> first = encode(1, text(MAX_MESSAGE_SIZE - CHUNK_SIZE));
+		List<ByteBuf> second = encode(2, text(MAX_MESSAGE_SIZE - CHUNK_SIZE));
+		// All chunks of the first message but its last one almost fill the pending bytes, the second chunk of another message is too much
+		fixture.receive(first.subList(0, first.size() - 1));
+		fixture.receive(second.get(0));
+		assertThrows(TooLongFrameException.class, () -> fixture.receive(second.get(1)));
+		fixture.receive(second.subList(2, second.size()));
+		fixture.receive(first.get(first.size() - 1));
+		assertEquals(1, fixture.read(RpcRequest.class).getSequenceId());
+		assertNull(fixture.receiver().readInbound());
+	}
+
+	@Test
+	void tooManyPartialMessagesCloseTheConnection() {
+		open(new ChunkedFrameAggregator(MAX_MESSAGE_SIZE, 4L * MAX_MESSAGE_SIZE, 3));
+		// A dropped message keeps its place until its last chunk
+		List<ByteBuf> dropped = encode(1, text(MAX_MESSAGE_SIZE + CHUNK_SIZE));
+		assertThrows(TooLongFrameException.class, () -> fixture.receive(dropped.subList(0, dropped.size() - 1)));
+		dropped.get(dropped.size() - 1).release();
+		List<ByteBuf> second = encode(2, text(2 * CHUNK_SIZE));
+		List<ByteBuf> third = encode(3, text(2 * CHUNK_SIZE));
+		List<ByteBuf> fourth = encode(4, text(2 * CHUNK_SIZE));
+		fixture.receive(second.get(0), third.get(0));
+		assertTrue(fixture.receiver().isActive());
+		TooLongFrameException e = assertThrows(TooLongFrameException.class, () -> fixture.receive(fourth.get(0)));
+		assertTrue(e.getMessage().contains("maxMessages"), e.getMessage());
+		assertFalse(fixture.receiver().isActive());
+		List.of(second.get(1), third.get(1), fourth.get(1)).forEach(ByteBuf::release);
+	}
+
+	@Test
+	void emptyChunksCountAsPartialMessages() {
+		open(new ChunkedFrameAggregator(MAX_MESSAGE_SIZE, MAX_MESSAGE_SIZE, 8));
+		List<ByteBuf> frames = encode(1, text(2 * CHUNK_SIZE));
+		ByteBuf header = frames.get(0).retainedSlice(0, HEADER_LENGTH);
+		frames.forEach(ByteBuf::release);
+		header.setInt(HEADER_LENGTH - 4, 0);
+		for (int sequenceId = 1; sequenceId <= 8; sequenceId++) {
+			fixture.receive(emptyChunk(header, sequenceId));
+		}
+		assertTrue(fixture.receiver().isActive());
+		assertThrows(TooLongFrameException.class, () -> fixture.receive(emptyChunk(header, 9)));
+		assertFalse(fixture.receiver().isActive());
+		header.release();
+	}
+
+	@Test
+	void partialMessagesAreReleasedOnClose() {
+		// Without a frame decoder in front, the aggregator holds slices of the chunks written here
+		fixture = new CodecFixture(codec(), new ChunkedFrameAggregator(), new NettyCustomizedMessageToMessageCodec());
+		List<ByteBuf> frames = encode(1, text(3 * CHUNK_SIZE));
+		ByteBuf firstChunk = frames.get(0).retain();
+		fixture.receive(firstChunk);
+		assertTrue(firstChunk.refCnt() > 1, "the partial message holds the chunk");
+		fixture.receiver().close();
+		assertEquals(1, firstChunk.refCnt());
+		firstChunk.release();
+		frames.subList(1, frames.size()).forEach(ByteBuf::release);
+	}
+
+	@Test
+	void chunksWithoutAggregatorAreRefused() {
+		fixture = new CodecFixture(codec(), new NettyCustomizedMessageToMessageCodec());
+		List<ByteBuf> frames = encode(1, text(2 * CHUNK_SIZE));
+		DecoderException e = assertThrows(DecoderException.class, () -> fixture.receive(frames.get(0)));
+		assertTrue(e.getMessage().contains("ChunkedFrameAggregator"), e.getMessage());
+		frames.get(1).release();
+	}
+
+	private void open(ChunkedFrameAggregator aggregator) {
+		fixture = new CodecFixture(codec(), new CustomizedLengthFieldBasedFrameDecoder(), aggregator, new NettyCustomizedMessageToMessageCodec());
+	}
+
+	private static NettyCustomizedMessageToMessageCodec codec() {
+		return new NettyCustomizedMessageToMessageCodec(FrameCompression.None, Integer.MAX_VALUE,
+				NettyCustomizedMessageToMessageCodec.DEFAULT_MAX_UNCOMPRESSED_SIZE, CHUNK_SIZE);
+	}
+
+	private List<ByteBuf> encode(int sequenceId, String body) {
+		RpcRequest request = new RpcRequest("put", body);
+		request.setSequenceId(sequenceId);
+		return fixture.encode(request);
+	}
+
+	private RpcRequest receive(List<ByteBuf> frames) {
+		fixture.receive(frames);
+		RpcRequest request = fixture.read(RpcRequest.class);
+		assertNull(fixture.receiver().readInbound());
+		return request;
+	}
+
+	/**
+	 * First chunk without payload, it holds no pending bytes
+	 */
+	private static ByteBuf emptyChunk(ByteBuf header, int sequenceId) {
+		ByteBuf chunk = header.copy();
+		chunk.setInt(NettyCustomizedMessageToMessageCodec.SEQUENCE_ID_OFFSET, sequenceId);
+		return chunk;
+	}
+}
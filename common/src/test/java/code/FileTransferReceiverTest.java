@@ -0,0 +1,113 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Files announced and streamed to receivers of several connections sharing one directory
+ */
+class FileTransferReceiverTest {
+	@TempDir
+	Path directory;
+
+	private final List<EmbeddedChannel> channels = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		channels.forEach(EmbeddedChannel::finishAndReleaseAll);
+	}
+
+	@Test
+	void filesAreMovedToTheirNameOnceComplete() throws IOException {
+		EmbeddedChannel channel = connect(new FileTransferReceiver(directory));
+		announce(channel, 1, "a.txt", 5);
+		write(channel, 1, "hel", false);
+		assertEquals(List.of(), files(".txt"));
+		assertEquals(1, files(".part").size());
+		write(channel, 1, "lo", true);
+		assertEquals("hello", Files.readString(directory.resolve("a.txt")));
+		assertEquals(List.of(), files(".part"));
+	}
+
+	@Test
+	void uploadsOfTheSameNameOnOtherConnectionsAreLeftAlone() throws IOException {
+		EmbeddedChannel first = connect(new FileTransferReceiver(directory));
+		EmbeddedChannel second = connect(new FileTransferReceiver(directory));
+		announce(first, 1, "a.txt", 5);
+		write(first, 1, "hel", false);
+		// The second connection starts the same file and goes away, which removes its own part file only
+		announce(second, 1, "a.txt", 5);
+		write(second, 1, "xx", false);
+		second.close();
+		write(first, 1, "lo", true);
+		assertEquals("hello", Files.readString(directory.resolve("a.txt")));
+		assertEquals(List.of(), files(".part"));
+	}
+
+	@Test
+	void openTransfersArePerConnectionBounded() throws IOException {
+		EmbeddedChannel channel = connect(new FileTransferReceiver(directory, 1024, 2));
+		for (int sequenceId = 1; sequenceId <= 3; sequenceId++) {
+			announce(channel, sequenceId, sequenceId + ".txt", 1);
+		}
+		assertEquals(2, files(".part").size());
+		write(channel, 3, "c", true);
+		assertFalse(Files.exists(directory.resolve("3.txt")));
+		// A finished transfer makes room for the next one
+		write(channel, 1, "a", true);
+		announce(channel, 3, "3.txt", 1);
+		write(channel, 3, "c", true);
+		assertEquals("c", Files.readString(directory.resolve("3.txt")));
+		channel.close();
+		assertEquals(List.of(), files(".part"));
+	}
+
+	@Test
+	void filesAboveTheLimitAreRefused() throws IOException {
+		EmbeddedChannel channel = connect(new FileTransferReceiver(directory, 4));
+		announce(channel, 1, "a.txt", 5);
+		assertEquals(List.of(), files(".part"));
+	}
+
+	private EmbeddedChannel connect(FileTransferReceiver receiver) {
+		EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance(), receiver);
+		channels.add(channel);
+		return channel;
+	}
+
+	private static void announce(EmbeddedChannel channel, int sequenceId, String name, long length) {
+		FileTransfer transfer = new FileTransfer(name, length);
+		transfer.setSequenceId(sequenceId);
+		channel.writeInbound(transfer);
+	}
+
+	private static void write(EmbeddedChannel channel, int sequenceId, String content, boolean last) {
+		channel.writeInbound(new MessageChunk(MessageType.FileTransfer.ordinal(), sequenceId, last,
+				Unpooled.copiedBuffer(content, StandardCharsets.UTF_8), () -> {
+		}));
+	}
+
+	private List<Path> files(String suffix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.toString().endsWith(suffix)).toList();
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledHeapByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static code.CodecFixture.text;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compressed frames through the codec and the compressions on their own
+ */
+class FrameCompressionTest {
+	private static final int THRESHOLD = NettyCustomizedMessageToMessageCodec.DEFAULT_COMPRESSION_THRESHOLD;
+	private static final int HEADER_LENGTH = NettyCustomizedMessageToMessageCodec.HEADER_LENGTH;
+
+	private CodecFixture fixture;
+
+	@AfterEach
+	void tearDown() {
+		if (fixture != null) {
+			fixture.close();
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(FrameCompression.class)
+	void smallPayloadsAreSentAsTheyAre(FrameCompression compression) {
+		open(compression);
+		String body = text(THRESHOLD / 4);
+		ByteBuf frame = fixture.encodeFrame(new RpcRequest("get", body));
+		assertEquals(FrameFlags.NONE, frame.getUnsignedByte(FrameFlags.OFFSET));
+		assertEquals(body, decode(frame).getBody());
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = FrameCompression.class, names = {"Zlib", "Snappy"})
+	void largePayloadsAreCompressedAndRestored(FrameCompression compression) {
+		open(compression);
+		String body = text(THRESHOLD * 8);
+		ByteBuf frame = fixture.encodeFrame(new RpcRequest("put", body));
+		assertEquals(FrameFlags.of(compression), frame.getUnsignedByte(FrameFlags.OFFSET));
+		assertEquals(compression, FrameFlags.compression(frame.getUnsignedByte(FrameFlags.OFFSET)));
+		assertTrue(frame.readableBytes() < body.length(), "frame of " + frame.readableBytes() + " bytes");
+		assertEquals(frame.readableBytes() - HEADER_LENGTH, frame.getInt(HEADER_LENGTH - 4));
+		RpcRequest request = decode(frame);
+		assertEquals("put", request.getMethod());
+		assertEquals(body, request.getBody());
+	}
+
+	@Test
+	void snappySpansSeveralBlocks() {
+		// Snappy blocks hold at most Short.MAX_VALUE bytes, this payload needs four of them
+		open(FrameCompression.Snappy);
+		String body = text(4 * Short.MAX_VALUE - 100);
+		ByteBuf frame = fixture.encodeFrame(new RpcRequest("put", body));
+		assertEquals(FrameFlags.of(FrameCompression.Snappy), frame.getUnsignedByte(FrameFlags.OFFSET));
+		assertEquals(body, decode(frame).getBody());
+	}
+
+	@ParameterizedTest
+	@EnumSource(FrameCompression.class)
+	void compressionRoundTrip(FrameCompression compression) {
+		byte[] bytes = text(100_000).getBytes(StandardCharsets.UTF_8);
+		ByteBuf compressed = Unpooled.buffer();
+		ByteBuf restored = null;
+		try {
+			compression.compress(Unpooled.wrappedBuffer(bytes), compressed);
+			restored = compression.decompress(ByteBufAllocator.DEFAULT, compressed, bytes.length);
+			assertEquals(Unpooled.wrappedBuffer(bytes), restored);
+			assertEquals(0, compressed.readableBytes());
+		} finally {
+			compressed.release();
+			if (restored != null) {
+				restored.release();
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(FrameCompression.class)
+	void payloadsAboveTheLimitAreRefused(FrameCompression compression) {
+		ByteBuf compressed = Unpooled.buffer();
+		try {
+			compression.compress(Unpooled.wrappedBuffer(new byte[4096]), compressed);
+			assertThrows(TooLongFrameException.class, () -> compression.decompress(ByteBufAllocator.DEFAULT, compressed, 4095));
+		} finally {
+			compressed.release();
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(FrameCompression.class)
+	void claimedSizesAreNotReservedUpFront(FrameCompression compression) {
+		List<Integer> initialCapacities = new ArrayList<>();
+		ByteBufAllocator allocator = new AbstractByteBufAllocator(false) {
+			@Override
+			protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+				initialCapacities.add(initialCapacity);
+				return new UnpooledHeapByteBuf(this, initialCapacity, maxCapacity);
+			}
+
+			@Override
+			protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+				return newHeapBuffer(initialCapacity, maxCapacity);
+			}
+
+			@Override
+			public boolean isDirectBufferPooled() {
+				return false;
+			}
+		};
+		ByteBuf compressed = Unpooled.buffer();
+		try {
+			compression.compress(Unpooled.wrappedBuffer(new byte[64]), compressed);
+			// A peer claims the largest size allowed for a payload of 64 bytes
+			compressed.setInt(0, NettyCustomizedMessageToMessageCodec.DEFAULT_MAX_UNCOMPRESSED_SIZE);
+			assertThrows(CorruptedFrameException.class,
+					() -> compression.decompress(allocator, compressed, NettyCustomizedMessageToMessageCodec.DEFAULT_MAX_UNCOMPRESSED_SIZE));
+			assertEquals(1, initialCapacities.size());
+			assertTrue(initialCapacities.get(0) <= 1024, "reserved " + initialCapacities.get(0) + " bytes");
+		} finally {
+			compressed.release();
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(FrameCompression.class)
+	void payloadsLongerThanClaimedAreRefused(FrameCompression compression) {
+		ByteBuf compressed = Unpooled.buffer();
+		try {
+			compression.compress(Unpooled.wrappedBuffer(text(100_000).getBytes(StandardCharsets.UTF_8)), compressed);
+			compressed.setInt(0, 50_000);
+			assertThrows(CorruptedFrameException.class, () -> compression.decompress(ByteBufAllocator.DEFAULT, compressed, 100_000));
+		} finally {
+			compressed.release();
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0x80, 0x40, 0x20, FrameFlags.LAST_CHUNK, FrameFlags.COMPRESSION_MASK})
+	void framesWithInvalidFlagsCloseTheConnection(int flags) {
+		fixture = new CodecFixture(CodecFixture.framedCodec());
+		ByteBuf frame = fixture.encodeFrame(new RpcRequest("get", "a"));
+		frame.setByte(FrameFlags.OFFSET, flags);
+		fixture.receive(frame);
+		assertNull(fixture.receiver().readInbound());
+		assertFalse(fixture.receiver().isActive());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {FrameFlags.NONE, 1, 2, FrameFlags.CHUNK, FrameFlags.CHUNK | FrameFlags.LAST_CHUNK | 2, FrameFlags.PUSH, FrameFlags.PUSH | FrameFlags.CHUNK | 1})
+	void definedFlagsAreValid(int flags) {
+		assertTrue(FrameFlags.isValid(flags));
+	}
+
+	@Test
+	void reassembledMessagesKeepThePushFlag() {
+		assertEquals(FrameFlags.NONE, FrameFlags.unchunk(FrameFlags.chunk(FrameFlags.NONE, true)));
+		int pushed = FrameFlags.push(FrameFlags.of(FrameCompression.Zlib));
+		assertTrue(FrameFlags.isPush(FrameFlags.unchunk(FrameFlags.chunk(pushed, false))));
+		assertEquals(FrameCompression.Zlib, FrameFlags.compression(FrameFlags.unchunk(FrameFlags.chunk(pushed, true))));
+		assertFalse(FrameFlags.isPush(FrameFlags.NONE));
+	}
+
+	@Test
+	void compressionIsResolvedByName() {
+		assertEquals(FrameCompression.Snappy, FrameCompression.resolve("snappy"));
+		assertEquals(FrameCompression.Zlib, FrameCompression.resolve("ZLIB"));
+		assertThrows(IllegalArgumentException.class, () -> FrameCompression.resolve("lz4"));
+	}
+
+	/**
+	 * The receiver decompresses according to the flags of each frame, whatever it would send itself
+	 */
+	private void open(FrameCompression compression) {
+		fixture = new CodecFixture(new NettyCustomizedMessageToMessageCodec(compression, THRESHOLD,
+				NettyCustomizedMessageToMessageCodec.DEFAULT_MAX_UNCOMPRESSED_SIZE, Integer.MAX_VALUE), new NettyCustomizedMessageToMessageCodec());
+	}
+
+	private RpcRequest decode(ByteBuf frame) {
+		fixture.receive(frame);
+		return fixture.read(RpcRequest.class);
+	}
+}
@@ -0,0 +1,144 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static code.CodecFixture.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Idle events of in-process connections that share one event loop and so one wheel
+ */
+class IdleMonitorTest {
+	private EventLoopGroup group;
+	private EventLoop eventLoop;
+	private Channel server;
+	private final Queue<IdleStateEvent> serverEvents = new ConcurrentLinkedQueue<>();
+	private final Queue<IdleStateEvent> clientEvents = new ConcurrentLinkedQueue<>();
+
+	@BeforeEach
+	void setUp() {
+		group = TransportType.Local.newEventLoopGroup(1);
+		eventLoop = group.next();
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		group.shutdownGracefully(0, 0, TimeUnit.SECONDS).await();
+	}
+
+	@Test
+	void silentConnectionsAreReportedIdle() throws Exception {
+		listen(() -> IdleMonitor.server(300, 100, 1000));
+		connect(() -> IdleMonitor.server(0, 100, 1000));
+		await(() -> !serverEvents.isEmpty());
+		assertEquals(IdleStateEvent.READER_IDLE_STATE_EVENT, serverEvents.peek());
+	}
+
+	@Test
+	void heartbeatsAreDueOnConnectionsWithoutWrites() throws Exception {
+		listen(() -> IdleMonitor.server(0, 100, 1000));
+		connect(() -> IdleMonitor.client(100));
+		await(() -> clientEvents.contains(IdleStateEvent.WRITER_IDLE_STATE_EVENT));
+		assertTrue(serverEvents.isEmpty());
+	}
+
+	@Test
+	void closedConnectionsLeaveTheWheel() throws Exception {
+		// Deadlines far off, the monitors would stay in their slots for a minute
+		listen(() -> IdleMonitor.server(60_000, 100, 120_000));
+		List<Channel> clients = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			clients.add(connect(() -> IdleMonitor.server(60_000, 100, 120_000)));
+		}
+		await(() -> wheelSize() == 6);
+		for (Channel client : clients) {
+			client.close().sync();
+		}
+		await(() -> wheelSize() == 0);
+	}
+
+	@Test
+	void removedMonitorsLeaveTheWheel() throws Exception {
+		listen(() -> IdleMonitor.server(0, 100, 1000));
+		Channel client = connect(() -> IdleMonitor.server(60_000, 100, 120_000));
+		await(() -> wheelSize() == 1);
+		client.pipeline().remove(IdleMonitor.class);
+		await(() -> wheelSize() == 0);
+	}
+
+	@Test
+	void wheelsAreDroppedWithTheirEventLoop() throws Exception {
+		eventLoop.submit(() -> IdleTimingWheel.of(eventLoop)).get();
+		int wheels = IdleTimingWheel.count();
+		group.shutdownGracefully(0, 0, TimeUnit.SECONDS).await();
+		await(() -> IdleTimingWheel.count() < wheels);
+	}
+
+	private void listen(Supplier<IdleMonitor> monitor) throws InterruptedException {
+		server = new ServerBootstrap()
+				.group(group)
+				.channel(TransportType.Local.serverChannelClass())
+				.childHandler(initializer(monitor, serverEvents))
+				.bind(new LocalAddress(IdleMonitorTest.class.getSimpleName() + "-" + System.nanoTime()))
+				.sync()
+				.channel();
+	}
+
+	private Channel connect(Supplier<IdleMonitor> monitor) throws InterruptedException {
+		return new Bootstrap()
+				.group(group)
+				.channel(TransportType.Local.socketChannelClass())
+				.handler(initializer(monitor, clientEvents))
+				.connect(server.localAddress())
+				.sync()
+				.channel();
+	}
+
+	private static ChannelInitializer<Channel> initializer(Supplier<IdleMonitor> monitor, Queue<IdleStateEvent> events) {
+		return new ChannelInitializer<>() {
+			@Override
+			protected void initChannel(Channel channel) {
+				channel.pipeline().addLast(monitor.get(), new ChannelInboundHandlerAdapter() {
+					@Override
+					public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+						if (evt instanceof IdleStateEvent idleStateEvent) {
+							events.add(idleStateEvent);
+						}
+					}
+				});
+			}
+		};
+	}
+
+	private int wheelSize() {
+		try {
+			return eventLoop.submit(() -> IdleTimingWheel.of(eventLoop).size()).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Types registered by their id next to the built-in {@link MessageType}s
+ */
+class MessageRegistryTest {
+	private static final int QUOTE = 200;
+
+	static {
+		MessageRegistry.register(MessageRegistration.of(QUOTE, Quote.class, CustomizedSerializerAlgorithm.Binary, Quote::new));
+	}
+
+	private final CodecFixture fixture = new CodecFixture(CodecFixture.framedCodec());
+
+	@AfterEach
+	void tearDown() {
+		fixture.close();
+	}
+
+	@Test
+	void builtInTypesAreRegistered() {
+		for (MessageType messageType : MessageType.values()) {
+			assertEquals(messageType.ordinal(), MessageRegistry.get(messageType.ordinal()).getTypeId());
+		}
+		assertNull(MessageRegistry.get(QUOTE - 1));
+	}
+
+	@Test
+	void typesRegisteredByIdRoundTrip() {
+		ByteBuf frame = fixture.encodeFrame(quote("NCNL"));
+		assertEquals(QUOTE, frame.getUnsignedByte(6));
+		fixture.receive(frame);
+		Quote decoded = fixture.read(Quote.class);
+		assertEquals(QUOTE, decoded.getMessageType());
+		assertEquals(42, decoded.getSequenceId());
+		assertEquals("NCNL", decoded.getSymbol());
+	}
+
+	@Test
+	void framesWithAnotherSerializerAreRefused() {
+		// A peer must not make a compact binary type go through Java serialization
+		ByteBuf frame = fixture.encodeFrame(quote("NCNL"));
+		frame.setByte(5, CustomizedSerializerAlgorithm.Java.ordinal());
+		CorruptedFrameException e = assertThrows(CorruptedFrameException.class, () -> fixture.receive(frame));
+		assertTrue(e.getMessage().contains("bound to Binary"), e.getMessage());
+		assertNull(fixture.receiver().readInbound());
+	}
+
+	@Test
+	void serializerOfATypeRegisteredByIdCanBeChanged() {
+		MessageRegistration<Quote> registration = MessageRegistry.get(QUOTE);
+		try {
+			MessageRegistry.setSerializer(QUOTE, CustomizedSerializerAlgorithm.Json);
+			assertEquals(CustomizedSerializerAlgorithm.Json, MessageRegistry.get(QUOTE).getSerializer());
+			assertSame(Quote.class, MessageRegistry.get(QUOTE).getMessageClass());
+		} finally {
+			MessageRegistry.register(registration);
+		}
+	}
+
+	@Test
+	void idsBeyondTheTypeByteAreRefused() {
+		assertThrows(IllegalArgumentException.class, () -> MessageRegistration.of(MessageRegistry.MAX_TYPE_ID + 1, Quote.class, CustomizedSerializerAlgorithm.Binary, Quote::new));
+		assertThrows(IllegalArgumentException.class, () -> MessageRegistration.of(-1, Quote.class, CustomizedSerializerAlgorithm.Binary, Quote::new));
+		assertThrows(IllegalArgumentException.class, () -> MessageRegistry.newMessage(QUOTE + 1));
+	}
+
+	private static Quote quote(String symbol) {
+		Quote quote = MessageRegistry.newMessage(QUOTE);
+		quote.setSymbol(symbol);
+		quote.setSequenceId(42);
+		return quote;
+	}
+
+	/**
+	 * Message of another module, it has no {@link MessageType}
+	 */
+	public static class Quote extends CustomizedMessageType implements CompactSerializable {
+		private String symbol;
+
+		public Quote() {
+			super(QUOTE);
+		}
+
+		public String getSymbol() {
+			return symbol;
+		}
+
+		public void setSymbol(String symbol) {
+			this.symbol = symbol;
+		}
+
+		@Override
+		public void writeTo(ByteBuf out) {
+			CompactBinary.writeString(out, symbol);
+		}
+
+		@Override
+		public void readFrom(ByteBuf in) {
+			symbol = CompactBinary.readString(in);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Traffic recorded by the codec and memory reported for the allocator the metrics were made for
+ */
+class NettyMetricsTest {
+	@Test
+	void trafficIsReportedUnderTheTypeIdOfTheFrame() {
+		NettyMetrics metrics = new NettyMetrics();
+		try (CodecFixture fixture = new CodecFixture(new ChannelHandler[]{new NettyCustomizedMessageToMessageCodec().setMetrics(metrics)})) {
+			fixture.send(new RpcRequest("echo", "a"));
+			fixture.read(RpcRequest.class);
+		}
+		MetricsSnapshot.TypeStats stats = typeStats(metrics.snapshot(), MessageType.RpcRequest.ordinal());
+		assertEquals("RpcRequest", stats.getName());
+		assertEquals(1, stats.getMessagesIn());
+		assertTrue(stats.getBytesIn() > NettyCustomizedMessageToMessageCodec.HEADER_LENGTH);
+		assertEquals(0, typeStats(metrics.snapshot(), MessageType.RpcResponse.ordinal()).getMessagesIn());
+	}
+
+	@Test
+	void memoryOfTheGivenAllocatorIsReported() {
+		assertEquals(-1, new NettyMetrics(UnpooledByteBufAllocator.DEFAULT).snapshot().getActiveDirectArenaBytes());
+		assertTrue(new NettyMetrics(PooledByteBufAllocator.DEFAULT).snapshot().getActiveDirectArenaBytes() >= 0);
+	}
+
+	private static MetricsSnapshot.TypeStats typeStats(MetricsSnapshot snapshot, int typeId) {
+		return snapshot.getTypes().stream().filter(stats -> stats.getTypeId() == typeId).findFirst().orElseThrow();
+	}
+}
@@ -0,0 +1,73 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sequence ids the codec assigns to messages that do not answer a request
+ */
+class SequenceIdGeneratorTest {
+	private static final int SEQUENCE_ID_OFFSET = NettyCustomizedMessageToMessageCodec.SEQUENCE_ID_OFFSET;
+
+	@Test
+	void idsAreCountedPerChannelAndNeverZero() {
+		EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance());
+		EmbeddedChannel other = new EmbeddedChannel(DefaultChannelId.newInstance());
+		try {
+			assertEquals(1, SequenceIdGenerator.of(channel).next());
+			assertEquals(2, SequenceIdGenerator.of(channel).next());
+			assertEquals(1, SequenceIdGenerator.of(other).next());
+		} finally {
+			channel.finishAndReleaseAll();
+			other.finishAndReleaseAll();
+		}
+	}
+
+	@Test
+	void assignedIdsStayInTheFrame() {
+		EmbeddedChannel first = new EmbeddedChannel(DefaultChannelId.newInstance(), new NettyCustomizedMessageToMessageCodec());
+		EmbeddedChannel second = new EmbeddedChannel(DefaultChannelId.newInstance(), new NettyCustomizedMessageToMessageCodec());
+		try {
+			SequenceIdGenerator.of(first).next();
+			RpcRequest request = new RpcRequest("notify", "a");
+			// One message written to two channels gets the next id of each channel
+			assertTrue(first.writeOutbound(request));
+			assertTrue(second.writeOutbound(request));
+			ByteBuf firstFrame = first.readOutbound();
+			ByteBuf secondFrame = second.readOutbound();
+			assertEquals(2, firstFrame.getInt(SEQUENCE_ID_OFFSET));
+			assertEquals(1, secondFrame.getInt(SEQUENCE_ID_OFFSET));
+			assertEquals(0, request.getSequenceId());
+			firstFrame.release();
+			secondFrame.release();
+		} finally {
+			first.finishAndReleaseAll();
+			second.finishAndReleaseAll();
+		}
+	}
+
+	@Test
+	void idsOfAnswersAreKept() {
+		EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance(), new NettyCustomizedMessageToMessageCodec());
+		try {
+			RpcResponse response = new RpcResponse();
+			response.setSequenceId(42);
+			assertTrue(channel.writeOutbound(response));
+			ByteBuf frame = channel.readOutbound();
+			assertEquals(42, frame.getInt(SEQUENCE_ID_OFFSET));
+			assertNotEquals(42, SequenceIdGenerator.of(channel).next());
+			frame.release();
+		} finally {
+			channel.finishAndReleaseAll();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A peer that encodes messages into frames and a channel under test that receives them, both embedded.
+ * The frames the channel under test writes back are decoded again, so a test can look at its answers as messages.
+ * Shared by the test suites of all modules, close it after each test.
+ */
+public final class CodecFixture implements AutoCloseable {
+	private final EmbeddedChannel sender;
+	private final EmbeddedChannel receiver;
+	private final EmbeddedChannel replies = new EmbeddedChannel(DefaultChannelId.newInstance(),
+			new CustomizedLengthFieldBasedFrameDecoder(), new NettyCustomizedMessageToMessageCodec());
+
+	/**
+	 * Peer with the default codec
+	 *
+	 * @param receiverHandlers pipeline of the channel under test
+	 */
+	public CodecFixture(ChannelHandler... receiverHandlers) {
+		this(new NettyCustomizedMessageToMessageCodec(), receiverHandlers);
+	}
+
+	/**
+	 * Constructor with parameters.
+	 *
+	 * @param senderCodec      codec of the peer, e.g. with compression or a small chunk size
+	 * @param receiverHandlers pipeline of the channel under test
+	 */
+	public CodecFixture(NettyCustomizedMessageToMessageCodec senderCodec, ChannelHandler... receiverHandlers) {
+		sender = new EmbeddedChannel(DefaultChannelId.newInstance(), senderCodec);
+		receiver = new EmbeddedChannel(DefaultChannelId.newInstance(), receiverHandlers);
+	}
+
+	/**
+	 * Handlers that turn a byte stream into messages, for the end of a receiver pipeline
+	 *
+	 * @return frame decoder and codec
+	 */
+	public static ChannelHandler[] framedCodec() {
+		return new ChannelHandler[]{new CustomizedLengthFieldBasedFrameDecoder(), new NettyCustomizedMessageToMessageCodec()};
+	}
+
+	public EmbeddedChannel receiver() {
+		return receiver;
+	}
+
+	/**
+	 * Encode a message on the peer
+	 *
+	 * @param message message, released by the codec
+	 *
+	 * @return its frames, one unless it was split into chunks
+	 */
+	public List<ByteBuf> encode(CustomizedMessageType message) {
+		assertTrue(sender.writeOutbound(message));
+		List<ByteBuf> frames = new ArrayList<>();
+		for (ByteBuf frame; (frame = sender.readOutbound()) != null; ) {
+			frames.add(frame);
+		}
+		return frames;
+	}
+
+	/**
+	 * Encode a message that fits into one frame
+	 *
+	 * @param message message, released by the codec
+	 *
+	 * @return frame
+	 */
+	public ByteBuf encodeFrame(CustomizedMessageType message) {
+		List<ByteBuf> frames = encode(message);
+		assertEquals(1, frames.size(), "message was split into chunks");
+		return frames.get(0);
+	}
+
+	/**
+	 * Hand frames to the channel under test and run the tasks they caused
+	 *
+	 * @param frames frames, taken over by the channel
+	 */
+	public void receive(List<ByteBuf> frames) {
+		for (ByteBuf frame : frames) {
+			receiver.writeInbound(frame);
+		}
+		receiver.runPendingTasks();
+	}
+
+	/**
+	 * Hand frames to the channel under test and run the tasks they caused
+	 *
+	 * @param frames frames, taken over by the channel
+	 */
+	public void receive(ByteBuf... frames) {
+		receive(List.of(frames));
+	}
+
+	/**
+	 * Encode a message on the peer and hand it to the channel under test
+	 *
+	 * @param message message
+	 */
+	public void send(CustomizedMessageType message) {
+		receive(encode(message));
+	}
+
+	/**
+	 * Next message the channel under test passed on
+	 *
+	 * @param type expected class
+	 * @param <T>  message class
+	 *
+	 * @return message
+	 */
+	public <T> T read(Class<T> type) {
+		return assertInstanceOf(type, receiver.readInbound());
+	}
+
+	/**
+	 * Decode everything the channel under test has written so far
+	 *
+	 * @return messages in the order they were written
+	 */
+	public List<CustomizedMessageType> replies() {
+		receiver.runPendingTasks();
+		for (Object frame; (frame = receiver.readOutbound()) != null; ) {
+			replies.writeInbound(frame);
+		}
+		List<CustomizedMessageType> messages = new ArrayList<>();
+		for (Object message; (message = replies.readInbound()) != null; ) {
+			messages.add((CustomizedMessageType) message);
+		}
+		return messages;
+	}
+
+	/**
+	 * The one message the channel under test has written since the last call
+	 *
+	 * @param type expected class
+	 * @param <T>  message class
+	 *
+	 * @return message
+	 */
+	public <T> T reply(Class<T> type) {
+		List<CustomizedMessageType> messages = replies();
+		assertEquals(1, messages.size(), "replies: " + messages);
+		return assertInstanceOf(type, messages.get(0));
+	}
+
+	@Override
+	public void close() {
+		sender.finishAndReleaseAll();
+		receiver.finishAndReleaseAll();
+		replies.finishAndReleaseAll();
+	}
+
+	/**
+	 * Text of the given length that compresses well, as most payloads do
+	 *
+	 * @param length length
+	 *
+	 * @return text
+	 */
+	public static String text(int length) {
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; text.length() < length; i++) {
+			text.append("item-").append(i % 97).append(';');
+		}
+		text.setLength(length);
+		return text.toString();
+	}
+
+	/**
+	 * Wait until a condition holds, for state changed by other threads
+	 *
+	 * @param condition condition
+	 *
+	 * @throws InterruptedException interrupted
+	 */
+	public static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "condition not met within 10 seconds");
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+	}
+}
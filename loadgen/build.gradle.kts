@@ -0,0 +1,44 @@
+plugins {
+    id("java")
+}
+
+group = "org.code"
+version = "1.0-SNAPSHOT"
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    // https://mvnrepository.com/artifact/io.netty/netty-all
+    implementation("io.netty:netty-all:4.1.109.Final")
+    // https://mvnrepository.com/artifact/org.hdrhistogram/HdrHistogram
+    implementation("org.hdrhistogram:HdrHistogram:2.2.2")
+    // https://mvnrepository.com/artifact/com.fasterxml.jackson.core/jackson-databind
+    implementation("com.fasterxml.jackson.core:jackson-databind:2.17.1")
+
+    // https://mvnrepository.com/artifact/org.projectlombok/lombok
+    compileOnly("org.projectlombok:lombok:1.18.32")
+    annotationProcessor("org.projectlombok:lombok:1.18.32")
+    // https://mvnrepository.com/artifact/org.slf4j/slf4j-api
+    implementation("org.slf4j:slf4j-api:2.0.13")
+    // https://mvnrepository.com/artifact/ch.qos.logback/logback-classic
+    implementation("ch.qos.logback:logback-classic:1.5.6")
+    // https://mvnrepository.com/artifact/ch.qos.logback/logback-core
+    implementation("ch.qos.logback:logback-core:1.5.6")
+
+    implementation(project(":common"))
+    implementation(project(":Netty-client"))
+}
+
+// Run against a running NettyServerLauncher with: gradle loadgen
+// Settings are passed as loadgen.* properties, e.g. gradle loadgen -Ploadgen.connections=2000 -Ploadgen.rate=50000
+tasks.register<JavaExec>("loadgen") {
+    group = "benchmark"
+    description = "Runs the load generator and writes build/loadgen-result.json"
+    dependsOn(tasks.classes)
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("code.LoadGenerator")
+    systemProperty("loadgen.output", layout.buildDirectory.file("loadgen-result.json").get().asFile.path)
+    systemProperties(project.properties.filterKeys { it.startsWith("loadgen.") })
+}
@@ -0,0 +1,2 @@
+rootProject.name = "loadgen"
+includeFlat("common", "Netty-client")
\ No newline at end of file
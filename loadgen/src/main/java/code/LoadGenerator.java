@@ -0,0 +1,387 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a running NettyServerLauncher through the regular client pipeline and reports what it sustains.
+ * <ul>
+ * <li>Open mode sends rate requests per second in total, spread over all connections, whether or not responses keep up.
+ * Latency is measured from the time a request was due, not from when it was actually written, so a stalled server shows up in the
+ * percentiles instead of silently lowering the send rate (coordinated omission).</li>
+ * <li>Closed mode keeps concurrency requests in flight per connection and sends the next one when a response arrives, it finds the
+ * maximum throughput but hides queueing delay.</li>
+ * </ul>
+ * Requests due during the warmup are not reported. The result is logged and written as JSON.
+ */
+@Slf4j
+@Setter
+@Accessors(chain = true)
+public class LoadGenerator {
+	/**
+	 * connections opened at once, so the accept backlog of the server is not flooded
+	 */
+	private static final int CONNECT_BATCH = 256;
+	/**
+	 * how often the open mode pacer of an event loop sends the requests that have come due
+	 */
+	private static final long PACER_TICK_MICROS = 1000;
+
+	private final String inetHost;
+	private final int inetPort;
+	private int connections = 1000;
+	private LoadMode mode = LoadMode.Open;
+	/**
+	 * requests per second in total, open mode
+	 */
+	private long rate = 10_000;
+	/**
+	 * requests in flight per connection, closed mode
+	 */
+	private int concurrency = 1;
+	private int warmupSeconds = 5;
+	private int durationSeconds = 30;
+	private MessageMix mix = MessageMix.parse("echo:16:100");
+	private TransportType transportType = TransportType.Nio;
+	/**
+	 * event loop threads, 0 for the netty default
+	 */
+	private int threads;
+	private long requestTimeoutMillis = RpcClient.DEFAULT_TIMEOUT_MILLIS;
+	/**
+	 * JSON report, none if null
+	 */
+	private Path output;
+
+	private final Recorder latency = new Recorder(2);
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder responses = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder closed = new LongAdder();
+	private final LongAdder errorResponses = new LongAdder();
+	private final LongAdder otherErrors = new LongAdder();
+	private volatile boolean running;
+	/**
+	 * requests due before this nanoTime belong to the warmup and are not counted
+	 */
+	private volatile long measureStart = Long.MAX_VALUE;
+
+	public LoadGenerator(String inetHost, int inetPort) {
+		this.inetHost = inetHost;
+		this.inetPort = inetPort;
+	}
+
+	/**
+	 * Load model
+	 */
+	public enum LoadMode {
+		/**
+		 * fixed arrival rate, independent of the responses
+		 */
+		Open,
+		/**
+		 * fixed number of requests in flight
+		 */
+		Closed
+	}
+
+	/**
+	 * Connect, run the warmup and the measurement, and report
+	 *
+	 * @return report
+	 */
+	@SneakyThrows
+	public LoadReport run() {
+		String startedAt = Instant.now().toString();
+		EventLoopGroup group = transportType.newEventLoopGroup(threads);
+		try {
+			Bootstrap bootstrap = new Bootstrap()
+					.group(group)
+					.channel(transportType.socketChannelClass())
+					.option(ChannelOption.TCP_NODELAY, true)
+					.handler(new ClientChannelInitializer()
+							.setLeanPipeline(true)
+							.setMaxOutstanding(Math.max(RpcClient.DEFAULT_MAX_OUTSTANDING, concurrency))
+							.setOutboundQueueCapacity(Math.max(OutboundMessageQueue.DEFAULT_CAPACITY, concurrency))
+							.setRequestTimeoutMillis(requestTimeoutMillis));
+			List<Channel> channels = new ArrayList<>(connections);
+			int connectFailures = connect(bootstrap, channels);
+			if (channels.isEmpty()) {
+				throw new IllegalStateException("Could not connect to " + inetHost + ":" + inetPort);
+			}
+			log.info("{} connections open, {} failed, {} mode, mix {}", channels.size(), connectFailures, mode, mix);
+
+			running = true;
+			List<ScheduledFuture<?>> pacers = start(channels);
+			TimeUnit.SECONDS.sleep(warmupSeconds);
+			long windowStart = System.nanoTime();
+			measureStart = windowStart;
+			TimeUnit.SECONDS.sleep(durationSeconds);
+			long responsesInWindow = responses.sum();
+			double seconds = (System.nanoTime() - windowStart) / 1e9;
+			running = false;
+			pacers.forEach(pacer -> pacer.cancel(false));
+			awaitInFlight(channels);
+
+			LoadReport report = report(startedAt, channels.size(), connectFailures, seconds, responsesInWindow);
+			log.info("{}", report);
+			if (output != null) {
+				if (output.toAbsolutePath().getParent() != null) {
+					Files.createDirectories(output.toAbsolutePath().getParent());
+				}
+				new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+				log.info("Report written to {}", output.toAbsolutePath());
+			}
+			for (Channel channel : channels) {
+				channel.close();
+			}
+			return report;
+		} finally {
+			group.shutdownGracefully();
+		}
+	}
+
+	/**
+	 * Open the connections in batches
+	 *
+	 * @return number of failed connection attempts
+	 */
+	private int connect(Bootstrap bootstrap, List<Channel> channels) {
+		int failures = 0;
+		for (int opened = 0; opened < connections; opened += CONNECT_BATCH) {
+			List<ChannelFuture> batch = new ArrayList<>(CONNECT_BATCH);
+			for (int i = opened; i < Math.min(connections, opened + CONNECT_BATCH); i++) {
+				batch.add(bootstrap.connect(inetHost, inetPort));
+			}
+			for (ChannelFuture future : batch) {
+				if (future.awaitUninterruptibly().isSuccess()) {
+					channels.add(future.channel());
+				} else if (failures++ == 0) {
+					log.warn("Connection failed, check the file descriptor limit for large connection counts", future.cause());
+				}
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Start sending on every connection
+	 *
+	 * @return open mode pacers, one per event loop
+	 */
+	private List<ScheduledFuture<?>> start(List<Channel> channels) {
+		List<ScheduledFuture<?>> pacers = new ArrayList<>();
+		if (mode == LoadMode.Closed) {
+			for (Channel channel : channels) {
+				RpcClient client = RpcClient.of(channel);
+				channel.eventLoop().execute(() -> {
+					for (int i = 0; i < concurrency; i++) {
+						sendClosed(channel, client);
+					}
+				});
+			}
+			return pacers;
+		}
+		// One pacer per event loop sends for the connections of that loop, their share of the rate follows their share of the connections
+		Map<EventLoop, List<RpcClient>> clientsByLoop = new LinkedHashMap<>();
+		for (Channel channel : channels) {
+			clientsByLoop.computeIfAbsent(channel.eventLoop(), eventLoop -> new ArrayList<>()).add(RpcClient.of(channel));
+		}
+		clientsByLoop.forEach((eventLoop, clients) -> {
+			Pacer pacer = new Pacer(clients, (double) rate * clients.size() / channels.size());
+			pacers.add(eventLoop.scheduleAtFixedRate(pacer, 0, PACER_TICK_MICROS, TimeUnit.MICROSECONDS));
+		});
+		return pacers;
+	}
+
+	private void sendClosed(Channel channel, RpcClient client) {
+		send(client, System.nanoTime()).whenComplete((response, cause) -> {
+			if (running && channel.isActive()) {
+				sendClosed(channel, client);
+			}
+		});
+	}
+
+	/**
+	 * Send one request of the mix and record its outcome
+	 *
+	 * @param client       client of the connection
+	 * @param intendedTime nanoTime the request was due, latency is measured from here
+	 *
+	 * @return future of the response
+	 */
+	private CompletableFuture<RpcResponse> send(RpcClient client, long intendedTime) {
+		boolean measured = intendedTime >= measureStart;
+		if (measured) {
+			sent.increment();
+		}
+		return client.call(mix.next(), requestTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((response, cause) -> {
+			if (cause == null) {
+				if (measured && response.isSuccess()) {
+					responses.increment();
+					latency.recordValue(Math.max(0, (System.nanoTime() - intendedTime) / 1000));
+				} else if (measured) {
+					errorResponses.increment();
+				}
+				// Hand a pooled response back, nothing reads it after this callback
+				ReferenceCountUtil.release(response);
+				return;
+			}
+			if (!measured) {
+				return;
+			}
+			Throwable error = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+			if (error instanceof TimeoutException) {
+				timeouts.increment();
+			} else if (error instanceof RejectedExecutionException) {
+				rejected.increment();
+			} else if (error instanceof ClosedChannelException) {
+				closed.increment();
+			} else {
+				otherErrors.increment();
+			}
+		});
+	}
+
+	/**
+	 * Give the requests still in flight the time to complete or time out
+	 */
+	private void awaitInFlight(List<Channel> channels) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis + 500);
+		while (System.nanoTime() < deadline) {
+			int outstanding = 0;
+			for (Channel channel : channels) {
+				RpcClient client = RpcClient.of(channel);
+				outstanding += client == null ? 0 : client.outstanding();
+			}
+			if (outstanding == 0) {
+				return;
+			}
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+	}
+
+	private LoadReport report(String startedAt, int openConnections, int connectFailures, double seconds, long responsesInWindow) {
+		Histogram histogram = latency.getIntervalHistogram();
+		Map<String, Long> errors = new LinkedHashMap<>();
+		errors.put("timeout", timeouts.sum());
+		errors.put("rejected", rejected.sum());
+		errors.put("closed", closed.sum());
+		errors.put("errorResponse", errorResponses.sum());
+		errors.put("other", otherErrors.sum());
+		return LoadReport.builder()
+				.startedAt(startedAt)
+				.javaVersion(Runtime.version().toString())
+				.transport(transportType.name())
+				.mode(mode.name())
+				.mix(mix.toString())
+				.connections(openConnections)
+				.connectFailures(connectFailures)
+				.targetRate(mode == LoadMode.Open ? rate : 0)
+				.concurrency(mode == LoadMode.Closed ? concurrency : 0)
+				.durationSeconds(seconds)
+				.requestsSent(sent.sum())
+				.responses(responses.sum())
+				.throughput(responsesInWindow / seconds)
+				.errors(errors)
+				.latencyMicros(LoadReport.Latency.builder()
+						.count(histogram.getTotalCount())
+						.mean(histogram.getMean())
+						.p50(histogram.getValueAtPercentile(50))
+						.p90(histogram.getValueAtPercentile(90))
+						.p99(histogram.getValueAtPercentile(99))
+						.p999(histogram.getValueAtPercentile(99.9))
+						.max(histogram.getMaxValue())
+						.build())
+				.build();
+	}
+
+	/**
+	 * Open mode sender of one event loop.
+	 * Every tick it sends the requests that have come due since the start, a late tick sends the backlog at once.
+	 */
+	private final class Pacer implements Runnable {
+		private final List<RpcClient> clients;
+		private final double requestsPerNano;
+		private final long start = System.nanoTime();
+		private long sentCount;
+		private int next;
+
+		private Pacer(List<RpcClient> clients, double requestsPerSecond) {
+			this.clients = clients;
+			this.requestsPerNano = requestsPerSecond / 1e9;
+		}
+
+		@Override
+		public void run() {
+			long due = (long) ((System.nanoTime() - start) * requestsPerNano);
+			while (running && sentCount < due) {
+				long intendedTime = start + (long) (sentCount / requestsPerNano);
+				send(clients.get(next), intendedTime);
+				next = next + 1 == clients.size() ? 0 : next + 1;
+				sentCount++;
+			}
+		}
+	}
+
+	/**
+	 * Entry point of the load generator, start a NettyServerLauncher first.
+	 * Settings are system properties: loadgen.host, loadgen.port, loadgen.connections, loadgen.mode=open|closed, loadgen.rate,
+	 * loadgen.concurrency, loadgen.warmup and loadgen.duration in seconds, loadgen.mix, loadgen.transport, loadgen.threads,
+	 * loadgen.timeout in milliseconds and loadgen.output for the JSON report. loadgen.pooling=true pools the messages, see {@link MessagePool}.
+	 *
+	 * @param args The command line arguments.
+	 */
+	public static void main(String[] args) {
+		String output = System.getProperty("loadgen.output", "loadgen-result.json");
+		if (Boolean.getBoolean("loadgen.pooling")) {
+			MessageRegistry.enablePooling();
+		}
+		new LoadGenerator(System.getProperty("loadgen.host", "127.0.0.1"), Integer.getInteger("loadgen.port", 8080))
+				.setConnections(Integer.getInteger("loadgen.connections", 1000))
+				.setMode("closed".equalsIgnoreCase(System.getProperty("loadgen.mode", "open")) ? LoadMode.Closed : LoadMode.Open)
+				.setRate(Long.getLong("loadgen.rate", 10_000))
+				.setConcurrency(Integer.getInteger("loadgen.concurrency", 1))
+				.setWarmupSeconds(Integer.getInteger("loadgen.warmup", 5))
+				.setDurationSeconds(Integer.getInteger("loadgen.duration", 30))
+				.setMix(MessageMix.parse(System.getProperty("loadgen.mix", "echo:16:100")))
+				.setTransportType(TransportType.resolve(System.getProperty("loadgen.transport", "auto")))
+				.setThreads(Integer.getInteger("loadgen.threads", 0))
+				.setRequestTimeoutMillis(Long.getLong("loadgen.timeout", RpcClient.DEFAULT_TIMEOUT_MILLIS))
+				.setOutput(output.isEmpty() ? null : Path.of(output))
+				.run();
+	}
+}
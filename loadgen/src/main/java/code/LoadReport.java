@@ -0,0 +1,62 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * Result of a {@link LoadGenerator} run, written as JSON so runs of different builds can be compared
+ */
+@Getter
+@Builder
+@ToString
+public class LoadReport {
+	private final String startedAt;
+	private final String javaVersion;
+	private final String transport;
+	private final String mode;
+	private final String mix;
+	private final int connections;
+	private final int connectFailures;
+	/**
+	 * target requests per second in open mode, 0 in closed mode
+	 */
+	private final long targetRate;
+	/**
+	 * requests in flight per connection in closed mode
+	 */
+	private final int concurrency;
+	private final double durationSeconds;
+	private final long requestsSent;
+	private final long responses;
+	private final double throughput;
+	/**
+	 * failures by kind: timeout, rejected, closed, error response, other
+	 */
+	private final Map<String, Long> errors;
+	/**
+	 * in open mode measured from the time the request was due to be sent, which corrects coordinated omission
+	 */
+	private final Latency latencyMicros;
+
+	/**
+	 * Latency distribution
+	 */
+	@Getter
+	@Builder
+	@ToString
+	public static class Latency {
+		private final long count;
+		private final double mean;
+		private final long p50;
+		private final long p90;
+		private final long p99;
+		private final long p999;
+		private final long max;
+	}
+}
@@ -0,0 +1,85 @@
+package code;
+
+// Copyright (c) 2024, NoCodeNoLife-cloud. All rights reserved.
+// Author: NoCodeNoLife-cloud
+// stay hungry，stay foolish
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted mix of the requests a {@link LoadGenerator} sends.
+ * The spec is a comma separated list of method:bodyBytes:weight entries, e.g. "echo:16:90,echo:4096:10".
+ */
+public final class MessageMix {
+	private final List<Entry> entries;
+	private final int totalWeight;
+
+	private MessageMix(List<Entry> entries) {
+		this.entries = entries;
+		this.totalWeight = entries.stream().mapToInt(Entry::getWeight).sum();
+	}
+
+	/**
+	 * Parse a mix
+	 *
+	 * @param spec method:bodyBytes:weight entries separated by commas
+	 *
+	 * @return mix
+	 */
+	public static MessageMix parse(String spec) {
+		List<Entry> entries = new ArrayList<>();
+		for (String part : spec.split(",")) {
+			String[] fields = part.trim().split(":");
+			if (fields.length != 3) {
+				throw new IllegalArgumentException("Mix entry must be method:bodyBytes:weight: " + part);
+			}
+			int weight = Integer.parseInt(fields[2]);
+			if (weight <= 0) {
+				throw new IllegalArgumentException("Mix weight must be positive: " + part);
+			}
+			entries.add(new Entry(fields[0], "x".repeat(Integer.parseInt(fields[1])), weight));
+		}
+		return new MessageMix(List.copyOf(entries));
+	}
+
+	/**
+	 * Draw the next request, a new or pooled object every time since the client assigns it a sequence id
+	 *
+	 * @return request
+	 */
+	public RpcRequest next() {
+		int ticket = entries.size() == 1 ? 0 : ThreadLocalRandom.current().nextInt(totalWeight);
+		for (Entry entry : entries) {
+			ticket -= entry.getWeight();
+			if (ticket < 0) {
+				RpcRequest request = MessageRegistry.newMessage(MessageType.RpcRequest);
+				request.setMethod(entry.getMethod());
+				request.setBody(entry.getBody());
+				return request;
+			}
+		}
+		throw new IllegalStateException("unreachable");
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Entry entry : entries) {
+			if (!builder.isEmpty()) {
+				builder.append(',');
+			}
+			builder.append(entry.getMethod()).append(':').append(entry.getBody().length()).append(':').append(entry.getWeight());
+		}
+		return builder.toString();
+	}
+
+	@Value
+	private static class Entry {
+		String method;
+		String body;
+		int weight;
+	}
+}